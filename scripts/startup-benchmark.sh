@@ -0,0 +1,88 @@
+#!/usr/bin/env bash
+# Startup time of the regular jar vs the fast-startup build (Spring AOT, with and without AppCDS),
+# against the local Firebase Realtime Database emulator instead of the real project.
+#
+#   scripts/startup-benchmark.sh [runs]
+#
+# Needs JDK 21, curl and Node (the emulator is started through npx firebase-tools if it is not
+# already listening on 127.0.0.1:9000). Reports the median over the runs of
+#   live  - process start until /actuator/health/liveness answers (context refreshed, HTTP up)
+#   ready - process start until /health answers 200 (Firebase initialized and connected)
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+cd "$(dirname "$0")/.."
+mkdir -p target/startup
+
+# Local stand-in: the Admin SDK talks to the emulator when this is set; no credentials needed
+export FIREBASE_DATABASE_EMULATOR_HOST=127.0.0.1:9000
+unset FIREBASE_CONFIG FIREBASE_DB_URL
+
+if ! curl -s -o /dev/null "http://$FIREBASE_DATABASE_EMULATOR_HOST/.json?ns=dailythoughts-local"; then
+    echo "Starting the Firebase database emulator..."
+    npx -y firebase-tools emulators:start --only database --project dailythoughts-local \
+        > target/startup/emulator.log 2>&1 &
+    EMULATOR_PID=$!
+    trap 'kill $EMULATOR_PID 2>/dev/null || true' EXIT
+    until curl -s -o /dev/null "http://$FIREBASE_DATABASE_EMULATOR_HOST/.json?ns=dailythoughts-local"; do
+        sleep 0.5
+    done
+fi
+
+echo "Building the regular jar..."
+sh ./mvnw -B -q package -DskipTests
+cp target/dailythoughts-*-SNAPSHOT.jar target/startup/default.jar
+
+echo "Building the fast-startup jar (AOT + CDS training run)..."
+sh ./mvnw -B -q -Pfast-startup package -DskipTests
+CDS_JAR=$(basename target/cds/dailythoughts-*-cds.jar)
+
+millis() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }'
+}
+
+# measure <name> <working dir> <java args...>
+# The CDS archive is only valid for the class path it was trained on, so the thin jar runs from target/cds
+measure() {
+    local name=$1 dir=$2
+    shift 2
+    local live_times=() ready_times=()
+
+    for run in $(seq "$RUNS"); do
+        local start live ready pid
+        start=$(millis)
+        (cd "$dir" && exec java "$@" --server.port="$PORT") > "target/startup/$name-$run.log" 2>&1 &
+        pid=$!
+
+        until curl -sf -o /dev/null "http://localhost:$PORT/actuator/health/liveness"; do
+            kill -0 "$pid" 2>/dev/null || { echo "$name failed to start, see target/startup/$name-$run.log"; exit 1; }
+            sleep 0.02
+        done
+        live=$(( $(millis) - start ))
+
+        until curl -sf -o /dev/null "http://localhost:$PORT/health"; do
+            sleep 0.02
+        done
+        ready=$(( $(millis) - start ))
+
+        kill "$pid"
+        wait "$pid" 2>/dev/null || true
+        live_times+=("$live")
+        ready_times+=("$ready")
+    done
+
+    printf "%-14s live %6s ms   ready %6s ms\n" "$name" \
+        "$(printf '%s\n' "${live_times[@]}" | median)" \
+        "$(printf '%s\n' "${ready_times[@]}" | median)"
+}
+
+echo
+echo "Median of $RUNS runs:"
+measure default target/startup -jar default.jar
+measure aot target/cds -Dspring.aot.enabled=true -jar "$CDS_JAR"
+measure aot+cds target/cds -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar "$CDS_JAR"
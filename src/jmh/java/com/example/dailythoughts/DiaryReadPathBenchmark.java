@@ -0,0 +1,263 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// The /diary read path on synthetic, in-memory data (no network):
+// raw snapshot values -> Thought records -> sorted history / per-day rows -> rendered home.html.
+// The *Maps benchmarks keep the earlier model (a HashMap of strings per thought, keys in a skip list)
+// for comparison; the gc profiler the benchmarks profile runs with reports gc.alloc.rate.norm, the
+// bytes allocated per operation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiaryReadPathBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int thoughts;
+
+    // Shaped like DataSnapshot.getValue() on the thoughts node
+    Map<String, Object> snapshot;
+    Map<String, Thought> converted;
+    Map<String, Map<String, String>> convertedMaps;
+    Map<String, Map<String, String>> sorted;
+    NavigableSet<HistoryIndex.Entry> entries;
+    NavigableMap<String, DailyThought> days;
+    HistoryIndex index;
+    ThoughtRepository repository;
+    TemplateEngine templateEngine;
+    DayFragments fragments;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long start = 1_700_000_000_000L;
+        java.time.LocalDate firstDay = java.time.LocalDate.of(2020, 1, 1);
+
+        snapshot = new HashMap<>();
+        for (int i = 0; i < thoughts; i++) {
+            Map<String, Object> thought = new HashMap<>();
+            thought.put("author", i % 2 == 0 ? "you" : "her");
+            thought.put("thought", "Synthetic thought number " + i + " with a bit of text to render");
+            thought.put("timestamp", start + random.nextInt(Integer.MAX_VALUE));
+            // Two thoughts a day, one per author
+            snapshot.put(firstDay.plusDays(i / 2) + " 0" + (i % 2) + "-00-00", thought);
+        }
+
+        converted = convertSnapshot();
+        convertedMaps = convertSnapshotToMaps();
+        sorted = sortByParsedTimestamp();
+        days = buildDays();
+
+        index = new HistoryIndex();
+        converted.values().forEach(index::put);
+        entries = new java.util.concurrent.ConcurrentSkipListSet<>();
+        converted.values().forEach(thought -> entries.add(new HistoryIndex.Entry(thought.timestamp(), thought.key())));
+        repository = new IndexedRepository();
+
+        templateEngine = DayFragmentsTest.templateEngine();
+        fragments = new DayFragments(DiariesTest.serving(repository), templateEngine, 64 << 20, new SimpleMeterRegistry());
+    }
+
+    // Snapshot -> Thought records, as FirebaseService does for every child
+    @Benchmark
+    public Map<String, Thought> convertSnapshot() {
+        Map<String, Thought> allThoughts = new HashMap<>();
+        for (Map.Entry<String, Object> child : snapshot.entrySet()) {
+            allThoughts.put(child.getKey(), Thought.fromValue(child.getKey(), child.getValue()));
+        }
+        return allThoughts;
+    }
+
+    // The same into the earlier per-thought maps of strings
+    @Benchmark
+    public Map<String, Map<String, String>> convertSnapshotToMaps() {
+        Map<String, Map<String, String>> allThoughts = new HashMap<>();
+        for (Map.Entry<String, Object> child : snapshot.entrySet()) {
+            Map<String, String> thoughtData = new HashMap<>();
+            if (child.getValue() instanceof Map<?, ?> fields) {
+                fields.forEach((field, value) -> thoughtData.put(field.toString(), value != null ? value.toString() : null));
+            }
+            allThoughts.put(child.getKey(), thoughtData);
+        }
+        return allThoughts;
+    }
+
+    // The pre-pagination /diary sort: Long.parseLong on both sides of every comparison
+    @Benchmark
+    public Map<String, Map<String, String>> sortByParsedTimestamp() {
+        List<Map.Entry<String, Map<String, String>>> sortedEntries = new ArrayList<>(convertedMaps.entrySet());
+        sortedEntries.sort((a, b) -> {
+            String timestampA = a.getValue().get("timestamp");
+            String timestampB = b.getValue().get("timestamp");
+            if (timestampA != null && timestampB != null) {
+                return Long.compare(Long.parseLong(timestampB), Long.parseLong(timestampA));
+            }
+            return 0;
+        });
+
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : sortedEntries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    // Today's replacement for the sort: one page of records straight from the sorted array
+    @Benchmark
+    public ThoughtPage indexPage() {
+        return index.page(null, 20);
+    }
+
+    // The same page before: keys from the skip list, each looked up and copied into an ordered map
+    @Benchmark
+    public Map<String, Map<String, String>> indexPageMaps() {
+        Map<String, Map<String, String>> page = new LinkedHashMap<>();
+        for (HistoryIndex.Entry entry : entries) {
+            if (page.size() == 20) {
+                break;
+            }
+            page.put(entry.key(), convertedMaps.get(entry.key()));
+        }
+        return page;
+    }
+
+    // What the day index (or its backfill) does: fold raw thoughts, in key order, into one row per day
+    @Benchmark
+    public NavigableMap<String, DailyThought> buildDays() {
+        NavigableMap<String, DailyThought> result = new TreeMap<>(Comparator.reverseOrder());
+        for (Map.Entry<String, Thought> entry : new TreeMap<>(converted).entrySet()) {
+            result.merge(DailyThought.dayOf(entry.getKey()), DailyThought.EMPTY.with(entry.getValue()),
+                    (older, newer) -> older.with(entry.getValue()));
+        }
+        return result;
+    }
+
+    // home.html with the first page of 20 days
+    @Benchmark
+    public void renderHome(Blackhole blackhole) {
+        Context context = new Context(Locale.ENGLISH);
+        context.setVariable("username", "you");
+        context.setVariable("diary", "default");
+        context.setVariable("history", new HistoryStream(repository, null, 20, 20, () -> { }));
+        context.setVariable("fragments", fragments);
+        context.setVariable("limit", 20);
+
+        CountingWriter writer = new CountingWriter();
+        templateEngine.process("home", context, writer);
+        blackhole.consume(writer.count);
+    }
+
+    // home.html fed by a HistoryStream, a whole page of up to 1000 days read in chunks of 20
+    @Benchmark
+    public void renderHomeStreamed(Blackhole blackhole) {
+        Context context = new Context(Locale.ENGLISH);
+        context.setVariable("username", "you");
+        context.setVariable("diary", "default");
+        context.setVariable("history", new HistoryStream(repository, null, 1000, 20, () -> { }));
+        context.setVariable("fragments", fragments);
+        context.setVariable("limit", 1000);
+
+        CountingWriter writer = new CountingWriter();
+        templateEngine.process("home", context, writer);
+        blackhole.consume(writer.count);
+    }
+
+    // Serves pages straight from the index, the converted snapshot and the day rows
+    final class IndexedRepository implements ThoughtRepository {
+        @Override
+        public DayPage loadDays(String before, int limit) {
+            Map<String, DailyThought> page = new LinkedHashMap<>();
+            String nextCursor = null;
+            String lastDay = null;
+            for (Map.Entry<String, DailyThought> entry : (before != null ? days.tailMap(before, false) : days).entrySet()) {
+                if (page.size() == limit) {
+                    nextCursor = lastDay;
+                    break;
+                }
+                page.put(entry.getKey(), entry.getValue());
+                lastDay = entry.getKey();
+            }
+            return new DayPage(page, nextCursor);
+        }
+
+        @Override
+        public ThoughtPage loadPage(ThoughtCursor before, int limit) {
+            return index.page(before, limit);
+        }
+
+        @Override
+        public java.util.concurrent.CompletableFuture<Void> saveThought(String date, String author, String thought) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Thought> loadAllThoughts() {
+            return converted;
+        }
+
+        @Override
+        public ThoughtPage search(String query, ThoughtCursor before, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RealtimeDatabase.Registration watchDays(java.util.function.BiConsumer<String, DailyThought> listener) {
+            // The days never change
+            return () -> { };
+        }
+
+        @Override
+        public String version() {
+            return null;
+        }
+
+        @Override
+        public void deleteThought(String date) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long cachedBytes() {
+            return 0;
+        }
+
+        @Override
+        public DiaryStats loadStats() {
+            return DiaryStats.EMPTY;
+        }
+    }
+
+    // Discards output but keeps it observable, so the render can't be optimized away
+    static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
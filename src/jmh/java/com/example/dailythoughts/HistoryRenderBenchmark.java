@@ -0,0 +1,75 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Render cost of one /diary request with a history of 10k days, all in memory so the time is the
+// render alone. cacheBytes=0 keeps no rows, so every request renders every row through Thymeleaf from
+// day.html, as home.html did before DayFragments; with room for all rows a request only concatenates
+// cached strings.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryRenderBenchmark {
+
+    @Param({"10000"})
+    public int days;
+
+    @Param({"0", "67108864"})
+    public long cacheBytes;
+
+    HistoryStreamTest.PagedRepository history;
+    DayFragments fragments;
+    TemplateEngine templateEngine;
+
+    @Setup
+    public void setUp() {
+        history = new HistoryStreamTest.PagedRepository(0);
+        LocalDate newest = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < days; i++) {
+            history.days.put(newest.minusDays(i).toString(), new DailyThought(
+                    "Synthetic thought number " + i + " with a bit of text to render",
+                    "Her reply to day " + i + " & a <little> more"));
+        }
+        templateEngine = DayFragmentsTest.templateEngine();
+        fragments = new DayFragments(DiariesTest.serving(history), templateEngine,
+                cacheBytes, new SimpleMeterRegistry());
+        // Fill the cache, as the first request after a diary opens does
+        renderRows();
+    }
+
+    // home.html with the whole history on one page
+    @Benchmark
+    public void renderHistory(Blackhole blackhole) {
+        Context context = new Context(Locale.ENGLISH);
+        context.setVariable("username", "you");
+        context.setVariable("diary", "default");
+        context.setVariable("history", new HistoryStream(history, null, days, 1000, () -> { }));
+        context.setVariable("fragments", fragments);
+        context.setVariable("limit", days);
+
+        DiaryReadPathBenchmark.CountingWriter writer = new DiaryReadPathBenchmark.CountingWriter();
+        templateEngine.process("home", context, writer);
+        blackhole.consume(writer.count);
+    }
+
+    // The rows alone, without the rest of the page
+    @Benchmark
+    public long renderRows() {
+        long length = 0;
+        for (Map.Entry<String, DailyThought> day : history.days.entrySet()) {
+            length += fragments.html("default", day.getKey(), day.getValue()).length();
+        }
+        return length;
+    }
+}
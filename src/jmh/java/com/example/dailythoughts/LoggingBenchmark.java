@@ -0,0 +1,101 @@
+package com.example.dailythoughts;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Logging on the /submit path with many request threads at once. Before: one System.out.println
+// with the full thought, so every request queues on the PrintStream lock and its write.
+// After: the lines the path logs now, through the async appender of logback-spring.xml, with the
+// text at debug (off). Both write the same kind of file; the difference is who waits for it.
+// The async appender never blocks: past its queue size, lines are dropped rather than waited for.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class LoggingBenchmark {
+
+    private static final String THOUGHT = "Walked to the park after work, the rain finally stopped and the coffee "
+            + "place on the corner was still open. Tomorrow: call mom, finish the book.";
+
+    Path systemOutFile;
+    Path logFile;
+    PrintStream console;
+    LoggerContext context;
+    org.slf4j.Logger log;
+    org.slf4j.Logger requests;
+
+    @Setup
+    public void setUp() throws IOException {
+        systemOutFile = Files.createTempFile("system-out", ".log");
+        console = new PrintStream(new FileOutputStream(systemOutFile.toFile()), true, StandardCharsets.UTF_8);
+
+        logFile = Files.createTempFile("logback", ".log");
+        context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %level [%thread] %logger - %msg%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> file = new OutputStreamAppender<>();
+        file.setContext(context);
+        file.setName("FILE");
+        file.setEncoder(encoder);
+        file.setOutputStream(new FileOutputStream(logFile.toFile()));
+        file.start();
+
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(context);
+        async.setName("ASYNC");
+        async.setQueueSize(8192);
+        async.setNeverBlock(true);
+        async.addAppender(file);
+        async.start();
+
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(async);
+
+        log = LoggerFactory.getLogger(FirebaseService.class);
+        requests = LoggerFactory.getLogger("dailythoughts.requests");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.stop();
+        console.close();
+        Files.deleteIfExists(systemOutFile);
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public void systemOut() {
+        console.println("✅ Saved to Firebase: " + THOUGHT);
+    }
+
+    @Benchmark
+    public void asyncLogging() {
+        log.info("Saved thought {} by {}", "-NabcdefGhijk", "you");
+        log.debug("Thought {}: {}", "-NabcdefGhijk", THOUGHT);
+        requests.info("POST /submit - user {}: {}", "you", "saved-you");
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.dailythoughts;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// /search on synthetic, in-memory data: the inverted index against scanning every thought,
+// which is what answering a query from the thoughts node would cost.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {
+            "coffee", "park", "rain", "sunny", "work", "tired", "happy", "movie", "dinner", "call",
+            "walk", "book", "music", "train", "late", "early", "friend", "mom", "cat", "dream"};
+
+    @Param({"100000"})
+    public int thoughts;
+
+    // common: one word out of 20, in about a third of all thoughts; rare: a handful of matches;
+    // pair: two common words together; miss: a word no thought contains
+    @Param({"coffee", "zanzibar", "coffee rain", "unicorn"})
+    public String query;
+
+    Map<String, String> texts;
+    SearchIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        texts = new HashMap<>();
+        index = new SearchIndex();
+        for (int i = 0; i < thoughts; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 0; word < 8; word++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            if (i % 20_000 == 0) {
+                text.append("Zanzibar");
+            }
+            String key = String.format("k%08d", i);
+            texts.put(key, text.toString());
+            index.put(key, 1_700_000_000_000L + i, text.toString());
+        }
+    }
+
+    // First page of 20, newest first
+    @Benchmark
+    public HistoryIndex.Page indexSearch() {
+        return index.search(query, null, 20);
+    }
+
+    // Scan and sort, the price of searching without an index
+    @Benchmark
+    public List<String> scanSearch() {
+        Set<String> terms = SearchIndex.terms(query);
+        List<String> matches = new ArrayList<>();
+        for (Map.Entry<String, String> entry : texts.entrySet()) {
+            if (SearchIndex.terms(entry.getValue()).containsAll(terms)) {
+                matches.add(entry.getKey());
+            }
+        }
+        matches.sort(Comparator.reverseOrder());
+        return matches.subList(0, Math.min(20, matches.size()));
+    }
+
+    // Keeping the index current on a submit
+    @Benchmark
+    public void indexPut() {
+        index.put("k-bench", 1_800_000_000_000L, "coffee in the park after rain");
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.dailythoughts;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Per-request cost of knowing who is logged in: checking a signed session cookie against the
+// container-session path it replaces, modeled as what the servlet container does in memory for
+// each request (look the session id up, touch its access time, read the attribute).
+// The container path also keeps every session on the heap of one replica; the cookie path keeps nothing.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SessionBenchmark {
+
+    @Param({"10000"})
+    public int sessions;
+
+    SessionCookies sessionCookies;
+    String cookie;
+
+    Map<String, ContainerSession> containerSessions;
+    String sessionId;
+
+    @Setup
+    public void setUp() {
+        sessionCookies = new SessionCookies("k1:" + Base64.getEncoder().encodeToString(new byte[32]), Duration.ofDays(7));
+        cookie = sessionCookies.sign("default", "you");
+
+        containerSessions = new ConcurrentHashMap<>();
+        for (int i = 0; i < sessions; i++) {
+            ContainerSession session = new ContainerSession();
+            session.attributes.put("username", i % 2 == 0 ? "you" : "her");
+            sessionId = UUID.randomUUID().toString();
+            containerSessions.put(sessionId, session);
+        }
+    }
+
+    @Benchmark
+    public String verifyCookie() {
+        return sessionCookies.verify(cookie).username();
+    }
+
+    @Benchmark
+    public String signCookie() {
+        return sessionCookies.sign("default", "you");
+    }
+
+    @Benchmark
+    public Object containerSession() {
+        ContainerSession session = containerSessions.get(sessionId);
+        session.lastAccessedTime = System.currentTimeMillis();
+        return session.attributes.get("username");
+    }
+
+    static final class ContainerSession {
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        volatile long lastAccessedTime;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.dailythoughts;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Backup and restore of the whole diary logged in to (see ThoughtTransfer); only its "you" may use them.
+//   curl -b cookies.txt -o thoughts.ndjson.gz http://localhost:8080/admin/export
+//   curl -b cookies.txt -H "Content-Type: application/gzip" --data-binary @thoughts.ndjson.gz http://localhost:8080/admin/import
+// New diaries are made by "you" of the default diary, who runs the deployment:
+//   curl -b cookies.txt -d id=smiths -d yourPassword=... -d herPassword=... http://localhost:8080/admin/diaries
+@Controller
+@Profile("!embedded")
+public class AdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminController.class);
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final ThoughtTransfer thoughtTransfer;
+    private final FirebaseDiaryMembers diaryMembers;
+    private final Diaries diaries;
+
+    public AdminController(ThoughtTransfer thoughtTransfer, FirebaseDiaryMembers diaryMembers, Diaries diaries) {
+        this.thoughtTransfer = thoughtTransfer;
+        this.diaryMembers = diaryMembers;
+        this.diaries = diaries;
+    }
+
+    // Gzip-compressed NDJSON, written to the response page by page as it is read
+    @GetMapping("/admin/export")
+    public void exportThoughts(@RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+                               @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+                               HttpServletResponse response) throws IOException {
+        if (!"you".equals(username)) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Only 'you' can export thoughts");
+            return;
+        }
+
+        response.setContentType("application/gzip");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"thoughts-" + diary + "-" + LocalDate.now() + ".ndjson.gz\"");
+        try (GZIPOutputStream gzip = new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE)) {
+            long exported = thoughtTransfer.export(diary, gzip);
+            log.info("Exported {} thoughts of diary {}", exported, diary);
+        }
+    }
+
+    // NDJSON as written by /admin/export; gzip-compressed when sent as application/gzip
+    @PostMapping("/admin/import")
+    @ResponseBody
+    public ResponseEntity<String> importThoughts(@RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+                                                 @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+                                                 HttpServletRequest request) throws IOException {
+        if (!"you".equals(username)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only 'you' can import thoughts");
+        }
+
+        InputStream body = request.getInputStream();
+        if ("application/gzip".equals(request.getContentType())) {
+            body = new GZIPInputStream(body, GZIP_BUFFER_SIZE);
+        }
+        try (InputStream in = body) {
+            long imported = thoughtTransfer.importFrom(diary, in);
+            log.info("Imported {} thoughts into diary {}", imported, diary);
+            return ResponseEntity.ok("✅ Imported " + imported + " thoughts, with their days and stats");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("❌ " + e.getMessage());
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().body("❌ Not NDJSON: " + e.getOriginalMessage());
+        } catch (RuntimeException e) {
+            log.error("Import failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body("❌ Import failed: " + e.getMessage());
+        }
+    }
+
+    // A new diary with its two members; they log in by giving its ID on the login page
+    @PostMapping("/admin/diaries")
+    @ResponseBody
+    public ResponseEntity<String> createDiary(@RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+                                              @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+                                              @RequestParam String id,
+                                              @RequestParam String yourPassword,
+                                              @RequestParam String herPassword) {
+        if (!"you".equals(username) || !diaries.defaultId().equals(diary)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only 'you' of the default diary can create diaries");
+        }
+        if (!Diaries.isValidId(id)) {
+            return ResponseEntity.badRequest().body("❌ Diary IDs are 1-40 lowercase letters, digits and dashes");
+        }
+        if (yourPassword.isBlank() || herPassword.isBlank()) {
+            return ResponseEntity.badRequest().body("❌ Both members need a password");
+        }
+
+        try {
+            if (!diaryMembers.create(id, Map.of("you", yourPassword, "her", herPassword))) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("❌ Diary " + id + " already exists");
+            }
+        } catch (IllegalStateException e) {
+            log.error("Creating diary {} failed: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body("❌ Creating the diary failed: " + e.getMessage());
+        }
+        log.info("Created diary {}", id);
+        return ResponseEntity.ok("✅ Created diary " + id);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Decoded archived months of every diary, least recently used first and bounded by their
+// ArchivedMonth.bytes: the oldest go once the total passes maxBytes. Keys carry the month's version
+// (see ThoughtArchive), so a month archived again is read afresh and its old copy simply ages out.
+@Component
+@Profile("!embedded")
+public class ArchiveCache {
+
+    // Guarded by this
+    private final LinkedHashMap<String, ArchivedMonth> months = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final long maxBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ArchiveCache(@Value("${dailythoughts.archive.cache-bytes:16777216}") long maxBytes, MeterRegistry registry) {
+        this.maxBytes = maxBytes;
+
+        Gauge.builder("dailythoughts.archive.cache.size", this, ArchiveCache::bytes)
+                .description("Approximate payload size of the archived months held decoded")
+                .baseUnit("bytes")
+                .register(registry);
+        this.hits = Counter.builder("dailythoughts.archive.cache.requests")
+                .description("Archived month lookups")
+                .tag("result", "hit")
+                .register(registry);
+        this.misses = Counter.builder("dailythoughts.archive.cache.requests")
+                .description("Archived month lookups")
+                .tag("result", "miss")
+                .register(registry);
+        this.evictions = Counter.builder("dailythoughts.archive.cache.evictions")
+                .description("Archived months dropped to stay within dailythoughts.archive.cache-bytes")
+                .register(registry);
+    }
+
+    // The month cached under key, or null
+    synchronized ArchivedMonth get(String key) {
+        ArchivedMonth month = months.get(key);
+        (month != null ? hits : misses).increment();
+        return month;
+    }
+
+    // A month larger than the whole cache is not kept
+    synchronized void put(String key, ArchivedMonth month) {
+        if (month.bytes() > maxBytes) {
+            return;
+        }
+        ArchivedMonth previous = months.put(key, month);
+        bytes += month.bytes() - (previous != null ? previous.bytes() : 0);
+        Iterator<Map.Entry<String, ArchivedMonth>> eldest = months.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return months.size();
+    }
+}
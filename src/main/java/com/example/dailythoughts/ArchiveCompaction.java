@@ -0,0 +1,75 @@
+package com.example.dailythoughts;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+// Scheduled job (dailythoughts.archive.schedule, a cron expression; "-" turns it off) that moves the
+// months older than dailythoughts.archive.after-months out of each open diary's hot nodes and into
+// ThoughtArchive. Open diaries are the ones whose listeners and initial sync pay for old thoughts; a
+// closed diary is compacted on a run after it is next opened. Running it again, here or on another
+// instance, is safe: a month already archived is merged, not replaced.
+@Component
+@Profile("!embedded")
+public class ArchiveCompaction {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveCompaction.class);
+
+    // Compaction reads a whole month at a time, so it gets longer than a page read
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+
+    private final RealtimeDatabase database;
+    private final Diaries diaries;
+    private final ArchiveCache cache;
+    private final int afterMonths;
+    private final Clock clock;
+
+    @Autowired
+    public ArchiveCompaction(RealtimeDatabase database, Diaries diaries, ArchiveCache cache,
+                             @Value("${dailythoughts.archive.after-months:12}") int afterMonths) {
+        this(database, diaries, cache, afterMonths, Clock.systemDefaultZone());
+    }
+
+    ArchiveCompaction(RealtimeDatabase database, Diaries diaries, ArchiveCache cache, int afterMonths, Clock clock) {
+        this.database = database;
+        this.diaries = diaries;
+        this.cache = cache;
+        this.afterMonths = afterMonths;
+        this.clock = clock;
+    }
+
+    @Scheduled(cron = "${dailythoughts.archive.schedule:0 30 3 * * *}")
+    public void run() {
+        YearMonth cutoff = YearMonth.now(clock).minusMonths(afterMonths);
+        log.info("Archiving months before {} of {} open diaries", cutoff, diaries.openIds().size());
+        int archived = 0;
+        for (String id : diaries.openIds()) {
+            archived += compact(id, cutoff);
+        }
+        log.info("Archived {} months", archived);
+    }
+
+    // Months archived; a diary that fails is logged and left for the next run
+    int compact(String diaryId, YearMonth cutoff) {
+        try {
+            return new ThoughtArchive(database, Diaries.root(diaryId), cache, READ_TIMEOUT).compact(cutoff);
+        } catch (TimeoutException e) {
+            log.warn("Archiving diary {} timed out, continuing on the next run", diaryId);
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("Archiving diary {} failed: {}", diaryId, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+}
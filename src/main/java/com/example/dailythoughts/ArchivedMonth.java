@@ -0,0 +1,80 @@
+package com.example.dailythoughts;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// One month of a diary moved out of the hot nodes by ThoughtArchive, decoded: its thoughts newest
+// first and its day rows newest day first. Immutable, so the ArchiveCache can share it between requests.
+//
+// Stored as archive/{yyyy-MM}: a single string, the base64 of the gzipped JSON
+// {"thoughts": {key: value}, "days": {day: value}} with values exactly as they were stored.
+record ArchivedMonth(String month, List<Thought> thoughts, NavigableMap<String, DailyThought> days, long bytes) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final String THOUGHTS = "thoughts";
+    static final String DAYS = "days";
+
+    static ArchivedMonth decode(String month, String blob) {
+        Map<String, Map<String, Object>> raw = decodeRaw(blob);
+
+        List<Thought> thoughts = new ArrayList<>();
+        long bytes = 0;
+        for (Map.Entry<String, Object> child : raw.get(THOUGHTS).entrySet()) {
+            Thought thought = Thought.fromValue(child.getKey(), child.getValue());
+            thoughts.add(thought);
+            bytes += FirebaseService.sizeOf(thought);
+        }
+        thoughts.sort(Thought::newestFirst);
+
+        NavigableMap<String, DailyThought> days = new TreeMap<String, DailyThought>().descendingMap();
+        for (Map.Entry<String, Object> child : raw.get(DAYS).entrySet()) {
+            DailyThought day = DailyThought.fromValue(child.getValue());
+            days.put(child.getKey(), day);
+            bytes += child.getKey().length() + day.getYourThought().length() + day.getHerThought().length();
+        }
+        return new ArchivedMonth(month, List.copyOf(thoughts), Collections.unmodifiableNavigableMap(days), bytes);
+    }
+
+    // The stored children, by "thoughts" and "days"; both present, possibly empty
+    @SuppressWarnings("unchecked")
+    static Map<String, Map<String, Object>> decodeRaw(String blob) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(blob)))) {
+            Map<String, Object> value = MAPPER.readValue(in, Map.class);
+            Map<String, Map<String, Object>> raw = new HashMap<>();
+            for (String node : new String[]{THOUGHTS, DAYS}) {
+                Object children = value.get(node);
+                raw.put(node, children instanceof Map<?, ?> map ? (Map<String, Object>) map : new HashMap<>());
+            }
+            return raw;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable archived month", e);
+        }
+    }
+
+    static String encode(Map<String, Object> thoughts, Map<String, Object> days) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            MAPPER.writeValue(gzip, Map.of(THOUGHTS, new TreeMap<>(thoughts), DAYS, new TreeMap<>(days)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in memory
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    // Stored next to the blob under archived/{yyyy-MM}; changes whenever the blob does
+    static String version(String blob) {
+        CRC32 crc = new CRC32();
+        crc.update(blob.getBytes(StandardCharsets.US_ASCII));
+        return Long.toHexString(crc.getValue()) + "-" + blob.length();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.dailythoughts;
+
+// The two diary authors: the id stored in each thought's "author" field and the field of the day
+// node their latest thought goes to
+public enum Author {
+
+    YOU("you", DailyThought.YOUR_THOUGHT),
+    HER("her", DailyThought.HER_THOUGHT);
+
+    private final String id;
+    private final String field;
+
+    Author(String id, String field) {
+        this.id = id;
+        this.field = field;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    String field() {
+        return field;
+    }
+
+    // null for anything but "you" and "her"
+    static Author of(String id) {
+        if (YOU.id.equals(id)) {
+            return YOU;
+        } else if (HER.id.equals(id)) {
+            return HER;
+        }
+        return null;
+    }
+}
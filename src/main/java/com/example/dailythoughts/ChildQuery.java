@@ -0,0 +1,38 @@
+package com.example.dailythoughts;
+
+// Ordered query over the children of a node, mirroring the Firebase Query builder.
+// orderBy is a child name, or null to order by key. Bounds are exclusive; children with the same
+// order value are ordered by key, and endBeforeKey (if set) ends the query at that key among the
+// children whose value is endBefore.
+public record ChildQuery(String orderBy, Object startAfter, Object endBefore, String endBeforeKey,
+                         Integer limitToFirst, Integer limitToLast) {
+
+    public static ChildQuery byChild(String child) {
+        return new ChildQuery(child, null, null, null, null, null);
+    }
+
+    public static ChildQuery byKey() {
+        return new ChildQuery(null, null, null, null, null, null);
+    }
+
+    public ChildQuery startAfter(Object value) {
+        return new ChildQuery(orderBy, value, endBefore, endBeforeKey, limitToFirst, limitToLast);
+    }
+
+    public ChildQuery endBefore(Object value) {
+        return new ChildQuery(orderBy, startAfter, value, null, limitToFirst, limitToLast);
+    }
+
+    // Children ordered before the one with this value and key
+    public ChildQuery endBefore(Object value, String key) {
+        return new ChildQuery(orderBy, startAfter, value, key, limitToFirst, limitToLast);
+    }
+
+    public ChildQuery limitToFirst(int limit) {
+        return new ChildQuery(orderBy, startAfter, endBefore, endBeforeKey, limit, null);
+    }
+
+    public ChildQuery limitToLast(int limit) {
+        return new ChildQuery(orderBy, startAfter, endBefore, endBeforeKey, null, limit);
+    }
+}
@@ -1,25 +1,88 @@
 package com.example.dailythoughts;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Both authors' latest thoughts for one day; stored under days/{yyyy-MM-dd} and rendered by home.html.
+// Immutable: a change makes a new row, so a row can be shared between the cache and pages being rendered.
 public class DailyThought {
 
-    private String yourThought = "";
-    private String herThought = "";
+    static final String YOUR_THOUGHT = "yourThought";
+    static final String HER_THOUGHT = "herThought";
 
-    public DailyThought() {}
+    static final DailyThought EMPTY = new DailyThought("", "");
 
-    public String getYourThought() {
-        return yourThought;
-    }
+    private final String yourThought;
+    private final String herThought;
 
-    public void setYourThought(String yourThought) {
+    public DailyThought(String yourThought, String herThought) {
         this.yourThought = yourThought;
+        this.herThought = herThought;
+    }
+
+    public String getYourThought() {
+        return yourThought;
     }
 
     public String getHerThought() {
         return herThought;
     }
 
-    public void setHerThought(String herThought) {
-        this.herThought = herThought;
+    // A copy with the author's thought replaced; thoughts applied in date order leave the latest
+    DailyThought with(Author author, String thought) {
+        if (author == Author.YOU) {
+            return new DailyThought(thought, herThought);
+        } else if (author == Author.HER) {
+            return new DailyThought(yourThought, thought);
+        }
+        return this;
+    }
+
+    DailyThought with(Thought thought) {
+        return with(thought.author(), thought.text());
+    }
+
+    // Field of the day node an author writes to, or null for unknown authors
+    static String fieldFor(String author) {
+        Author known = Author.of(author);
+        return known != null ? known.field() : null;
+    }
+
+    // "yyyy-MM-dd HH:mm:ss" (or its key form with dashes) -> "yyyy-MM-dd"
+    static String dayOf(String date) {
+        return date.length() > 10 ? date.substring(0, 10) : date;
+    }
+
+    // Stable 64-bit fingerprint of one day row. Summed over all days it gives a digest of the
+    // whole index that is independent of order and can be updated one day at a time.
+    static long digest(String day, DailyThought dailyThought) {
+        if (dailyThought == null) {
+            return 0;
+        }
+        long hash = day.hashCode();
+        hash = hash * 0x9E3779B97F4A7C15L + Objects.hashCode(dailyThought.yourThought);
+        hash = hash * 0x9E3779B97F4A7C15L + Objects.hashCode(dailyThought.herThought);
+        // Final mix so near-identical rows spread over all bits
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    static DailyThought fromValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Object your = map.get(YOUR_THOUGHT);
+            Object her = map.get(HER_THOUGHT);
+            return new DailyThought(your != null ? your.toString() : "", her != null ? her.toString() : "");
+        }
+        return EMPTY;
+    }
+
+    Map<String, Object> toValue() {
+        Map<String, Object> value = new HashMap<>();
+        value.put(YOUR_THOUGHT, yourThought);
+        value.put(HER_THOUGHT, herThought);
+        return value;
     }
 }
@@ -0,0 +1,149 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Builds days/{yyyy-MM-dd} from the thoughts already in Firebase, for thoughts saved before the day
+// index existed. It works on the diary dailythoughts.days.backfill-diary (the default diary unless set),
+// or on the top-level nodes from before diaries when that is set empty.
+//
+// With dailythoughts.days.backfill=auto (the default) it runs on startup when the diary has thoughts
+// but no days yet, as a deployment upgraded from before the index has; a failure is logged and the
+// next start tries again. true runs it whatever is there, false never.
+//
+// Thoughts are read in key order, a page at a time. Keys are time-ordered, so a day's thoughts
+// arrive together and oldest first; each finished day is queued and written in multi-path updates
+// of batchSize days. Run ThoughtKeyMigration first: legacy date keys sort after push IDs.
+// Re-running it is safe: it rewrites each day from the same source data. It runs after
+// DiaryMigration, which moves the top-level nodes into the default diary.
+@Component
+@Profile("!embedded")
+@Order(2)
+public class DayBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DayBackfill.class);
+
+    private final RealtimeDatabase database;
+    private final String mode;
+    private final String thoughtsPath;
+    private final String daysPath;
+    private final int pageSize;
+    private final int batchSize;
+
+    @Autowired
+    public DayBackfill(RealtimeDatabase database,
+                       @Value("${dailythoughts.days.backfill:auto}") String mode,
+                       @Value("${dailythoughts.days.backfill-diary:${dailythoughts.diaries.default-id:default}}")
+                       String diaryId,
+                       @Value("${dailythoughts.days.backfill-page-size:500}") int pageSize,
+                       @Value("${dailythoughts.days.backfill-batch-size:100}") int batchSize) {
+        String root = diaryId.isEmpty() ? "" : Diaries.root(diaryId);
+        this.database = database;
+        this.mode = mode;
+        this.thoughtsPath = root + "thoughts";
+        this.daysPath = root + "days";
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+    }
+
+    // The top-level nodes
+    DayBackfill(RealtimeDatabase database, int pageSize, int batchSize) {
+        this(database, "true", "", pageSize, batchSize);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        switch (mode) {
+            case "true" -> {
+                log.info("Backfilling day index of {}...", thoughtsPath);
+                log.info("Backfilled {} days", backfill());
+            }
+            case "auto" -> {
+                try {
+                    if (due()) {
+                        log.info("{} has thoughts but no days yet; backfilling its day index...", thoughtsPath);
+                        log.info("Backfilled {} days", backfill());
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Day index backfill failed, will try again on the next start: {}", e.getMessage());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    // Whether the thoughts have no day index at all yet
+    boolean due() {
+        return !first(thoughtsPath).isEmpty() && first(daysPath).isEmpty();
+    }
+
+    private Map<String, Object> first(String path) {
+        return database.query(path, ChildQuery.byKey().limitToFirst(1)).join();
+    }
+
+    // Returns the number of days written
+    int backfill() {
+        Map<String, Object> pending = new LinkedHashMap<>();
+        int written = 0;
+
+        String currentDay = null;
+        DailyThought current = null;
+        String lastKey = null;
+
+        while (true) {
+            ChildQuery query = ChildQuery.byKey().limitToFirst(pageSize);
+            if (lastKey != null) {
+                query = query.startAfter(lastKey);
+            }
+            Map<String, Object> page = database.query(thoughtsPath, query).join();
+
+            for (Map.Entry<String, Object> child : page.entrySet()) {
+                lastKey = child.getKey();
+                Thought thought = Thought.fromValue(child.getKey(), child.getValue());
+                String day = DailyThought.dayOf(thought.date() != null ? thought.date() : child.getKey());
+                if (!day.equals(currentDay)) {
+                    if (current != null) {
+                        pending.put(daysPath + "/" + currentDay, current.toValue());
+                    }
+                    currentDay = day;
+                    current = DailyThought.EMPTY;
+                }
+                current = current.with(thought);
+            }
+
+            if (pending.size() >= batchSize) {
+                written += flush(pending);
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        if (current != null) {
+            pending.put(daysPath + "/" + currentDay, current.toValue());
+        }
+        return written + flush(pending);
+    }
+
+    private int flush(Map<String, Object> pending) {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        database.update("", new LinkedHashMap<>(pending)).join();
+        int flushed = pending.size();
+        pending.clear();
+        log.info("Wrote {} days", flushed);
+        return flushed;
+    }
+}
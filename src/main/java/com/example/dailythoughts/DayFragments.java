@@ -0,0 +1,181 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.*;
+
+// The history rows of home.html, rendered once and kept as strings: a past day rarely changes,
+// so /diary concatenates cached rows and only renders days that are new or were edited. Rows are rendered
+// from day.html, the same fragment home.html uses for the day-template the live feed fills in.
+//
+// A row is cached under diary/day with the digest of the DailyThought it was rendered from, and is only
+// served for that same content. Fragments are bounded by their length in chars (a byte each for Latin-1
+// text), least recently used first. Each diary with cached rows is watched (see ThoughtRepository.watchDays),
+// so a day changed or removed by saveThought or deleteThought, here or on another instance, is dropped at
+// once; the fragments of a diary Diaries closes go with it.
+@Component
+public class DayFragments {
+
+    private static final Set<String> ROW = Set.of("row");
+
+    private final Diaries diaries;
+    private final ITemplateEngine templateEngine;
+    private final long maxBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Fragment> fragments = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, RealtimeDatabase.Registration> watches = new HashMap<>();
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public DayFragments(Diaries diaries,
+                        ITemplateEngine templateEngine,
+                        @Value("${dailythoughts.fragments.cache-bytes:8388608}") long maxBytes,
+                        MeterRegistry registry) {
+        this.diaries = diaries;
+        this.templateEngine = templateEngine;
+        this.maxBytes = maxBytes;
+
+        Gauge.builder("dailythoughts.fragments.cache.size", this, DayFragments::bytes)
+                .description("Bytes of rendered history rows held for /diary")
+                .baseUnit("bytes")
+                .register(registry);
+        this.hits = Counter.builder("dailythoughts.fragments.cache.requests")
+                .description("History rows looked up while rendering /diary")
+                .tag("result", "hit")
+                .register(registry);
+        this.misses = Counter.builder("dailythoughts.fragments.cache.requests")
+                .description("History rows looked up while rendering /diary")
+                .tag("result", "miss")
+                .register(registry);
+        this.evictions = Counter.builder("dailythoughts.fragments.cache.evictions")
+                .description("Rendered rows dropped to stay within dailythoughts.fragments.cache-bytes")
+                .register(registry);
+
+        diaries.onEviction(this::forgetDiary);
+    }
+
+    // The HTML of one history row, from the cache when the day has not changed since
+    public String html(String diaryId, String day, DailyThought dailyThought) {
+        String key = diaryId + "/" + day;
+        long version = DailyThought.digest(day, dailyThought);
+        String cached = lookup(key, version);
+        if (cached != null) {
+            return cached;
+        }
+
+        String html = render(day, dailyThought);
+        watch(diaryId);
+        store(key, new Fragment(version, html));
+        return html;
+    }
+
+    // day.html's row for the day
+    String render(String day, DailyThought dailyThought) {
+        Context context = new Context(Locale.ENGLISH);
+        context.setVariable("day", day);
+        context.setVariable("yourThought", dailyThought.getYourThought());
+        context.setVariable("herThought", dailyThought.getHerThought());
+        return templateEngine.process("day", ROW, context);
+    }
+
+    // Drop the day's row; called for every day changed in a watched diary
+    synchronized void forget(String diaryId, String day) {
+        Fragment removed = fragments.remove(diaryId + "/" + day);
+        if (removed != null) {
+            bytes -= removed.html().length();
+        }
+    }
+
+    // Drop every row of the diary and stop watching it
+    void forgetDiary(String diaryId) {
+        RealtimeDatabase.Registration watch;
+        synchronized (this) {
+            watch = watches.remove(diaryId);
+            String prefix = diaryId + "/";
+            Iterator<Map.Entry<String, Fragment>> entries = fragments.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Fragment> entry = entries.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    bytes -= entry.getValue().html().length();
+                    entries.remove();
+                }
+            }
+        }
+        if (watch != null) {
+            watch.remove();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        List<String> watched;
+        synchronized (this) {
+            watched = List.copyOf(watches.keySet());
+        }
+        watched.forEach(this::forgetDiary);
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return fragments.size();
+    }
+
+    private synchronized String lookup(String key, long version) {
+        Fragment fragment = fragments.get(key);
+        if (fragment != null && fragment.version() == version) {
+            hits.increment();
+            return fragment.html();
+        }
+        misses.increment();
+        return null;
+    }
+
+    // Watches are added and removed outside the lock: the repository may call forget holding its own
+    private void watch(String diaryId) {
+        synchronized (this) {
+            if (watches.containsKey(diaryId)) {
+                return;
+            }
+        }
+        RealtimeDatabase.Registration watch = diaries.get(diaryId).watchDays((day, dailyThought) -> forget(diaryId, day));
+        synchronized (this) {
+            if (watches.putIfAbsent(diaryId, watch) == null) {
+                return;
+            }
+        }
+        watch.remove();
+    }
+
+    // A row larger than the whole cache is not kept
+    private synchronized void store(String key, Fragment fragment) {
+        if (fragment.html().length() > maxBytes) {
+            return;
+        }
+        Fragment previous = fragments.put(key, fragment);
+        bytes += fragment.html().length() - (previous != null ? previous.html().length() : 0);
+        Iterator<Map.Entry<String, Fragment>> eldest = fragments.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().html().length();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // Rendered from the day row whose digest is version
+    private record Fragment(long version, String html) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.dailythoughts;
+
+import java.util.Map;
+
+// One page of the per-day index, newest day first.
+// nextCursor is the day (yyyy-MM-dd) to pass as ?before= for the next (older) page, or null on the last page.
+// stale is set when the database did not answer in time and an earlier copy is shown instead.
+public record DayPage(Map<String, DailyThought> days, String nextCursor, boolean stale) {
+
+    public DayPage(Map<String, DailyThought> days, String nextCursor) {
+        this(days, nextCursor, false);
+    }
+
+    DayPage markStale() {
+        return new DayPage(days, nextCursor, true);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// Every diary by ID, each a ThoughtRepository of its own over diaries/{id}/ (see DiaryStore).
+//
+// An open diary keeps its listeners attached and its thoughts in memory, so only the cacheSize most
+// recently used diaries stay open: they sit in an access-ordered map, and opening one more closes the
+// least recently used, which detaches its listeners and lets its caches go. A closed diary is opened
+// again, and reloaded, on its next request. Memory and listener count so grow with cacheSize, not with
+// the number of diaries. Eviction listeners hear about each diary once it is closed.
+@Component
+public class Diaries {
+
+    private static final Logger log = LoggerFactory.getLogger(Diaries.class);
+
+    // Safe as a database path segment, a file name and inside the session cookie
+    private static final Pattern ID = Pattern.compile("[a-z0-9][a-z0-9-]{0,39}");
+
+    private final DiaryStore store;
+    private final String defaultId;
+    private final int cacheSize;
+
+    // Least recently used first; guarded by this
+    private final LinkedHashMap<String, ThoughtRepository> open = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private final Counter opened;
+    private final Counter evictions;
+
+    public Diaries(DiaryStore store,
+                   @Value("${dailythoughts.diaries.default-id:default}") String defaultId,
+                   @Value("${dailythoughts.diaries.cache-size:1000}") int cacheSize,
+                   MeterRegistry registry) {
+        if (!isValidId(defaultId)) {
+            throw new IllegalArgumentException("dailythoughts.diaries.default-id: not a diary ID: " + defaultId);
+        }
+        this.store = store;
+        this.defaultId = defaultId;
+        this.cacheSize = cacheSize;
+
+        Gauge.builder("dailythoughts.diaries.open", this, Diaries::size)
+                .description("Diaries open in memory, at most dailythoughts.diaries.cache-size")
+                .register(registry);
+        Gauge.builder("dailythoughts.snapshot.size", this, Diaries::cachedBytes)
+                .description("Approximate payload size of the thoughts cached by all open diaries")
+                .baseUnit("bytes")
+                .register(registry);
+        this.opened = Counter.builder("dailythoughts.diaries.opened")
+                .description("Diaries opened, including reopened after eviction")
+                .register(registry);
+        this.evictions = Counter.builder("dailythoughts.diaries.evictions")
+                .description("Diaries closed to make room for another")
+                .register(registry);
+    }
+
+    static boolean isValidId(String id) {
+        return id != null && ID.matcher(id).matches();
+    }
+
+    // "diaries/{id}/", the prefix of every node of the diary
+    static String root(String id) {
+        return "diaries/" + id + "/";
+    }
+
+    // The diary logins without a diary go to, and the one legacy data moves into (DiaryMigration)
+    public String defaultId() {
+        return defaultId;
+    }
+
+    // The diary's repository, opened if it is not; IllegalArgumentException for an invalid ID.
+    // Closing evicted diaries and telling the listeners happens after the lock is released
+    public ThoughtRepository get(String id) {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Not a diary ID: " + id);
+        }
+        ThoughtRepository diary;
+        List<Map.Entry<String, ThoughtRepository>> evicted = new ArrayList<>();
+        synchronized (this) {
+            diary = open.get(id);
+            if (diary == null) {
+                diary = store.open(id);
+                open.put(id, diary);
+                opened.increment();
+                Iterator<Map.Entry<String, ThoughtRepository>> eldest = open.entrySet().iterator();
+                while (open.size() > cacheSize) {
+                    Map.Entry<String, ThoughtRepository> entry = eldest.next();
+                    evicted.add(Map.entry(entry.getKey(), entry.getValue()));
+                    eldest.remove();
+                }
+            }
+        }
+        for (Map.Entry<String, ThoughtRepository> entry : evicted) {
+            log.debug("Closing least recently used diary {}", entry.getKey());
+            evictions.increment();
+            closeDiary(entry.getKey(), entry.getValue());
+        }
+        return diary;
+    }
+
+    // Call listener with the ID of every diary closed from now on, after it is closed
+    public RealtimeDatabase.Registration onEviction(Consumer<String> listener) {
+        evictionListeners.add(listener);
+        return () -> evictionListeners.remove(listener);
+    }
+
+    // IDs of the open diaries, least recently used first
+    public synchronized List<String> openIds() {
+        return new ArrayList<>(open.keySet());
+    }
+
+    synchronized int size() {
+        return open.size();
+    }
+
+    synchronized long cachedBytes() {
+        long bytes = 0;
+        for (ThoughtRepository diary : open.values()) {
+            bytes += diary.cachedBytes();
+        }
+        return bytes;
+    }
+
+    @PreDestroy
+    public void close() {
+        List<Map.Entry<String, ThoughtRepository>> all = new ArrayList<>();
+        synchronized (this) {
+            open.forEach((id, diary) -> all.add(Map.entry(id, diary)));
+            open.clear();
+        }
+        for (Map.Entry<String, ThoughtRepository> entry : all) {
+            closeDiary(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void closeDiary(String id, ThoughtRepository diary) {
+        store.close(diary);
+        for (Consumer<String> listener : evictionListeners) {
+            try {
+                listener.accept(id);
+            } catch (RuntimeException e) {
+                log.error("Eviction listener failed: {}", e.getMessage());
+            }
+        }
+    }
+}
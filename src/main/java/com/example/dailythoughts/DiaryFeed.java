@@ -0,0 +1,224 @@
+package com.example.dailythoughts;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Live feed behind /diary/stream: every changed day row of a diary, pushed to the pages open on that
+// diary as a server-sent event.
+//
+// One repository watch per diary (fed by the days listener the repository keeps anyway) serves all of
+// its connections. A change is serialized once and offered to each subscriber's bounded queue, so
+// fan-out never waits on a socket; each subscriber's own virtual thread writes its queue to the client.
+// A client too slow to keep up fills its queue and is disconnected instead of holding up the others;
+// EventSource reconnects it, and the page it reloads is current. The connections of a diary Diaries
+// closes are ended the same way, and reconnecting opens the diary again.
+@Component
+public class DiaryFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(DiaryFeed.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Diaries diaries;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final Duration heartbeat;
+    private final Duration timeout;
+
+    // Connections by diary; a channel and its watch live until the diary is closed. Channels are
+    // added and removed under this, their subscribers change without it
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Counter dropped;
+
+    public DiaryFeed(Diaries diaries,
+                     @Value("${dailythoughts.feed.buffer-size:32}") int bufferSize,
+                     @Value("${dailythoughts.feed.max-subscribers:10000}") int maxSubscribers,
+                     @Value("${dailythoughts.feed.heartbeat:25s}") Duration heartbeat,
+                     @Value("${dailythoughts.feed.timeout:30m}") Duration timeout,
+                     MeterRegistry registry) {
+        this.diaries = diaries;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+
+        Gauge.builder("dailythoughts.feed.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open /diary/stream connections")
+                .register(registry);
+        this.dropped = Counter.builder("dailythoughts.feed.dropped")
+                .description("Live feed clients disconnected for falling behind")
+                .register(registry);
+
+        diaries.onEviction(this::closeDiary);
+    }
+
+    // A new connection to the diary's feed, or null when the feed is full
+    public SseEmitter subscribe(String diaryId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        return subscribe(diaryId, emitter) ? emitter : null;
+    }
+
+    boolean subscribe(String diaryId, SseEmitter emitter) {
+        // Take the slot first, so concurrent subscribes cannot all pass the check
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+
+        Subscriber subscriber;
+        try {
+            subscriber = join(diaryId, emitter);
+        } catch (RuntimeException e) {
+            subscriberCount.decrementAndGet();
+            throw e;
+        }
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        subscriber.writer.start();
+        return true;
+    }
+
+    int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    // Called on the repository's listener thread: never blocks
+    private void publish(Channel channel, String day, DailyThought dailyThought) {
+        if (channel.subscribers.isEmpty()) {
+            return;
+        }
+        String event = toJson(day, dailyThought);
+        for (Subscriber subscriber : channel.subscribers) {
+            if (!subscriber.queue.offer(event)) {
+                log.info("Dropping a live feed client that fell {} events behind", bufferSize);
+                dropped.increment();
+                unsubscribe(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (String diaryId : channels.keySet()) {
+            closeDiary(diaryId);
+        }
+    }
+
+    // A new subscriber in the diary's channel, which starts watching the diary if it is new. Should
+    // Diaries close the diary meanwhile, its eviction waits for this lock and so ends the subscriber too
+    private synchronized Subscriber join(String diaryId, SseEmitter emitter) {
+        Channel channel = channels.get(diaryId);
+        if (channel == null) {
+            Channel created = new Channel();
+            created.registration = diaries.get(diaryId)
+                    .watchDays((day, dailyThought) -> publish(created, day, dailyThought));
+            channels.put(diaryId, created);
+            channel = created;
+        }
+        Subscriber subscriber = new Subscriber(channel, emitter, new ArrayBlockingQueue<>(bufferSize));
+        subscriber.writer = Thread.ofVirtual().name("diary-feed").unstarted(() -> write(subscriber));
+        channel.subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    // The diary was closed, and its watch with it: end its connections
+    private synchronized void closeDiary(String diaryId) {
+        Channel channel = channels.remove(diaryId);
+        if (channel == null) {
+            return;
+        }
+        channel.registration.remove();
+        for (Subscriber subscriber : channel.subscribers) {
+            unsubscribe(subscriber);
+            subscriber.emitter.complete();
+        }
+    }
+
+    // The subscriber's virtual thread: sends queued events, and a comment when idle so dead
+    // connections are noticed and proxies keep the stream open
+    private void write(Subscriber subscriber) {
+        try {
+            while (subscriber.channel.subscribers.contains(subscriber)) {
+                String event = subscriber.queue.poll(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name("day").data(event));
+                }
+            }
+        } catch (InterruptedException e) {
+            // Unsubscribed while waiting
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter completed
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscriber.channel.subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+            if (subscriber.writer != Thread.currentThread()) {
+                subscriber.writer.interrupt();
+            }
+        }
+    }
+
+    private static String toJson(String day, DailyThought dailyThought) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("day", day);
+        if (dailyThought == null) {
+            event.put("removed", true);
+        } else {
+            event.put(DailyThought.YOUR_THOUGHT, dailyThought.getYourThought());
+            event.put(DailyThought.HER_THOUGHT, dailyThought.getHerThought());
+        }
+        try {
+            return MAPPER.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Channel {
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        RealtimeDatabase.Registration registration;
+    }
+
+    private static final class Subscriber {
+        final Channel channel;
+        final SseEmitter emitter;
+        final BlockingQueue<String> queue;
+        Thread writer;
+
+        Subscriber(Channel channel, SseEmitter emitter, BlockingQueue<String> queue) {
+            this.channel = channel;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
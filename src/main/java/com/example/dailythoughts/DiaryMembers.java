@@ -0,0 +1,15 @@
+package com.example.dailythoughts;
+
+import java.util.Map;
+
+// Who may log in to which diary. Each diary has the two members of Author, "you" and "her", each with
+// a password of their own.
+public interface DiaryMembers {
+
+    // The two accounts the app started with: every diary under the embedded profile, and the default
+    // diary in Firebase until it is given members of its own
+    Map<String, String> BUILT_IN = Map.of("you", "yourpassword", "her", "herpassword");
+
+    // Whether password is username's in the diary; IllegalStateException when that cannot be checked now
+    boolean authenticate(String diaryId, String username, String password);
+}
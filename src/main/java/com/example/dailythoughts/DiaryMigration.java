@@ -0,0 +1,97 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Moves the one diary from before diary IDs, the top-level thoughts and days nodes, to
+// diaries/{default-id}/. With dailythoughts.migration.diary=auto (the default) it runs on every start and
+// moves whatever is still at the top level, which after the first run is nothing; a failure is logged
+// and the next start tries again. true runs it and fails the start on an error, false never runs it.
+// ThoughtKeyMigration works on the top-level nodes, so run it first if it is still due; DayBackfill
+// runs after it and builds the diary's days if there were none to move.
+//
+// Both nodes are streamed in key-ordered pages. Each page becomes one multi-path update that writes
+// its children under the diary and removes them from the top level, so a child is never in both
+// places or in neither, and memory stays at one page. An interrupted run starts again on what is left.
+@Component
+@Profile("!embedded")
+@Order(1)
+public class DiaryMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DiaryMigration.class);
+
+    private static final String[] NODES = {"thoughts", "days"};
+
+    private final RealtimeDatabase database;
+    private final String mode;
+    private final String diaryId;
+    private final int pageSize;
+
+    public DiaryMigration(RealtimeDatabase database,
+                          @Value("${dailythoughts.migration.diary:auto}") String mode,
+                          @Value("${dailythoughts.diaries.default-id:default}") String diaryId,
+                          @Value("${dailythoughts.migration.page-size:500}") int pageSize) {
+        this.database = database;
+        this.mode = mode;
+        this.diaryId = diaryId;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        switch (mode) {
+            case "true" -> {
+                log.info("Moving the top-level diary to diary {}...", diaryId);
+                log.info("Moved {} thoughts and days to diary {}", migrate(), diaryId);
+            }
+            case "auto" -> {
+                try {
+                    int moved = migrate();
+                    if (moved > 0) {
+                        log.info("Moved {} thoughts and days of the top-level diary to diary {}", moved, diaryId);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Diary migration failed, will try again on the next start: {}", e.getMessage());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    // Returns the number of children moved by this run
+    int migrate() {
+        int moved = 0;
+        for (String node : NODES) {
+            String target = Diaries.root(diaryId) + node;
+            while (true) {
+                // Moved children are gone, so the next page is always the first one
+                Map<String, Object> page = database.query(node, ChildQuery.byKey().limitToFirst(pageSize)).join();
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                Map<String, Object> updates = new LinkedHashMap<>();
+                String lastKey = null;
+                for (Map.Entry<String, Object> child : page.entrySet()) {
+                    updates.put(target + "/" + child.getKey(), child.getValue());
+                    updates.put(node + "/" + child.getKey(), null);
+                    lastKey = child.getKey();
+                }
+                database.update("", updates).join();
+                moved += page.size();
+                log.info("Moved {} up to {}", node, lastKey);
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.dailythoughts;
+
+import java.util.List;
+import java.util.Map;
+
+// What /stats shows for one diary, built from the rollups (see StatsRollup): thoughts per author for
+// each month, newest month first, and each author's totals and writing streaks.
+// stale is set when the database did not answer in time (an earlier copy is shown instead) or its
+// listener was cancelled.
+public record DiaryStats(List<Month> months, Map<String, AuthorStats> authors, boolean stale) {
+
+    static final DiaryStats EMPTY = new DiaryStats(List.of(), Map.of(), false);
+
+    DiaryStats markStale() {
+        return new DiaryStats(months, authors, true);
+    }
+
+    // Thoughts per author id in one yyyy-MM month
+    public record Month(String month, Map<String, Long> counts) {
+    }
+
+    // lastWritten is the latest yyyy-MM-dd with a thought (null if none). currentStreak counts the
+    // consecutive days up to today, or up to yesterday while today is still open; longestStreak the
+    // longest run ever
+    public record AuthorStats(long thoughts, String lastWritten, int currentStreak, int longestStreak) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.dailythoughts;
+
+// Opens and closes the repository of one diary for Diaries; one implementation per storage profile.
+public interface DiaryStore {
+
+    // A repository over the diary's data, empty for a diary nobody has written to yet. Cheap:
+    // nothing is loaded until the repository is first read
+    ThoughtRepository open(String diaryId);
+
+    // Detach a repository from its storage for good; it was made by open and is not used again
+    void close(ThoughtRepository diary);
+}
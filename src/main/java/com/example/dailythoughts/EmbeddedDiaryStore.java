@@ -0,0 +1,47 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+// Diaries on local disk (profile "embedded"): an EmbeddedThoughtRepository per diary, in {id}.log
+// under dailythoughts.embedded.dir. Opening one replays its log, so it costs a file read.
+@Component
+@Profile("embedded")
+public class EmbeddedDiaryStore implements DiaryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedDiaryStore.class);
+
+    private final Path dir;
+    private final long compactThreshold;
+
+    public EmbeddedDiaryStore(@Value("${dailythoughts.embedded.dir:data/diaries}") String dir,
+                              @Value("${dailythoughts.embedded.compact-threshold:1048576}") long compactThreshold) {
+        this.dir = Path.of(dir);
+        this.compactThreshold = compactThreshold;
+    }
+
+    @Override
+    public ThoughtRepository open(String diaryId) {
+        try {
+            return new EmbeddedThoughtRepository(dir.resolve(diaryId + ".log").toString(), compactThreshold);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close(ThoughtRepository diary) {
+        try {
+            ((EmbeddedThoughtRepository) diary).close();
+        } catch (IOException e) {
+            log.warn("Error closing a diary log: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.example.dailythoughts;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+// Local, network-free ThoughtRepository for development and load tests (profile "embedded"), one log
+// file per diary; EmbeddedDiaryStore opens and closes them.
+//
+// Thoughts live in an append-only log file that is memory-mapped and grown on demand.
+// Each record is [int length][int crc32][body], body = [type][long timestamp][key][date][author][thought],
+// strings as [int length][UTF-8]. A delete appends a tombstone. Logs written before thoughts had their
+// own keys hold PUT records without the key field; their date doubles as the key. The length is written last,
+// so a torn append fails its CRC and is dropped when the index is rebuilt on startup. Each append forces
+// its own region to disk before a save or delete returns, so an acknowledged write survives a crash.
+// Once dead records outweigh live ones the log is rewritten with only the live records.
+// The live thoughts are also held in memory (HistoryIndex), which serves every read; the log is
+// only read back on startup and when compacting. The per-day index is derived from the live records
+// as they are applied, so it needs no backfill; so are the stats rollups.
+public class EmbeddedThoughtRepository implements ThoughtRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedThoughtRepository.class);
+
+    private static final byte PUT = 1; // legacy: keyed by date
+    private static final byte DELETE = 2;
+    private static final byte PUT_KEYED = 3;
+    private static final int HEADER = 8;
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    private final Path path;
+    private final long compactThreshold;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HistoryIndex index = new HistoryIndex();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final ThoughtKeys keys = new ThoughtKeys();
+
+    // Offset of the live record for each key; guarded by lock
+    private final Map<String, Integer> offsets = new HashMap<>();
+    // Keys of the live records of each day; guarded by lock
+    private final Map<String, Set<String>> keysByDay = new HashMap<>();
+    // Latest thoughts per day, newest day first; guarded by lock
+    private final NavigableMap<String, DailyThought> days = new TreeMap<>(Comparator.reverseOrder());
+    // Sum of DailyThought.digest over days; guarded by lock
+    private long daysDigest;
+    // Thoughts per author and day; guarded by lock
+    private final StatsRollup stats = new StatsRollup();
+    // Told about every refreshed day, under the write lock
+    private final List<BiConsumer<String, DailyThought>> dayWatchers = new CopyOnWriteArrayList<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private long deadBytes;
+
+    public EmbeddedThoughtRepository(String path, long compactThreshold) throws IOException {
+        this.path = Path.of(path);
+        this.compactThreshold = compactThreshold;
+
+        if (this.path.getParent() != null) {
+            Files.createDirectories(this.path.getParent());
+        }
+        channel = FileChannel.open(this.path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_SIZE));
+
+        recover();
+        compactIfNeeded();
+        log.info("Embedded store ready: {} thoughts in {}", offsets.size(), this.path);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveThought(String date, String author, String thought) {
+        lock.writeLock().lock();
+        try {
+            long timestamp = System.currentTimeMillis();
+            String key = keys.next(timestamp);
+            int offset = append(encode(PUT_KEYED, timestamp, key, date, author, thought));
+            applyPut(new Thought(key, Author.of(author), thought, timestamp, date), offset);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            log.error("Error saving to embedded store: {}", e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Thought> loadAllThoughts() {
+        return index.all();
+    }
+
+    @Override
+    public ThoughtPage loadPage(ThoughtCursor before, int limit) {
+        return index.page(before, limit);
+    }
+
+    @Override
+    public ThoughtPage search(String query, ThoughtCursor before, int limit) {
+        lock.readLock().lock();
+        try {
+            HistoryIndex.Page page = searchIndex.search(query, before, limit);
+
+            List<Thought> thoughts = new ArrayList<>(page.keys().size());
+            for (String key : page.keys()) {
+                thoughts.add(index.get(key));
+            }
+            return new ThoughtPage(thoughts, page.nextCursor());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public DayPage loadDays(String before, int limit) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<String, DailyThought> older = before != null ? days.tailMap(before, false) : days;
+
+            Map<String, DailyThought> page = new LinkedHashMap<>();
+            String nextCursor = null;
+            String lastDay = null;
+            for (Map.Entry<String, DailyThought> entry : older.entrySet()) {
+                if (page.size() == limit) {
+                    nextCursor = lastDay;
+                    break;
+                }
+                page.put(entry.getKey(), entry.getValue());
+                lastDay = entry.getKey();
+            }
+            return new DayPage(page, nextCursor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public RealtimeDatabase.Registration watchDays(BiConsumer<String, DailyThought> listener) {
+        dayWatchers.add(listener);
+        return () -> dayWatchers.remove(listener);
+    }
+
+    @Override
+    public String version() {
+        lock.readLock().lock();
+        try {
+            return Long.toHexString(daysDigest) + "-" + days.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public DiaryStats loadStats() {
+        lock.readLock().lock();
+        try {
+            return stats.toStats(LocalDate.now());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteThought(String key) {
+        lock.writeLock().lock();
+        try {
+            if (!offsets.containsKey(key)) {
+                return;
+            }
+            int offset = append(encode(DELETE, 0L, key, key, "", ""));
+            applyDelete(key, offset);
+            compactIfNeeded();
+        } catch (IOException e) {
+            log.error("Error deleting from embedded store: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Live records, which is what the in-memory index holds
+    @Override
+    public long cachedBytes() {
+        lock.readLock().lock();
+        try {
+            return writePosition - deadBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rebuild the index by replaying the log up to the first empty or corrupt record
+    private void recover() {
+        int position = 0;
+        while (position + HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER + length > buffer.capacity()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(position + HEADER, body);
+            if (buffer.getInt(position + 4) != checksum(body)) {
+                log.warn("Dropping torn record at offset {} in {}", position, path);
+                buffer.putInt(position, 0);
+                break;
+            }
+
+            Record record = decode(body);
+            if (record.type() == DELETE) {
+                applyDelete(record.key(), position);
+            } else {
+                applyPut(record.toThought(), position);
+            }
+            position += HEADER + length;
+        }
+        writePosition = position;
+    }
+
+    private void applyPut(Thought thought, int offset) {
+        Integer previous = offsets.put(thought.key(), offset);
+        if (previous != null) {
+            deadBytes += recordSize(previous);
+            stats.add(read(previous).toThought(), -1);
+        }
+        stats.add(thought, 1);
+        index.put(thought);
+        searchIndex.put(thought.key(), thought.timestamp(), thought.text());
+        String day = DailyThought.dayOf(thought.date());
+        keysByDay.computeIfAbsent(day, ignored -> new HashSet<>()).add(thought.key());
+        refreshDay(day);
+    }
+
+    private void applyDelete(String key, int offset) {
+        Integer previous = offsets.remove(key);
+        deadBytes += recordSize(offset);
+        index.remove(key);
+        searchIndex.remove(key);
+        if (previous != null) {
+            Thought thought = read(previous).toThought();
+            String day = DailyThought.dayOf(thought.date());
+            stats.add(thought, -1);
+            deadBytes += recordSize(previous);
+            Set<String> dayKeys = keysByDay.get(day);
+            dayKeys.remove(key);
+            if (dayKeys.isEmpty()) {
+                keysByDay.remove(day);
+            }
+            refreshDay(day);
+        }
+    }
+
+    // Rebuild one day from its live records, applied oldest first so the latest wins
+    private void refreshDay(String day) {
+        List<Thought> thoughts = new ArrayList<>();
+        for (String key : keysByDay.getOrDefault(day, Set.of())) {
+            thoughts.add(index.get(key));
+        }
+        if (thoughts.isEmpty()) {
+            daysDigest -= DailyThought.digest(day, days.remove(day));
+            notifyDayWatchers(day, null);
+            return;
+        }
+
+        thoughts.sort(Comparator.comparingLong(Thought::timestamp));
+        DailyThought dailyThought = DailyThought.EMPTY;
+        for (Thought thought : thoughts) {
+            dailyThought = dailyThought.with(thought);
+        }
+        daysDigest += DailyThought.digest(day, dailyThought) - DailyThought.digest(day, days.put(day, dailyThought));
+        notifyDayWatchers(day, dailyThought);
+    }
+
+    private void notifyDayWatchers(String day, DailyThought dailyThought) {
+        for (BiConsumer<String, DailyThought> watcher : dayWatchers) {
+            try {
+                watcher.accept(day, dailyThought);
+            } catch (RuntimeException e) {
+                log.error("Day watcher failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private int append(byte[] body) throws IOException {
+        int size = HEADER + body.length;
+        if ((long) writePosition + size > buffer.capacity()) {
+            long capacity = Math.max((long) buffer.capacity() * 2, (long) writePosition + size);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("Embedded store is full (2 GiB)");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        int offset = writePosition;
+        buffer.put(offset + HEADER, body);
+        buffer.putInt(offset + 4, checksum(body));
+        buffer.putInt(offset, body.length); // written last: makes the record visible
+        // Flush just this record to disk before the caller acknowledges the write
+        try {
+            buffer.force(offset, size);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writePosition += size;
+        return offset;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (deadBytes < compactThreshold || deadBytes * 2 < writePosition) {
+            return;
+        }
+
+        // Copy live records, oldest first, into a fresh log and swap it in atomically
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        List<Integer> live = new ArrayList<>(offsets.values());
+        Collections.sort(live);
+        long liveBytes = 0;
+        for (int offset : live) {
+            liveBytes += recordSize(offset);
+        }
+
+        FileChannel newChannel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(liveBytes * 2, INITIAL_SIZE));
+
+        Map<String, Integer> newOffsets = new HashMap<>();
+        int position = 0;
+        for (int offset : live) {
+            int size = recordSize(offset);
+            byte[] raw = new byte[size];
+            buffer.get(offset, raw);
+            newBuffer.put(position, raw);
+            newOffsets.put(read(offset).key(), position);
+            position += size;
+        }
+        newBuffer.force();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info("Compacted embedded store: {} -> {} bytes", writePosition, position);
+        channel.close();
+        channel = newChannel;
+        buffer = newBuffer;
+        writePosition = position;
+        deadBytes = 0;
+        offsets.clear();
+        offsets.putAll(newOffsets);
+    }
+
+    private int recordSize(int offset) {
+        return HEADER + buffer.getInt(offset);
+    }
+
+    private Record read(int offset) {
+        byte[] body = new byte[buffer.getInt(offset)];
+        buffer.get(offset + HEADER, body);
+        return decode(body);
+    }
+
+    private static byte[] encode(byte type, long timestamp, String key, String date, String author, String thought) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] dateBytes = date.getBytes(StandardCharsets.UTF_8);
+        byte[] authorBytes = author.getBytes(StandardCharsets.UTF_8);
+        byte[] thoughtBytes = thought.getBytes(StandardCharsets.UTF_8);
+        boolean keyed = type == PUT_KEYED;
+
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 + 12 + (keyed ? 4 + keyBytes.length : 0)
+                + dateBytes.length + authorBytes.length + thoughtBytes.length);
+        body.put(type).putLong(timestamp);
+        if (keyed) {
+            body.putInt(keyBytes.length).put(keyBytes);
+        }
+        body.putInt(dateBytes.length).put(dateBytes);
+        body.putInt(authorBytes.length).put(authorBytes);
+        body.putInt(thoughtBytes.length).put(thoughtBytes);
+        return body.array();
+    }
+
+    private static Record decode(byte[] bytes) {
+        ByteBuffer body = ByteBuffer.wrap(bytes);
+        byte type = body.get();
+        long timestamp = body.getLong();
+        String key = readString(body);
+        String date = type == PUT_KEYED ? readString(body) : key;
+        return new Record(type, timestamp, key, date, readString(body), readString(body));
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private record Record(byte type, long timestamp, String key, String date, String author, String thought) {
+        Thought toThought() {
+            return new Thought(key, Author.of(author), thought, timestamp, date);
+        }
+    }
+}
@@ -1,43 +1,102 @@
 package com.example.dailythoughts;
 
+import com.google.auth.oauth2.AccessToken;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
+// The one place Firebase is initialized.
+// FirebaseApp and the root reference are lazy singletons: nothing touches Firebase until the first
+// read, write or health check, so startup (and an AOT/CDS training run) never waits on credentials
+// parsing or a connection. The loadtest profile (tests only) brings its own RealtimeDatabase instead.
 @Configuration
+@Profile("!embedded & !loadtest")
 public class FirebaseConfig {
 
-    @PostConstruct
-    public void initialize() {
-        try {
-            if (FirebaseApp.getApps().isEmpty()) {
-                InputStream serviceAccount =
-                        new ClassPathResource("firebase-service-account.json").getInputStream();
+    private static final Logger log = LoggerFactory.getLogger(FirebaseConfig.class);
 
-                FirebaseOptions options = FirebaseOptions.builder()
-                        .setCredentials(GoogleCredentials.fromStream(serviceAccount))
-                        .setDatabaseUrl("https://diary-52aa2-default-rtdb.firebaseio.com/")
-                        .build();
+    // Service account JSON; the alternatives are names it has been deployed under before
+    private static final String[] CONFIG_VARIABLES = {
+            "FIREBASE_CONFIG", "FIREBASE_CONFIG_JSON", "FIREBASE_SERVICE_ACCOUNT", "FIREBASE_CREDENTIALS"
+    };
+    private static final String[] DB_URL_VARIABLES = {
+            "FIREBASE_DB_URL", "FIREBASE_DATABASE_URL", "FIREBASE_URL"
+    };
+    // Set by the Firebase emulator tooling; the Admin SDK then talks to it instead of the cloud
+    private static final String EMULATOR_HOST = "FIREBASE_DATABASE_EMULATOR_HOST";
 
-                FirebaseApp.initializeApp(options);
-                System.out.println("🔥 Firebase initialized successfully!");
-            }
-        } catch (IOException e) {
-            System.err.println("❌ Firebase initialization failed: " + e.getMessage());
-            e.printStackTrace();
+    @Bean
+    @Lazy
+    public FirebaseApp firebaseApp() throws IOException {
+        if (!FirebaseApp.getApps().isEmpty()) {
+            return FirebaseApp.getInstance();
         }
+
+        String firebaseConfig = firstEnv(CONFIG_VARIABLES);
+        String dbUrl = firstEnv(DB_URL_VARIABLES);
+        boolean emulator = System.getenv(EMULATOR_HOST) != null;
+
+        GoogleCredentials credentials;
+        if (firebaseConfig != null) {
+            credentials = GoogleCredentials.fromStream(
+                    new ByteArrayInputStream(firebaseConfig.getBytes(StandardCharsets.UTF_8)));
+        } else if (emulator) {
+            // The emulator accepts this token as an admin
+            credentials = GoogleCredentials.create(new AccessToken("owner", null));
+        } else {
+            throw new IllegalStateException("❌ FIREBASE_CONFIG environment variable is not set! "
+                    + "It should hold the complete Firebase service account JSON");
+        }
+
+        if (dbUrl == null && emulator) {
+            dbUrl = "https://dailythoughts-local.firebaseio.com"; // namespace on the emulator
+        } else if (dbUrl == null) {
+            throw new IllegalStateException("❌ FIREBASE_DB_URL environment variable is not set! "
+                    + "Example: https://your-project-id-default-rtdb.firebaseio.com");
+        }
+
+        FirebaseOptions options = FirebaseOptions.builder()
+                .setCredentials(credentials)
+                .setDatabaseUrl(dbUrl)
+                .build();
+
+        FirebaseApp app = FirebaseApp.initializeApp(options);
+        log.info("Firebase initialized: {}{}", dbUrl, emulator ? " (emulator)" : "");
+        return app;
+    }
+
+    @Bean
+    @Lazy
+    public DatabaseReference databaseReference(FirebaseApp firebaseApp) {
+        return FirebaseDatabase.getInstance(firebaseApp).getReference();
     }
 
+    // Resolves the reference on first use
     @Bean
-    public DatabaseReference databaseReference() {
-        return FirebaseDatabase.getInstance().getReference();
+    public RealtimeDatabase realtimeDatabase(ObjectProvider<DatabaseReference> databaseReference) {
+        return new FirebaseRealtimeDatabase(databaseReference::getObject);
+    }
+
+    private static String firstEnv(String... names) {
+        for (String name : names) {
+            String value = System.getenv(name);
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Members of each diary in the Realtime Database: diaries/{id}/members/{username} holds a salted
+// PBKDF2-HMAC-SHA256 hash of the password as "pbkdf2-sha256$<iterations>$<base64 salt>$<base64 hash>",
+// so a leaked database does not give away logins. Diaries get their members from create
+// (POST /admin/diaries); the default diary takes the built-in accounts until it has members, so an
+// existing deployment keeps working.
+@Component
+@Profile("!embedded")
+public class FirebaseDiaryMembers implements DiaryMembers {
+
+    private static final String SCHEME = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RealtimeDatabase database;
+    private final String defaultId;
+    private final int iterations;
+    private final Duration readTimeout;
+
+    public FirebaseDiaryMembers(RealtimeDatabase database,
+                                @Value("${dailythoughts.diaries.default-id:default}") String defaultId,
+                                @Value("${dailythoughts.diaries.password-iterations:210000}") int iterations,
+                                @Value("${dailythoughts.firebase.read-timeout:2s}") Duration readTimeout) {
+        this.database = database;
+        this.defaultId = defaultId;
+        this.iterations = iterations;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public boolean authenticate(String diaryId, String username, String password) {
+        Map<?, ?> members = members(diaryId);
+        if (members.isEmpty()) {
+            return diaryId.equals(defaultId) && password.equals(BUILT_IN.get(username));
+        }
+        return members.get(username) instanceof String stored && matches(password, stored);
+    }
+
+    // Give a diary its members, by username; false, and nothing written, if it already has some
+    public boolean create(String diaryId, Map<String, String> passwords) {
+        if (!members(diaryId).isEmpty()) {
+            return false;
+        }
+        Map<String, Object> updates = new LinkedHashMap<>();
+        passwords.forEach((username, password) ->
+                updates.put(Diaries.root(diaryId) + "members/" + username, hash(password, iterations)));
+        await(database.update("", updates));
+        return true;
+    }
+
+    private Map<?, ?> members(String diaryId) {
+        Object value = await(database.get(Diaries.root(diaryId) + "members"));
+        return value instanceof Map<?, ?> map ? map : Map.of();
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Firebase did not answer within " + readTimeout.toMillis() + " ms");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return SCHEME + "$" + iterations + "$" + Base64.getEncoder().encodeToString(salt)
+                + "$" + Base64.getEncoder().encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    // Constant-time in the hash; false for anything not made by hash
+    static boolean matches(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !SCHEME.equals(parts[0])) {
+            return false;
+        }
+        try {
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            byte[] actual = pbkdf2(password, Base64.getDecoder().decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) { // bad base64 or number
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
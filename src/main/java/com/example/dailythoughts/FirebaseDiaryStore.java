@@ -0,0 +1,62 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+// Diaries in the Realtime Database: a FirebaseService per diary over diaries/{id}/, all writing
+// through one shared FirebaseWrites (and so one journal) and reading archived months through one ArchiveCache.
+@Component
+@Profile("!embedded")
+public class FirebaseDiaryStore implements DiaryStore {
+
+    private final RealtimeDatabase database;
+    private final Duration readTimeout;
+    private final FirebaseWrites writes;
+    private final ArchiveCache archiveCache;
+    private final MeterRegistry registry;
+
+    @Autowired
+    public FirebaseDiaryStore(RealtimeDatabase database,
+                              @Value("${dailythoughts.firebase.read-timeout:2s}") Duration readTimeout,
+                              @Value("${dailythoughts.writes.max-pending:1000}") int maxPendingWrites,
+                              @Value("${dailythoughts.journal.path:data/journal.log}") String journalPath,
+                              @Value("${dailythoughts.journal.compact-threshold:1048576}") long journalCompactThreshold,
+                              ArchiveCache archiveCache,
+                              MeterRegistry registry) throws IOException {
+        this(database, readTimeout, new FirebaseWrites(database, maxPendingWrites,
+                new WriteJournal(Path.of(journalPath), journalCompactThreshold, maxPendingWrites, registry), registry),
+                archiveCache, registry);
+    }
+
+    FirebaseDiaryStore(RealtimeDatabase database, Duration readTimeout, FirebaseWrites writes,
+                       ArchiveCache archiveCache, MeterRegistry registry) {
+        this.database = database;
+        this.readTimeout = readTimeout;
+        this.writes = writes;
+        this.archiveCache = archiveCache;
+        this.registry = registry;
+    }
+
+    @Override
+    public ThoughtRepository open(String diaryId) {
+        return new FirebaseService(database, Diaries.root(diaryId), readTimeout, writes, archiveCache, registry);
+    }
+
+    @Override
+    public void close(ThoughtRepository diary) {
+        ((FirebaseService) diary).stopListening();
+    }
+
+    @PreDestroy
+    public void close() {
+        writes.close();
+    }
+}
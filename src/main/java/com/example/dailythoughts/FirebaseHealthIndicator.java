@@ -0,0 +1,67 @@
+package com.example.dailythoughts;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.Instant;
+
+// Readiness from the client's own view of the connection: Firebase keeps ".info/connected"
+// up to date locally, so this never makes a network round trip when /health is polled.
+// The listener is attached on the first check rather than at startup, keeping Firebase lazy.
+@Component
+@Profile("!embedded")
+public class FirebaseHealthIndicator implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(FirebaseHealthIndicator.class);
+
+    private static final String CONNECTED = ".info/connected";
+
+    private final RealtimeDatabase database;
+    private RealtimeDatabase.Registration registration;
+
+    private volatile boolean connected;
+    private volatile Instant since = Instant.now();
+
+    public FirebaseHealthIndicator(RealtimeDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public Health health() {
+        startListening();
+        Health.Builder builder = connected ? Health.up() : Health.down();
+        return builder.withDetail("connected", connected)
+                .withDetail("since", since.toString())
+                .build();
+    }
+
+    private synchronized void startListening() {
+        if (registration != null) {
+            return;
+        }
+        registration = database.listenValue(CONNECTED, value -> {
+            boolean nowConnected = Boolean.TRUE.equals(value);
+            if (nowConnected != connected) {
+                connected = nowConnected;
+                since = Instant.now();
+                if (nowConnected) {
+                    log.info("Firebase connected");
+                } else {
+                    log.warn("Firebase disconnected");
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public synchronized void stopListening() {
+        if (registration != null) {
+            registration.remove();
+        }
+    }
+}
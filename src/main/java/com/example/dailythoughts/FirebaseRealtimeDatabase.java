@@ -0,0 +1,278 @@
+package com.example.dailythoughts;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.database.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// RealtimeDatabase backed by the Firebase Admin SDK
+public class FirebaseRealtimeDatabase implements RealtimeDatabase {
+
+    private static final Logger log = LoggerFactory.getLogger(FirebaseRealtimeDatabase.class);
+
+    // Supplied lazily so the Firebase app is only initialized on first use
+    private final Supplier<DatabaseReference> root;
+
+    public FirebaseRealtimeDatabase(Supplier<DatabaseReference> root) {
+        this.root = root;
+    }
+
+    public FirebaseRealtimeDatabase(DatabaseReference root) {
+        this(() -> root);
+    }
+
+    @Override
+    public CompletableFuture<Object> get(String path) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+
+        ref(path).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                future.complete(dataSnapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                future.completeExceptionally(error.toException());
+            }
+        });
+
+        return future;
+    }
+
+    // The SDK only has inclusive bounds (startAt/endAt), so children on an exclusive bound are dropped
+    // here. They take up room under a limit: one more child is asked for, and more if the bounds had
+    // several (children sharing the bound value), until the limit is met or the range runs out.
+    @Override
+    public CompletableFuture<Map<String, Object>> query(String path, ChildQuery query) {
+        Integer limit = query.limitToFirst() != null ? query.limitToFirst() : query.limitToLast();
+        return query(ref(path), query, limit != null ? limit + 1 : null);
+    }
+
+    private CompletableFuture<Map<String, Object>> query(DatabaseReference ref, ChildQuery query, Integer fetch) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+
+        toFirebaseQuery(ref, query, fetch).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                // getValue() would hand back an unordered HashMap, so walk the children instead
+                Map<String, Object> children = new LinkedHashMap<>();
+                int fetched = 0;
+                for (DataSnapshot child : dataSnapshot.getChildren()) {
+                    fetched++;
+                    Object orderValue = query.orderBy() != null ? child.child(query.orderBy()).getValue() : child.getKey();
+                    boolean atEnd = sameValue(orderValue, query.endBefore())
+                            && (query.endBeforeKey() == null || query.endBeforeKey().equals(child.getKey()));
+                    if (!sameValue(orderValue, query.startAfter()) && !atEnd) {
+                        children.put(child.getKey(), child.getValue());
+                    }
+                }
+
+                Integer limit = query.limitToFirst() != null ? query.limitToFirst() : query.limitToLast();
+                if (limit == null) {
+                    future.complete(children);
+                } else if (children.size() < limit && fetched == fetch) {
+                    query(ref, query, fetch * 2).whenComplete((more, error) -> {
+                        if (error != null) {
+                            future.completeExceptionally(error);
+                        } else {
+                            future.complete(more);
+                        }
+                    });
+                } else {
+                    future.complete(limited(children, limit, query.limitToLast() != null));
+                }
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                future.completeExceptionally(error.toException());
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String path, Object value) {
+        return toCompletable(ref(path).setValueAsync(value));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+        return toCompletable(ref(path).updateChildrenAsync(values));
+    }
+
+    @Override
+    public CompletableFuture<Void> remove(String path) {
+        return toCompletable(ref(path).removeValueAsync());
+    }
+
+    @Override
+    public CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+
+        ref(path).runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData currentData) {
+                currentData.setValue(update.apply(currentData.getValue()));
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+                if (error != null) {
+                    future.completeExceptionally(error.toException());
+                } else if (!committed) {
+                    future.completeExceptionally(new IllegalStateException("Transaction on " + path + " not committed"));
+                } else {
+                    future.complete(currentData.getValue());
+                }
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public Registration listenChildren(String path, ChildListener listener) {
+        DatabaseReference ref = ref(path);
+
+        ChildEventListener firebaseListener = ref.addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                listener.onChildAdded(snapshot.getKey(), snapshot.getValue());
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                listener.onChildChanged(snapshot.getKey(), snapshot.getValue());
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                listener.onChildRemoved(snapshot.getKey());
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+                // Ordering is handled by the caller
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                listener.onCancelled(error.toException());
+            }
+        });
+
+        return () -> ref.removeEventListener(firebaseListener);
+    }
+
+    @Override
+    public Registration listenValue(String path, Consumer<Object> listener) {
+        DatabaseReference ref = ref(path);
+
+        ValueEventListener firebaseListener = ref.addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                listener.accept(dataSnapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                log.error("Listener on {} cancelled: {}", path, error.getMessage());
+            }
+        });
+
+        return () -> ref.removeEventListener(firebaseListener);
+    }
+
+    private DatabaseReference ref(String path) {
+        DatabaseReference reference = root.get();
+        return path.isEmpty() ? reference : reference.child(path);
+    }
+
+    private static Query toFirebaseQuery(DatabaseReference ref, ChildQuery query, Integer fetch) {
+        Query firebaseQuery = query.orderBy() != null ? ref.orderByChild(query.orderBy()) : ref.orderByKey();
+
+        if (query.startAfter() instanceof Number number) {
+            firebaseQuery = firebaseQuery.startAt(number.doubleValue());
+        } else if (query.startAfter() != null) {
+            firebaseQuery = firebaseQuery.startAt(query.startAfter().toString());
+        }
+        if (query.endBefore() instanceof Number number) {
+            firebaseQuery = query.endBeforeKey() != null
+                    ? firebaseQuery.endAt(number.doubleValue(), query.endBeforeKey())
+                    : firebaseQuery.endAt(number.doubleValue());
+        } else if (query.endBefore() != null) {
+            firebaseQuery = query.endBeforeKey() != null
+                    ? firebaseQuery.endAt(query.endBefore().toString(), query.endBeforeKey())
+                    : firebaseQuery.endAt(query.endBefore().toString());
+        }
+        if (query.limitToFirst() != null) {
+            firebaseQuery = firebaseQuery.limitToFirst(fetch);
+        }
+        if (query.limitToLast() != null) {
+            firebaseQuery = firebaseQuery.limitToLast(fetch);
+        }
+
+        return firebaseQuery;
+    }
+
+    // Whether a child's order value equals a bound, as the server compares them: numbers by value,
+    // strings by content, and never a number with a string
+    static boolean sameValue(Object orderValue, Object bound) {
+        if (bound == null || orderValue == null) {
+            return false;
+        }
+        if (bound instanceof Number number) {
+            return orderValue instanceof Number value && Double.compare(value.doubleValue(), number.doubleValue()) == 0;
+        }
+        return orderValue instanceof String value && value.equals(bound.toString());
+    }
+
+    // The first (or last) limit children, in order
+    static Map<String, Object> limited(Map<String, Object> children, int limit, boolean last) {
+        if (children.size() <= limit) {
+            return children;
+        }
+        Map<String, Object> kept = new LinkedHashMap<>();
+        int skip = last ? children.size() - limit : 0;
+        for (Map.Entry<String, Object> child : children.entrySet()) {
+            if (skip > 0) {
+                skip--;
+            } else if (kept.size() < limit) {
+                kept.put(child.getKey(), child.getValue());
+            }
+        }
+        return kept;
+    }
+
+    private static <T> CompletableFuture<T> toCompletable(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+}
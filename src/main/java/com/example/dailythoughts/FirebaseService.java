@@ -1,92 +1,877 @@
 package com.example.dailythoughts;
 
-import com.google.firebase.database.*;
-import org.springframework.stereotype.Service;
-import java.util.HashMap;
-import java.util.Map;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
-@Service
-public class FirebaseService {
+// One diary in the Realtime Database: its thoughts under <root>thoughts and its day index under
+// <root>days, where root is "diaries/{id}/" (see Diaries) or "" for the legacy top-level nodes.
+// Instances are made by FirebaseDiaryStore and share its FirebaseWrites and ArchiveCache.
+// Months moved to cold storage (ThoughtArchive) are only read when /diary or /search get past the hot ones.
+// Thought counts per author and day (StatsRollup) under <root>stats are adjusted in a transaction
+// once a thought's write is accepted or deleted. A listener on that node keeps them in memory for
+// /stats, a month at a time.
+public class FirebaseService implements ThoughtRepository {
 
-    private final DatabaseReference dbRef;
+    private static final Logger log = LoggerFactory.getLogger(FirebaseService.class);
 
-    public FirebaseService() {
-        this.dbRef = FirebaseDatabase.getInstance().getReference();
+    private static final int DEFAULT_MAX_PENDING_WRITES = 1000;
+    private static final long DEFAULT_ARCHIVE_CACHE_BYTES = 16 * 1024 * 1024;
+    private static final int LAST_GOOD_PAGES = 64;
+    private static final Duration RESYNC_BACKOFF = Duration.ofSeconds(5);
+
+    private final RealtimeDatabase database;
+    private final String thoughtsPath;
+    private final String daysPath;
+    private final String statsPath;
+
+    // In-memory copy of the "thoughts" node, kept current by a child listener, by key and by time
+    private final HistoryIndex index = new HistoryIndex();
+    // Words of the same entries, for /search
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final Sync thoughtsSync = new Sync();
+
+    // In-memory copy of the "days" index, newest day first; what /diary renders
+    private final ConcurrentNavigableMap<String, DailyThought> days =
+            new ConcurrentSkipListMap<String, DailyThought>().descendingMap();
+    private final Sync daysSync = new Sync();
+    // Sum of DailyThought.digest over days, kept in step with it
+    private final AtomicLong daysDigest = new AtomicLong();
+    // Notified by the days listener once the initial state is loaded
+    private final List<BiConsumer<String, DailyThought>> dayWatchers = new CopyOnWriteArrayList<>();
+
+    // In-memory copy of the "stats" node, one month per child; guarded by itself
+    private final StatsRollup stats = new StatsRollup();
+    private final Sync statsSync = new Sync();
+
+    // Shared by every diary unless this instance made its own (ownsWrites)
+    private final FirebaseWrites writes;
+    private final boolean ownsWrites;
+    private final ThoughtKeys keys = new ThoughtKeys();
+    // Months older than the hot nodes hold
+    private final ThoughtArchive archive;
+
+    // Upper bound for every blocking wait on Firebase
+    private final Duration readTimeout;
+    // Least time between a failed first sync and the request that tries it again (see Sync)
+    private volatile Duration resyncBackoff = RESYNC_BACKOFF;
+
+    // Last page served for each (cursor, limit), replayed as stale when Firebase is too slow
+    private final Map<String, ThoughtPage> lastGoodPages = lastGood();
+    private final Map<String, DayPage> lastGoodDays = lastGood();
+    private volatile DiaryStats lastGoodStats;
+    // Set once stopListening has run: no listener is attached again; guarded by this
+    private boolean stopped;
+
+    // Metrics
+    private final MeterRegistry registry;
+    private final Timer saveTimer;
+    private final Timer loadAllTimer;
+    private final Timer loadPageTimer;
+    private final Timer loadDaysTimer;
+    private final Timer searchTimer;
+    private final Timer statsTimer;
+    private final Timer deleteTimer;
+    private final Counter saveFailures;
+    private final Counter deleteFailures;
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    // A diary under root, writing through the shared pipeline
+    FirebaseService(RealtimeDatabase database, String root, Duration readTimeout, FirebaseWrites writes,
+                    ArchiveCache archiveCache, MeterRegistry registry) {
+        this(database, root, readTimeout, writes, false, archiveCache, registry);
+    }
+
+    // The top-level nodes with a pipeline of their own (tests and tools)
+    FirebaseService(RealtimeDatabase database, Duration readTimeout, MeterRegistry registry) {
+        this(database, readTimeout, DEFAULT_MAX_PENDING_WRITES, null, registry);
+    }
+
+    FirebaseService(RealtimeDatabase database, Duration readTimeout, int maxPendingWrites, WriteJournal journal,
+                    MeterRegistry registry) {
+        this(database, "", readTimeout, new FirebaseWrites(database, maxPendingWrites, journal, registry), true,
+                new ArchiveCache(DEFAULT_ARCHIVE_CACHE_BYTES, registry), registry);
     }
 
-    // Save a thought to Firebase
-    public void saveThought(String date, String author, String thought) {
+    private FirebaseService(RealtimeDatabase database, String root, Duration readTimeout, FirebaseWrites writes,
+                            boolean ownsWrites, ArchiveCache archiveCache, MeterRegistry registry) {
+        this.database = database;
+        this.thoughtsPath = root + "thoughts";
+        this.daysPath = root + "days";
+        this.statsPath = root + "stats";
+        this.readTimeout = readTimeout;
+        this.registry = registry;
+        this.writes = writes;
+        this.ownsWrites = ownsWrites;
+        this.archive = new ThoughtArchive(database, root, archiveCache, readTimeout);
+
+        this.saveTimer = operationTimer("save");
+        this.loadAllTimer = operationTimer("loadAll");
+        this.loadPageTimer = operationTimer("loadPage");
+        this.loadDaysTimer = operationTimer("loadDays");
+        this.searchTimer = operationTimer("search");
+        this.statsTimer = operationTimer("stats");
+        this.deleteTimer = operationTimer("delete");
+        this.saveFailures = writeFailures("save");
+        this.deleteFailures = writeFailures("delete");
+
+        // Diaries reports the cache of all open diaries together
+        if (ownsWrites) {
+            Gauge.builder("dailythoughts.thoughts.count", index, HistoryIndex::size)
+                    .description("Thoughts held in the listener cache")
+                    .register(registry);
+            Gauge.builder("dailythoughts.snapshot.size", cachedBytes, AtomicLong::get)
+                    .description("Approximate payload size of the cached thoughts snapshot")
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+    }
+
+    // Save a thought; completes once it is in the local journal (or, without one, when Firebase
+    // acknowledges it), or at once with RejectedExecutionException when too many writes are already
+    // waiting for Firebase
+    @Override
+    public CompletableFuture<Void> saveThought(String date, String author, String thought) {
+        long now = System.currentTimeMillis();
+        Map<String, Object> thoughtData = new HashMap<>();
+        thoughtData.put("author", author);
+        thoughtData.put("thought", thought);
+        thoughtData.put("timestamp", now);
+        thoughtData.put("date", date);
+
+        // Unique, time-ordered key; same-second submits no longer overwrite each other
+        String key = keys.next(now);
+        Thought cached = new Thought(key, Author.of(author), thought, now, date);
+
+        // The raw thought and the day it belongs to change in one multi-path update
+        String day = DailyThought.dayOf(date);
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put(thoughtsPath + "/" + key, thoughtData);
+        String field = DailyThought.fieldFor(author);
+        if (field != null) {
+            updates.put(daysPath + "/" + day + "/" + field, thought);
+        }
+
+        // Write-through so the next /diary sees it without waiting for the listener
+        cacheThought(cached);
+        DailyThought previousDay = days.get(day);
+        DailyThought cachedDay = (previousDay != null ? previousDay : DailyThought.EMPTY).with(cached);
+        putDay(day, cachedDay);
+
+        Timer.Sample sample = Timer.start(registry);
+        CompletableFuture<Void> accepted = writes.submit(updates);
+        return accepted.whenComplete((ignored, error) -> {
+            sample.stop(saveTimer);
+            if (error instanceof RejectedExecutionException) {
+                log.warn("Not saving: {}", error.getMessage());
+            } else if (error != null) {
+                saveFailures.increment();
+                log.error("Error saving thought: {}", error.getMessage());
+            }
+            if (error != null) {
+                // Roll back the optimistic cache entries unless something newer replaced them
+                if (index.get(key) == cached) {
+                    uncacheThought(key);
+                }
+                if (previousDay == null) {
+                    if (days.remove(day, cachedDay)) {
+                        daysDigest.addAndGet(-DailyThought.digest(day, cachedDay));
+                    }
+                } else if (days.replace(day, cachedDay, previousDay)) {
+                    daysDigest.addAndGet(DailyThought.digest(day, previousDay) - DailyThought.digest(day, cachedDay));
+                }
+            } else {
+                countThought(cached, 1);
+                // The text itself only at debug: it is private, and long
+                log.info("Saved thought {} by {}", key, author);
+                log.debug("Thought {}: {}", key, thought);
+            }
+        });
+    }
+
+    // Load all thoughts (served from the in-memory cache after the first call)
+    @Override
+    public Map<String, Thought> loadAllThoughts() {
+        Timer.Sample sample = Timer.start(registry);
         try {
-            Map<String, Object> thoughtData = new HashMap<>();
-            thoughtData.put("author", author);
-            thoughtData.put("thought", thought);
-            thoughtData.put("timestamp", System.currentTimeMillis());
+            startListening();
+            thoughtsSync.warmedUp.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS); // Wait for the initial sync only
 
-            // Use date as key (replace colons for Firebase compatibility)
-            String safeDate = date.replace(":", "-");
-            dbRef.child("thoughts").child(safeDate).setValueAsync(thoughtData);
+        } catch (TimeoutException e) {
+            log.warn("Initial sync still running, returning {} cached thoughts", index.size());
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error loading from Firebase: {}", e.getMessage());
+        } finally {
+            sample.stop(loadAllTimer);
+        }
 
-            System.out.println("✅ Saved to Firebase: " + thought);
-        } catch (Exception e) {
-            System.err.println("❌ Error saving to Firebase: " + e.getMessage());
+        return index.all();
+    }
+
+    // Load one page of thoughts older than the cursor, newest first.
+    // Memory serves it once warm; before that an ordered, limited query keeps the
+    // first request from waiting on the full initial sync. If that query misses the
+    // deadline, the last good copy of the page is returned marked stale.
+    @Override
+    public ThoughtPage loadPage(ThoughtCursor before, int limit) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return loadPageWithin(before, limit);
+        } finally {
+            sample.stop(loadPageTimer);
         }
     }
 
-    // Load all thoughts from Firebase
-    public Map<String, Map<String, String>> loadAllThoughts() {
-        Map<String, Map<String, String>> allThoughts = new HashMap<>();
+    private ThoughtPage loadPageWithin(ThoughtCursor before, int limit) {
+        startListening();
+
+        if (thoughtsSync.ready()) {
+            ThoughtPage page = pageFromCache(before, limit);
+            return thoughtsSync.cancelled ? page.markStale() : page;
+        }
 
+        String pageKey = before + "/" + limit;
         try {
-            CompletableFuture<DataSnapshot> future = new CompletableFuture<>();
+            ChildQuery query = ChildQuery.byChild("timestamp").limitToLast(limit + 1);
+            if (before != null) {
+                query = query.endBefore(before.timestamp(), before.key());
+            }
 
-            dbRef.child("thoughts").addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(DataSnapshot dataSnapshot) {
-                    future.complete(dataSnapshot);
-                }
+            List<Map.Entry<String, Object>> children = new ArrayList<>(database.query(thoughtsPath, query)
+                    .get(readTimeout.toMillis(), TimeUnit.MILLISECONDS).entrySet());
+            Collections.reverse(children); // query order is oldest first
 
-                @Override
-                public void onCancelled(DatabaseError error) {
-                    future.completeExceptionally(error.toException());
+            List<Thought> thoughts = new ArrayList<>(Math.min(limit, children.size()));
+            ThoughtCursor nextCursor = null;
+            for (Map.Entry<String, Object> child : children) {
+                if (thoughts.size() == limit) {
+                    nextCursor = ThoughtCursor.of(thoughts.get(limit - 1)); // the extra row only tells us there is more
+                    break;
                 }
-            });
+                thoughts.add(Thought.fromValue(child.getKey(), child.getValue()));
+            }
+
+            ThoughtPage page = new ThoughtPage(thoughts, nextCursor);
+            lastGoodPages.put(pageKey, page);
+            return page;
+
+        } catch (TimeoutException e) {
+            log.warn("Firebase did not answer within {} ms, serving stale page", readTimeout.toMillis());
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error loading page from Firebase: {}", e.getMessage());
+        }
 
-            DataSnapshot snapshot = future.get(); // Wait for data
+        ThoughtPage lastGood = lastGoodPages.get(pageKey);
+        return lastGood != null ? lastGood.markStale() : new ThoughtPage(List.of(), null, true);
+    }
 
-            for (DataSnapshot thoughtSnapshot : snapshot.getChildren()) {
-                String date = thoughtSnapshot.getKey().replace("-", ":"); // Convert back
-                Map<String, String> thoughtData = new HashMap<>();
+    private ThoughtPage pageFromCache(ThoughtCursor before, int limit) {
+        return index.page(before, limit);
+    }
 
-                String author = thoughtSnapshot.child("author").getValue(String.class);
-                String thought = thoughtSnapshot.child("thought").getValue(String.class);
-                String timestamp = thoughtSnapshot.child("timestamp").getValue(String.class);
+    // Load one page of days older than the cursor day, newest first.
+    // Same strategy as loadPage, but over the compact days index keyed by yyyy-MM-dd.
+    @Override
+    public DayPage loadDays(String before, int limit) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return loadDaysWithin(before, limit);
+        } finally {
+            sample.stop(loadDaysTimer);
+        }
+    }
 
-                thoughtData.put("author", author);
-                thoughtData.put("thought", thought);
-                if (timestamp != null) thoughtData.put("timestamp", timestamp);
+    private DayPage loadDaysWithin(String before, int limit) {
+        DayPage page = hotDaysWithin(before, limit);
+        if (page.nextCursor() != null || page.stale()) {
+            return page;
+        }
 
-                allThoughts.put(date, thoughtData);
+        // The hot days are used up: go on into the archived months
+        String lastDay = before;
+        for (String day : page.days().keySet()) {
+            lastDay = day;
+        }
+        try {
+            if (page.days().size() == limit) {
+                // A full page ending with the last hot day still links on to the archive
+                return archive.hasOlder(lastDay) ? new DayPage(page.days(), lastDay) : page;
+            }
+            DayPage older = archive.days(lastDay, limit - page.days().size());
+            Map<String, DailyThought> days = new LinkedHashMap<>(page.days());
+            older.days().forEach(days::putIfAbsent);
+            return new DayPage(days, older.nextCursor());
+        } catch (TimeoutException e) {
+            log.warn("Archive did not answer within {} ms, serving hot days only", readTimeout.toMillis());
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            log.error("Error loading archived days: {}", e.getMessage());
+        }
+        return page.markStale();
+    }
+
+    private DayPage hotDaysWithin(String before, int limit) {
+        startListeningDays();
+
+        if (daysSync.ready()) {
+            DayPage page = daysFromCache(before, limit);
+            return daysSync.cancelled ? page.markStale() : page;
+        }
+
+        String pageKey = before + "/" + limit;
+        try {
+            ChildQuery query = ChildQuery.byKey().limitToLast(limit + 1);
+            if (before != null) {
+                query = query.endBefore(before);
+            }
+
+            List<Map.Entry<String, Object>> children = new ArrayList<>(database.query(daysPath, query)
+                    .get(readTimeout.toMillis(), TimeUnit.MILLISECONDS).entrySet());
+            Collections.reverse(children); // query order is oldest first
+
+            Map<String, DailyThought> page = new LinkedHashMap<>();
+            String nextCursor = null;
+            for (Map.Entry<String, Object> child : children) {
+                if (page.size() == limit) {
+                    nextCursor = children.get(limit - 1).getKey();
+                    break;
+                }
+                page.put(child.getKey(), DailyThought.fromValue(child.getValue()));
             }
 
-            System.out.println("✅ Loaded " + allThoughts.size() + " thoughts from Firebase");
+            DayPage dayPage = new DayPage(page, nextCursor);
+            lastGoodDays.put(pageKey, dayPage);
+            return dayPage;
 
+        } catch (TimeoutException e) {
+            log.warn("Firebase did not answer within {} ms, serving stale days", readTimeout.toMillis());
         } catch (InterruptedException | ExecutionException e) {
-            System.err.println("❌ Error loading from Firebase: " + e.getMessage());
+            log.error("Error loading days from Firebase: {}", e.getMessage());
+        }
+
+        DayPage lastGood = lastGoodDays.get(pageKey);
+        return lastGood != null ? lastGood.markStale() : new DayPage(Collections.emptyMap(), null, true);
+    }
+
+    private DayPage daysFromCache(String before, int limit) {
+        ConcurrentNavigableMap<String, DailyThought> older = before != null ? days.tailMap(before, false) : days;
+
+        Map<String, DailyThought> page = new LinkedHashMap<>();
+        String nextCursor = null;
+        String lastDay = null;
+        for (Map.Entry<String, DailyThought> entry : older.entrySet()) {
+            if (page.size() == limit) {
+                nextCursor = lastDay;
+                break;
+            }
+            page.put(entry.getKey(), entry.getValue());
+            lastDay = entry.getKey();
+        }
+
+        return new DayPage(page, nextCursor);
+    }
+
+    // Search the listener cache; there is no server-side text search in the Realtime Database,
+    // so until the first sync completes (or within the deadline) results cover what has arrived
+    @Override
+    public ThoughtPage search(String query, ThoughtCursor before, int limit) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            startListening();
+            boolean complete = true;
+            try {
+                thoughtsSync.warmedUp.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("Initial sync still running, searching {} cached thoughts", index.size());
+                complete = false;
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Error loading from Firebase: {}", e.getMessage());
+                complete = false;
+            }
+
+            HistoryIndex.Page page = searchIndex.search(query, before, limit);
+            List<Thought> thoughts = new ArrayList<>(page.keys().size());
+            for (String key : page.keys()) {
+                Thought thought = index.get(key);
+                if (thought != null) { // null if removed while we were searching
+                    thoughts.add(thought);
+                }
+            }
+            ThoughtPage result = new ThoughtPage(thoughts, page.nextCursor());
+            // Archived months are older than every hot thought, so they continue from the same cursor
+            if (complete && result.nextCursor() == null) {
+                result = searchArchive(query, before, result, limit);
+            }
+            return complete && !thoughtsSync.cancelled ? result : result.markStale();
+        } finally {
+            sample.stop(searchTimer);
         }
+    }
 
-        return allThoughts;
+    // The hot results followed by archived ones, up to limit in all
+    private ThoughtPage searchArchive(String query, ThoughtCursor before, ThoughtPage hot, int limit) {
+        try {
+            if (hot.thoughts().size() == limit) {
+                // A full page of the last hot matches still links on to the archive
+                Thought last = hot.thoughts().get(limit - 1);
+                return archive.hasOlder(last.date()) ? new ThoughtPage(hot.thoughts(), ThoughtCursor.of(last)) : hot;
+            }
+            ThoughtPage older = archive.search(query, before, limit - hot.thoughts().size());
+            List<Thought> thoughts = new ArrayList<>(hot.thoughts());
+            thoughts.addAll(older.thoughts());
+            return new ThoughtPage(thoughts, older.nextCursor());
+        } catch (TimeoutException e) {
+            log.warn("Archive did not answer within {} ms, searching hot thoughts only", readTimeout.toMillis());
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            log.error("Error searching archived thoughts: {}", e.getMessage());
+        }
+        return hot.markStale();
+    }
+
+    // Fed by the one days listener this instance already keeps for /diary
+    @Override
+    public RealtimeDatabase.Registration watchDays(BiConsumer<String, DailyThought> listener) {
+        dayWatchers.add(listener);
+        startListeningDays();
+        return () -> dayWatchers.remove(listener);
+    }
+
+    // Digest of the cached days; unknown until they are loaded or while the listener is down
+    @Override
+    public String version() {
+        if (!daysSync.ready() || daysSync.cancelled) {
+            return null;
+        }
+        return Long.toHexString(daysDigest.get()) + "-" + days.size();
     }
 
-    // Delete a thought (optional)
-    public void deleteThought(String date) {
+    // From the listener's rollup, once it holds the whole stats node; the DiaryStats it computes are
+    // reused until a month changes or the day does (see StatsRollup)
+    @Override
+    public DiaryStats loadStats() {
+        Timer.Sample sample = Timer.start(registry);
         try {
-            String safeDate = date.replace(":", "-");
-            dbRef.child("thoughts").child(safeDate).removeValueAsync();
-            System.out.println("🗑️ Deleted thought: " + date);
+            startListeningStats();
+            statsSync.warmedUp.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            DiaryStats computed;
+            synchronized (stats) {
+                computed = stats.toStats(LocalDate.now());
+            }
+            lastGoodStats = computed;
+            return statsSync.cancelled ? computed.markStale() : computed;
+        } catch (TimeoutException e) {
+            log.warn("Firebase did not answer within {} ms, serving stale stats", readTimeout.toMillis());
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error loading stats from Firebase: {}", e.getMessage());
+        } finally {
+            sample.stop(statsTimer);
+        }
+        DiaryStats lastGood = lastGoodStats;
+        return lastGood != null ? lastGood.markStale() : DiaryStats.EMPTY.markStale();
+    }
+
+    // Delete a thought by key (optional); it leaves its day's stats once deleted
+    @Override
+    public void deleteThought(String key) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            Thought cached = index.get(key);
+            CompletableFuture<Thought> stored = cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : database.get(thoughtsPath + "/" + key).thenApply(value -> Thought.fromValue(key, value));
+
+            // The thought stays cached until its remove lands, so a failed delete still shows it
+            stored.thenCompose(thought -> database.remove(thoughtsPath + "/" + thought.key())
+                            .thenRun(() -> {
+                                uncacheThought(key);
+                                countThought(thought, -1);
+                                log.info("Deleted thought {}", key);
+                            })
+                            .thenCompose(ignored -> thought.date() != null
+                                    ? rebuildDay(DailyThought.dayOf(thought.date()))
+                                    : CompletableFuture.completedFuture(null)))
+                    .whenComplete((ignored, error) -> {
+                        sample.stop(deleteTimer);
+                        if (error != null) {
+                            deleteFailures.increment();
+                            log.error("Error deleting from Firebase: {}", error.getMessage());
+                        }
+                    });
         } catch (Exception e) {
-            System.err.println("❌ Error deleting from Firebase: " + e.getMessage());
+            deleteFailures.increment();
+            log.error("Error deleting from Firebase: {}", e.getMessage());
+        }
+    }
+
+    // Count a saved or deleted thought in its author's day. A transaction, so concurrent submits on
+    // any instance all count; it goes to Firebase directly rather than through the journal, so a
+    // replayed write is not counted twice. A count that fails to land is only logged: the thought
+    // itself is safe, and StatsRebuild puts the stats right
+    private void countThought(Thought thought, long delta) {
+        String day = StatsRollup.dayOf(thought.date());
+        if (thought.author() == null || day == null) {
+            return;
+        }
+        database.transaction(statsPath + "/" + StatsRollup.countPath(thought.author().id(), day),
+                        count -> StatsRollup.adjust(count, delta))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        log.warn("Stats of {} not updated for thought {}: {}", day, thought.key(), error.getMessage());
+                    }
+                });
+    }
+
+    // Recompute days/{day} from the thoughts left on that day; removes the node if none are
+    private CompletableFuture<Void> rebuildDay(String day) {
+        LocalDate date;
+        try {
+            date = LocalDate.parse(day);
+        } catch (DateTimeParseException e) {
+            return CompletableFuture.completedFuture(null); // not a dated thought, so not in the index
+        }
+        return foldDay(database, thoughtsPath, date).thenCompose(rebuilt -> {
+            if (rebuilt == null) {
+                removeDay(day);
+                return database.remove(daysPath + "/" + day);
+            }
+            putDay(day, rebuilt);
+            return database.set(daysPath + "/" + day, rebuilt.toValue());
+        });
+    }
+
+    // The day's row folded from its thoughts under thoughtsPath, or null when it has none
+    static CompletableFuture<DailyThought> foldDay(RealtimeDatabase database, String thoughtsPath, LocalDate date) {
+        // "yyyy-MM-dd HH:mm:ss" dates of that day sort between "yyyy-MM-dd" and the next day
+        ChildQuery sameDay = ChildQuery.byChild("date")
+                .startAfter(date.toString())
+                .endBefore(date.plusDays(1).toString());
+
+        return database.query(thoughtsPath, sameDay).thenApply(children -> {
+            DailyThought folded = null;
+            for (Map.Entry<String, Object> child : children.entrySet()) { // date order
+                folded = (folded != null ? folded : DailyThought.EMPTY)
+                        .with(Thought.fromValue(child.getKey(), child.getValue()));
+            }
+            return folded;
+        });
+    }
+
+    // Attach the long-lived listener once; it replays existing children and then streams changes.
+    // After a failed first sync (see Sync) it starts over from an empty cache
+    private synchronized void startListening() {
+        if (stopped || !thoughtsSync.due()) {
+            return;
+        }
+        if (thoughtsSync.reset()) {
+            index.clear();
+            searchIndex.clear();
+            cachedBytes.set(0);
+        }
+
+        CompletableFuture<Void> warmedUp = thoughtsSync.warmedUp;
+        thoughtsSync.registration = database.listenChildren(thoughtsPath, new RealtimeDatabase.ChildListener() {
+            @Override
+            public void onChildAdded(String key, Object value) {
+                cacheThought(Thought.fromValue(key, value));
+            }
+
+            @Override
+            public void onChildChanged(String key, Object value) {
+                cacheThought(Thought.fromValue(key, value));
+            }
+
+            @Override
+            public void onChildRemoved(String key) {
+                uncacheThought(key);
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                log.error("Thought listener cancelled: {}", error.getMessage());
+                thoughtsSync.fail(warmedUp, error, true);
+            }
+        });
+
+        // Value events fire after the child events for the same data,
+        // so once this read completes the cache holds the full initial state
+        database.get(thoughtsPath).whenComplete((value, error) -> {
+            if (error != null) {
+                thoughtsSync.fail(warmedUp, error, false);
+            } else {
+                log.info("Loaded {} thoughts from Firebase", index.size());
+                warmedUp.complete(null);
+            }
+        });
+    }
+
+    // Same as startListening, for the days index
+    private synchronized void startListeningDays() {
+        if (stopped || !daysSync.due()) {
+            return;
+        }
+        if (daysSync.reset()) {
+            days.clear();
+            daysDigest.set(0);
+        }
+
+        CompletableFuture<Void> daysWarmedUp = daysSync.warmedUp;
+        daysSync.registration = database.listenChildren(daysPath, new RealtimeDatabase.ChildListener() {
+            @Override
+            public void onChildAdded(String key, Object value) {
+                DailyThought dailyThought = DailyThought.fromValue(value);
+                putDay(key, dailyThought);
+                notifyDayWatchers(key, dailyThought);
+            }
+
+            @Override
+            public void onChildChanged(String key, Object value) {
+                DailyThought dailyThought = DailyThought.fromValue(value);
+                putDay(key, dailyThought);
+                notifyDayWatchers(key, dailyThought);
+            }
+
+            @Override
+            public void onChildRemoved(String key) {
+                removeDay(key);
+                // Deleted, or moved to the archive; an archived day is still in the diary, so only a
+                // deleted one is news. One that is back in the hot node meanwhile has been told already
+                archive.forget();
+                archive.holdsMonthOf(key).whenComplete((archived, error) -> {
+                    if (!Boolean.TRUE.equals(archived) && !days.containsKey(key)) {
+                        notifyDayWatchers(key, null);
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                log.error("Day listener cancelled: {}", error.getMessage());
+                daysSync.fail(daysWarmedUp, error, true);
+            }
+        });
+
+        database.get(daysPath).whenComplete((value, error) -> {
+            if (error != null) {
+                daysSync.fail(daysWarmedUp, error, false);
+            } else {
+                log.info("Loaded {} days from Firebase", days.size());
+                daysWarmedUp.complete(null);
+            }
+        });
+    }
+
+    // Same as startListening, for the stats rollups: a changed month replaces that month only
+    private synchronized void startListeningStats() {
+        if (stopped || !statsSync.due()) {
+            return;
+        }
+        if (statsSync.reset()) {
+            synchronized (stats) {
+                stats.clear();
+            }
+        }
+
+        CompletableFuture<Void> statsWarmedUp = statsSync.warmedUp;
+        statsSync.registration = database.listenChildren(statsPath, new RealtimeDatabase.ChildListener() {
+            @Override
+            public void onChildAdded(String key, Object value) {
+                replaceMonth(key, value);
+            }
+
+            @Override
+            public void onChildChanged(String key, Object value) {
+                replaceMonth(key, value);
+            }
+
+            @Override
+            public void onChildRemoved(String key) {
+                replaceMonth(key, null);
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                log.error("Stats listener cancelled: {}", error.getMessage());
+                statsSync.fail(statsWarmedUp, error, true);
+            }
+        });
+
+        database.get(statsPath).whenComplete((value, error) -> {
+            if (error != null) {
+                statsSync.fail(statsWarmedUp, error, false);
+            } else {
+                statsWarmedUp.complete(null);
+            }
+        });
+    }
+
+    // Detach the listeners for good, when the diary is closed. A request still holding this
+    // instance is answered from what is cached, or by queries once nothing is
+    public synchronized void stopListening() {
+        stopped = true;
+        for (Sync sync : List.of(thoughtsSync, daysSync, statsSync)) {
+            sync.close();
+        }
+        if (ownsWrites) {
+            writes.close();
+        }
+    }
+
+    void setResyncBackoff(Duration resyncBackoff) {
+        this.resyncBackoff = resyncBackoff;
+    }
+
+    @Override
+    public long cachedBytes() {
+        return cachedBytes.get();
+    }
+
+    private static <P> Map<String, P> lastGood() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, P> eldest) {
+                return size() > LAST_GOOD_PAGES;
+            }
+        });
+    }
+
+    // The initial replay of existing days is history, not news
+    private void notifyDayWatchers(String day, DailyThought dailyThought) {
+        if (!daysSync.warmedUp.isDone()) {
+            return;
+        }
+        for (BiConsumer<String, DailyThought> watcher : dayWatchers) {
+            try {
+                watcher.accept(day, dailyThought);
+            } catch (RuntimeException e) {
+                log.error("Day watcher failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void replaceMonth(String month, Object value) {
+        synchronized (stats) {
+            stats.replaceMonth(month, value);
+        }
+    }
+
+    private void putDay(String day, DailyThought dailyThought) {
+        DailyThought previous = days.put(day, dailyThought);
+        daysDigest.addAndGet(DailyThought.digest(day, dailyThought) - DailyThought.digest(day, previous));
+    }
+
+    private void removeDay(String day) {
+        daysDigest.addAndGet(-DailyThought.digest(day, days.remove(day)));
+    }
+
+    private void cacheThought(Thought thought) {
+        Thought previous = index.put(thought);
+        searchIndex.put(thought.key(), thought.timestamp(), thought.text());
+        cachedBytes.addAndGet(sizeOf(thought) - sizeOf(previous));
+    }
+
+    private void uncacheThought(String key) {
+        searchIndex.remove(key);
+        cachedBytes.addAndGet(-sizeOf(index.remove(key)));
+    }
+
+    // Characters of the strings plus the timestamp, as in the stored node
+    static long sizeOf(Thought thought) {
+        if (thought == null) {
+            return 0;
+        }
+        return thought.key().length() + Long.BYTES
+                + (thought.text() != null ? thought.text().length() : 0)
+                + (thought.date() != null ? thought.date().length() : 0)
+                + (thought.author() != null ? thought.author().id().length() : 0);
+    }
+
+    private Timer operationTimer(String operation) {
+        return Timer.builder("dailythoughts.firebase.operation")
+                .description("Latency of FirebaseService operations")
+                .tag("op", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter writeFailures(String operation) {
+        return Counter.builder("dailythoughts.firebase.write.failures")
+                .description("Writes Firebase rejected or never acknowledged")
+                .tag("op", operation)
+                .register(registry);
+    }
+
+    // One long-lived listener and its first sync: the read after attaching it, which completes warmedUp
+    // once the listener has replayed the node. When that read fails or the listener is cancelled, the
+    // next request after resyncBackoff detaches it and starts over with a new warmedUp, so a diary
+    // opened while Firebase was unreachable catches up instead of serving queries and stale copies
+    // for good. Attaching is guarded by the FirebaseService
+    private final class Sync {
+
+        RealtimeDatabase.Registration registration;
+        volatile CompletableFuture<Void> warmedUp = new CompletableFuture<>();
+        // The listener was cancelled: what it cached may be out of date
+        volatile boolean cancelled;
+        private volatile long failedAt;
+
+        boolean ready() {
+            return warmedUp.isDone() && !warmedUp.isCompletedExceptionally();
+        }
+
+        // Whether to attach the listener: never attached yet, or failed long enough ago
+        boolean due() {
+            return registration == null
+                    || ((warmedUp.isCompletedExceptionally() || cancelled)
+                        && System.nanoTime() - failedAt >= resyncBackoff.toNanos());
+        }
+
+        // Fails the sync that armed was for, unless a newer one replaced it
+        synchronized void fail(CompletableFuture<Void> armed, Throwable error, boolean listenerCancelled) {
+            if (armed != warmedUp) {
+                return;
+            }
+            failedAt = System.nanoTime();
+            if (listenerCancelled) {
+                cancelled = true;
+            }
+            armed.completeExceptionally(error);
+        }
+
+        // Detach a failed listener and arm a new warmedUp; true if there was one, whose cache is to be dropped
+        synchronized boolean reset() {
+            if (registration == null) {
+                return false;
+            }
+            registration.remove();
+            registration = null;
+            cancelled = false;
+            warmedUp = new CompletableFuture<>();
+            return true;
+        }
+
+        // Nobody waits for a first sync that is not coming
+        synchronized void close() {
+            warmedUp.completeExceptionally(new IllegalStateException("Diary closed"));
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Where FirebaseService sends its multi-path updates. They are merged by a WriteBatcher; with a
+// journal they are durable once journaled and the replayer takes them to Firebase in the background.
+// Every open diary shares the one instance FirebaseDiaryStore owns, so there is one journal, one
+// writer thread and one max-pending bound however many diaries are open.
+class FirebaseWrites implements AutoCloseable {
+
+    private static final int WRITE_QUEUE_CAPACITY = 1000;
+    private static final Duration WRITE_BATCH_WINDOW = Duration.ofMillis(10);
+    private static final int WRITE_BATCH_MAX_SIZE = 100;
+    private static final Duration WRITE_CLOSE_TIMEOUT = Duration.ofSeconds(5);
+    private static final int REPLAY_BATCH_SIZE = 100;
+    private static final Duration REPLAY_ACK_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration REPLAY_MIN_BACKOFF = Duration.ofMillis(100);
+    private static final Duration REPLAY_MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final WriteBatcher writeBatcher;
+    // Both null when writes go straight to Firebase (tests and tools)
+    private final WriteJournal journal;
+    private final JournalReplayer replayer;
+
+    FirebaseWrites(RealtimeDatabase database, int maxPendingWrites, WriteJournal journal, MeterRegistry registry) {
+        this.writeBatcher = new WriteBatcher(database, WRITE_QUEUE_CAPACITY, maxPendingWrites, WRITE_BATCH_WINDOW,
+                WRITE_BATCH_MAX_SIZE, WRITE_CLOSE_TIMEOUT, registry);
+        this.journal = journal;
+        this.replayer = journal == null ? null : new JournalReplayer(journal, writeBatcher,
+                Math.min(REPLAY_BATCH_SIZE, maxPendingWrites), REPLAY_ACK_TIMEOUT, REPLAY_MIN_BACKOFF,
+                REPLAY_MAX_BACKOFF, registry);
+    }
+
+    // Completes once the update is journaled (or, without a journal, acknowledged by Firebase), or at
+    // once with RejectedExecutionException when too many writes are already waiting
+    CompletableFuture<Void> submit(Map<String, Object> updates) {
+        return journal != null ? journal.append(updates) : writeBatcher.submit(updates);
+    }
+
+    // Whatever the replayer has not sent stays in the journal for the next start
+    @Override
+    public void close() {
+        if (replayer != null) {
+            replayer.close();
+        }
+        writeBatcher.close();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
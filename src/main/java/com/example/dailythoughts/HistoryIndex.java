@@ -0,0 +1,105 @@
+package com.example.dailythoughts;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The cached thoughts, by key and in one array sorted oldest first by (timestamp, key), for cursor
+// pagination newest first. A thought is placed by binary search and an array copy; keys are
+// time-ordered, so new and initially loaded thoughts almost always go at the end. Lookups by key
+// never block; paging and writes serialize on the index, and a page holds it only to copy out limit
+// references.
+class HistoryIndex {
+
+    private static final Comparator<Thought> OLDEST_FIRST = (a, b) -> Thought.newestFirst(b, a);
+
+    private final Map<String, Thought> byKey = new ConcurrentHashMap<>();
+    // Live elements are sorted[0 .. size); guarded by this
+    private Thought[] sorted = new Thought[16];
+    private int size;
+
+    // The thought previously cached under the same key, or null
+    synchronized Thought put(Thought thought) {
+        Thought previous = byKey.put(thought.key(), thought);
+        if (previous != null) {
+            removeAt(indexOf(previous));
+        }
+        int position = size > 0 && OLDEST_FIRST.compare(sorted[size - 1], thought) < 0
+                ? size
+                : -(Arrays.binarySearch(sorted, 0, size, thought, OLDEST_FIRST) + 1);
+        if (size == sorted.length) {
+            sorted = Arrays.copyOf(sorted, size * 2);
+        }
+        System.arraycopy(sorted, position, sorted, position + 1, size - position);
+        sorted[position] = thought;
+        size++;
+        return previous;
+    }
+
+    // The thought removed, or null if there was none
+    synchronized Thought remove(String key) {
+        Thought previous = byKey.remove(key);
+        if (previous != null) {
+            removeAt(indexOf(previous));
+        }
+        return previous;
+    }
+
+    Thought get(String key) {
+        return byKey.get(key);
+    }
+
+    synchronized void clear() {
+        byKey.clear();
+        Arrays.fill(sorted, 0, size, null);
+        size = 0;
+    }
+
+    int size() {
+        return byKey.size();
+    }
+
+    // Copy of everything, by key
+    Map<String, Thought> all() {
+        return new HashMap<>(byKey);
+    }
+
+    // Thoughts strictly older than the cursor (null = newest), newest first, at most limit of them
+    synchronized ThoughtPage page(ThoughtCursor before, int limit) {
+        int end = size;
+        if (before != null) {
+            // The cursor's own thought, if still there, is where the older ones end; if not, where it was
+            int found = Arrays.binarySearch(sorted, 0, size,
+                    new Thought(before.key(), null, null, before.timestamp(), null), OLDEST_FIRST);
+            end = found >= 0 ? found : -(found + 1);
+        }
+
+        int count = Math.min(limit, end);
+        List<Thought> thoughts = new ArrayList<>(count);
+        for (int i = end - 1; i >= end - count; i--) {
+            thoughts.add(sorted[i]);
+        }
+        ThoughtCursor nextCursor = end > count ? ThoughtCursor.of(thoughts.get(count - 1)) : null;
+        return new ThoughtPage(thoughts, nextCursor);
+    }
+
+    private int indexOf(Thought thought) {
+        return Arrays.binarySearch(sorted, 0, size, thought, OLDEST_FIRST);
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(sorted, position + 1, sorted, position, size - position - 1);
+        sorted[--size] = null;
+    }
+
+    record Page(List<String> keys, ThoughtCursor nextCursor) {
+    }
+
+    // Newest first; ties broken by key so entries sharing a timestamp stay distinct
+    record Entry(long timestamp, String key) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(other.timestamp, timestamp);
+            return byTime != 0 ? byTime : other.key.compareTo(key);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.dailythoughts;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.*;
+
+// Lazily evaluated history for home.html, one DailyThought row per day: th:each pulls entries
+// one at a time and a new chunk of days is read only when the previous one is used up. Before each read the
+// flush callback pushes the HTML rendered so far to the client, so the header and form go out
+// before the first query and memory per request stays at one chunk whatever the page size.
+// Single pass: iterator() always continues from where the last one stopped.
+public class HistoryStream implements Iterable<Map.Entry<String, DailyThought>> {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryStream.class);
+
+    private final ThoughtRepository thoughtRepository;
+    private final int chunkSize;
+    private final Runnable flush;
+
+    private String cursor;
+    private int remaining;
+    private boolean exhausted;
+    private boolean stale;
+    private Iterator<Map.Entry<String, DailyThought>> chunk = Collections.emptyIterator();
+
+    public HistoryStream(ThoughtRepository thoughtRepository, String before, int limit, int chunkSize, Runnable flush) {
+        this.thoughtRepository = thoughtRepository;
+        this.cursor = before;
+        this.remaining = limit;
+        this.chunkSize = chunkSize;
+        this.flush = flush;
+    }
+
+    // Reads the first chunk if needed; the entries stay available to the iterator
+    public boolean isEmpty() {
+        return !hasNextEntry();
+    }
+
+    // Cursor for the "Older thoughts" link; only final once iteration has finished
+    public String getNextCursor() {
+        return exhausted ? null : cursor;
+    }
+
+    // True if any chunk was served from a stale copy
+    public boolean isStale() {
+        return stale;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, DailyThought>> iterator() {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return hasNextEntry();
+            }
+
+            @Override
+            public Map.Entry<String, DailyThought> next() {
+                if (!hasNextEntry()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                return chunk.next();
+            }
+        };
+    }
+
+    private boolean hasNextEntry() {
+        if (remaining <= 0) {
+            return false;
+        }
+        if (!chunk.hasNext() && !exhausted) {
+            fetchChunk();
+        }
+        return chunk.hasNext();
+    }
+
+    private void fetchChunk() {
+        flush.run();
+
+        DayPage page;
+        try {
+            page = thoughtRepository.loadDays(cursor, Math.min(chunkSize, remaining));
+        } catch (Exception e) {
+            // The response is already committed, so end the list instead of failing the page
+            log.error("Error loading thoughts: {}", e.getMessage());
+            stale = true;
+            exhausted = true;
+            return;
+        }
+
+        stale |= page.stale();
+        cursor = page.nextCursor();
+        exhausted = cursor == null;
+
+        chunk = page.days().entrySet().iterator();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// DOWN while the write journal has quarantined records (see WriteJournal): writes that were accepted
+// and never reached Firebase, waiting for someone to look at <journal>.quarantine and remove it.
+// Not part of readiness: submits still go through, so the instance stays in rotation.
+@Component
+@Profile("!embedded")
+public class JournalHealthIndicator implements HealthIndicator {
+
+    private final Path quarantine;
+
+    public JournalHealthIndicator(@Value("${dailythoughts.journal.path:data/journal.log}") String journalPath) {
+        this.quarantine = WriteJournal.quarantinePath(Path.of(journalPath));
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = Files.exists(quarantine) ? Health.down() : Health.up();
+        return builder.withDetail("quarantine", quarantine.toString()).build();
+    }
+}
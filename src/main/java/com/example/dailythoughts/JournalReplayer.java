@@ -0,0 +1,125 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Background thread that drains the write journal to Firebase, in journal order.
+//
+// It sends the next records after the acknowledged offset through the WriteBatcher and moves the
+// offset past them once Firebase has acknowledged all of them. On failure or timeout the same
+// records are sent again after a backoff, for as long as it takes: every record is an absolute
+// multi-path update under a key chosen before it was journaled (stats counts are not journaled; see
+// FirebaseService.countThought), so sending it twice leaves the same data as sending it once. After a
+// restart it simply starts again from the stored offset.
+class JournalReplayer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalReplayer.class);
+
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    private final WriteJournal journal;
+    private final WriteBatcher writeBatcher;
+    private final int batchSize;
+    private final Duration ackTimeout;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final Thread replayer;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private final Counter replayed;
+    private final Counter retries;
+
+    JournalReplayer(WriteJournal journal, WriteBatcher writeBatcher, int batchSize, Duration ackTimeout,
+                    Duration minBackoff, Duration maxBackoff, MeterRegistry registry) {
+        this.journal = journal;
+        this.writeBatcher = writeBatcher;
+        this.batchSize = batchSize;
+        this.ackTimeout = ackTimeout;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+
+        this.replayed = Counter.builder("dailythoughts.journal.replayed")
+                .description("Journaled writes acknowledged by Firebase")
+                .register(registry);
+        this.retries = Counter.builder("dailythoughts.journal.retries")
+                .description("Journal replays that failed or timed out and will be retried")
+                .register(registry);
+
+        this.replayer = new Thread(this::run, "journal-replayer");
+        this.replayer.setDaemon(true);
+        this.replayer.start();
+    }
+
+    private void run() {
+        Duration backoff = minBackoff;
+        while (stopped.getCount() > 0) {
+            try {
+                List<WriteJournal.Entry> entries = journal.awaitUnacknowledged(batchSize, IDLE_POLL_MILLIS);
+                if (entries.isEmpty()) {
+                    continue;
+                }
+
+                // Unreadable records are already quarantined by the journal; they are only stepped over
+                List<CompletableFuture<Void>> acks = new ArrayList<>(entries.size());
+                for (WriteJournal.Entry entry : entries) {
+                    if (entry.updates() != null) {
+                        acks.add(writeBatcher.submit(entry.updates()));
+                    }
+                }
+                CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]))
+                        .get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+                journal.acknowledge(entries.get(entries.size() - 1).next(), entries.size());
+                replayed.increment(acks.size());
+                backoff = minBackoff;
+
+            } catch (ExecutionException | TimeoutException | IOException e) {
+                String reason = e instanceof ExecutionException ? e.getCause().getMessage()
+                        : e instanceof TimeoutException ? "no acknowledgement" : e.getMessage();
+                log.warn("Journal replay failed ({}), retrying in {} ms", reason, backoff.toMillis());
+                retries.increment();
+                if (await(backoff)) {
+                    break;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(maxBackoff) > 0 ? maxBackoff : backoff.multipliedBy(2);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    // Waits for the backoff; true when closed meanwhile
+    private boolean await(Duration duration) {
+        try {
+            return stopped.await(duration.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    // Stops without interrupting: an interrupt during a channel read would close the journal's channel
+    @Override
+    public void close() {
+        stopped.countDown();
+        try {
+            replayer.join(ackTimeout.toMillis() + IDLE_POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,157 +1,307 @@
 package com.example.dailythoughts;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import jakarta.servlet.http.HttpSession;
-import java.text.SimpleDateFormat;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Controller
 public class MainController {
 
-    private final FirebaseService firebaseService;
+    private static final Logger log = LoggerFactory.getLogger(MainController.class);
+    // One line per request; sampled by RequestLogSampling, see logback-spring.xml
+    private static final Logger requests = LoggerFactory.getLogger("dailythoughts.requests");
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int HISTORY_CHUNK_SIZE = 20;
+    private static final long SUBMIT_TIMEOUT_SECONDS = 10;
+    // Retry-After when the database is behind; pending writes usually drain well within it
+    private static final Duration OVERLOADED_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Outcome of a submit, carried to /diary as ?status= in the redirect
+    // (flash attributes would need a server-side session)
+    private static final Map<String, String> FEEDBACK = Map.of(
+            "saved-you", "✅ Your thought saved permanently!",
+            "saved-her", "✅ Her thought saved permanently!",
+            "empty", "⚠️ Please write something!",
+            "pending", "⏳ Still saving - your thought will appear once the database confirms it",
+            "error", "❌ Error saving - please try again");
+
+    private final Diaries diaries;
+    private final DiaryMembers diaryMembers;
+    private final HealthEndpoint healthEndpoint;
+    private final DiaryFeed diaryFeed;
+    private final SessionCookies sessionCookies;
+    private final SubmitRateLimiter submitRateLimiter;
+    private final DayFragments dayFragments;
+    // Changes with every build, so no ETag outlives the templates it was rendered with
+    private final String buildVersion;
 
     // Constructor injection
-    public MainController(FirebaseService firebaseService) {
-        this.firebaseService = firebaseService;
+    public MainController(Diaries diaries, DiaryMembers diaryMembers, HealthEndpoint healthEndpoint,
+                          DiaryFeed diaryFeed, SessionCookies sessionCookies, SubmitRateLimiter submitRateLimiter,
+                          DayFragments dayFragments,
+                          @Value("${dailythoughts.build.version:dev}") String buildVersion) {
+        this.diaries = diaries;
+        this.diaryMembers = diaryMembers;
+        this.healthEndpoint = healthEndpoint;
+        this.diaryFeed = diaryFeed;
+        this.sessionCookies = sessionCookies;
+        this.submitRateLimiter = submitRateLimiter;
+        this.dayFragments = dayFragments;
+        this.buildVersion = buildVersion;
     }
 
     // 1. LOGIN PAGE
     @GetMapping("/")
     public String login() {
-        System.out.println("GET / - Loading login page");
+        requests.info("GET / - login page");
         return "login"; // your login.html
     }
 
     // 2. HANDLE LOGIN
+    // Into the diary given, or the default one when the field is left empty
     @PostMapping("/login")
     public String handleLogin(
+            @RequestParam(required = false) String diary,
             @RequestParam String username,
             @RequestParam String password,
-            HttpSession session,
+            HttpServletRequest request,
+            HttpServletResponse response,
             Model model) {
 
-        System.out.println("POST /login - User: " + username);
+        String diaryId = diary == null || diary.isBlank() ? diaries.defaultId() : diary.trim().toLowerCase(Locale.ROOT);
+        requests.info("POST /login - user {} in diary {}", username, diaryId);
 
-        // Simple hardcoded auth (you can improve this later)
-        if (("you".equals(username) && "yourpassword".equals(password)) ||
-                ("her".equals(username) && "herpassword".equals(password))) {
-
-            session.setAttribute("username", username);
-            System.out.println("✅ Login successful for: " + username);
-            return "redirect:/diary";
+        try {
+            if (Diaries.isValidId(diaryId) && diaryMembers.authenticate(diaryId, username, password)) {
+                sessionCookies.issue(request, response, diaryId, username);
+                log.info("Login successful for {} in diary {}", username, diaryId);
+                return "redirect:/diary";
+            }
+        } catch (IllegalStateException e) {
+            log.warn("Could not check login for {} in diary {}: {}", username, diaryId, e.getMessage());
+            model.addAttribute("errorMessage", "Could not check your login - please try again");
+            return "login";
         }
 
-        model.addAttribute("errorMessage", "Wrong username or password!");
+        model.addAttribute("errorMessage", "Wrong diary, username or password!");
         return "login";
     }
 
     // 3. DIARY/HOME PAGE
     @GetMapping("/diary")
-    public String diary(HttpSession session, Model model) {
-        String username = (String) session.getAttribute("username");
-
+    public String diary(
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String status,
+            @RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+            @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+            HttpServletResponse response,
+            WebRequest webRequest,
+            Model model) {
         if (username == null) {
-            System.out.println("❌ No session, redirecting to login");
+            requests.info("GET /diary - no session, redirecting to login");
             return "redirect:/";
         }
 
-        System.out.println("📖 Loading diary for: " + username);
+        if (status != null && FEEDBACK.containsKey(status)) {
+            model.addAttribute("feedbackMessage", FEEDBACK.get(status));
+        }
+
+        // Revalidate on every visit, but skip the render when nothing changed since the browser's copy.
+        // The page differs per user, and a flash message makes it one-off
+        response.setHeader("Cache-Control", "private, no-cache");
+        ThoughtRepository thoughtRepository = diaries.get(diary);
+        String version = thoughtRepository.version();
+        if (version != null && !model.containsAttribute("feedbackMessage")) {
+            String etag = "W/\"" + buildVersion + "-" + version + "-" + diary + "-" + username + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+        }
+
+        requests.info("GET /diary - user {} in diary {}", username, diary);
         model.addAttribute("username", username);
+        model.addAttribute("diary", diary);
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        model.addAttribute("before", before);
+        model.addAttribute("limit", pageSize);
 
+        // Days are read in chunks while the template renders, newest first;
+        // everything above the history is flushed before the first read
+        model.addAttribute("history", new HistoryStream(thoughtRepository, before, pageSize, HISTORY_CHUNK_SIZE,
+                () -> flush(response)));
+        model.addAttribute("fragments", dayFragments);
+
+        return "home";
+    }
+
+    // Live day updates for an open diary page, as server-sent events (see DiaryFeed)
+    @GetMapping(path = "/diary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter diaryStream(
+            @RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+            @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+            HttpServletResponse response) throws IOException {
+        if (username == null) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return null;
+        }
+
+        SseEmitter emitter = diaryFeed.subscribe(diary);
+        if (emitter == null) {
+            // EventSource retries on its own; the page still works without live updates
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many live connections");
+        }
+        return emitter;
+    }
+
+    private static void flush(HttpServletResponse response) {
         try {
-            // Load thoughts from Firebase
-            Map<String, Map<String, String>> allThoughts = firebaseService.loadAllThoughts();
-
-            // Format for your HTML template
-            Map<String, Map<String, String>> history = new LinkedHashMap<>();
-
-            // Sort by timestamp (newest first)
-            List<Map.Entry<String, Map<String, String>>> sortedEntries = new ArrayList<>(allThoughts.entrySet());
-            sortedEntries.sort((a, b) -> {
-                String timestampA = a.getValue().get("timestamp");
-                String timestampB = b.getValue().get("timestamp");
-                if (timestampA != null && timestampB != null) {
-                    return Long.compare(Long.parseLong(timestampB), Long.parseLong(timestampA));
-                }
-                return 0;
-            });
-
-            // Create history structure for your HTML
-            for (Map.Entry<String, Map<String, String>> entry : sortedEntries) {
-                String date = entry.getKey();
-                Map<String, String> thoughtData = entry.getValue();
-                String author = thoughtData.get("author");
-                String thought = thoughtData.get("thought");
-
-                Map<String, String> historyEntry = new HashMap<>();
-
-                if ("you".equals(author)) {
-                    historyEntry.put("yourThought", thought);
-                    historyEntry.put("herThought", "");
-                } else if ("her".equals(author)) {
-                    historyEntry.put("yourThought", "");
-                    historyEntry.put("herThought", thought);
-                }
-
-                history.put(date, historyEntry);
-            }
+            response.flushBuffer();
+        } catch (IOException e) {
+            // Client went away; stop rendering instead of querying for nobody
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            model.addAttribute("history", history);
-            System.out.println("✅ Loaded " + history.size() + " thoughts");
+    // SEARCH: thoughts containing every word of q, newest first, paged like /diary
+    @GetMapping("/search")
+    public String search(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(required = false) ThoughtCursor before,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+            @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+            Model model) {
+        if (username == null) {
+            return "redirect:/";
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Error loading thoughts: " + e.getMessage());
-            model.addAttribute("error", "Could not load thoughts: " + e.getMessage());
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        model.addAttribute("username", username);
+        model.addAttribute("diary", diary);
+        model.addAttribute("q", q);
+        model.addAttribute("before", before);
+        model.addAttribute("limit", pageSize);
+        model.addAttribute("results", diaries.get(diary).search(q, before, pageSize));
+        return "search";
+    }
+
+    // STATS: thoughts per author and month and writing streaks, from the in-memory rollups (see StatsRollup)
+    @GetMapping("/stats")
+    public String stats(
+            @RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+            @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+            Model model) {
+        if (username == null) {
+            return "redirect:/";
         }
 
-        return "diary"; // Change to your actual filename (home.html or diary.html)
+        model.addAttribute("username", username);
+        model.addAttribute("diary", diary);
+        model.addAttribute("stats", diaries.get(diary).loadStats());
+        return "stats";
     }
 
     // 4. SUBMIT A THOUGHT
+    // 429 with Retry-After, instead of queuing more work, when this user submits faster than the rate
+    // limit allows or when too many writes are already waiting for the database
     @PostMapping("/submit")
     public String submitThought(
             @RequestParam(required = false) String yourThought,
             @RequestParam(required = false) String herThought,
-            HttpSession session,
-            Model model) {
+            @RequestAttribute(name = SessionCookies.USERNAME, required = false) String username,
+            @RequestAttribute(name = SessionCookies.DIARY, required = false) String diary,
+            HttpServletResponse response) throws IOException {
 
-        String username = (String) session.getAttribute("username");
         if (username == null) {
             return "redirect:/";
         }
 
-        // Get current date/time
-        String date = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        // Every diary has a "you" and a "her": limit each member, not each name
+        Duration wait = submitRateLimiter.tryAcquire(diary + "/" + username);
+        if (!wait.isZero()) {
+            requests.info("POST /submit - user {}: rate limited for {} ms", username, wait.toMillis());
+            return tooManyRequests(response, wait, "Too many thoughts at once - please wait a moment");
+        }
+
+        // Get current date/time; it decides the day, the repository picks a unique key
+        String date = LocalDateTime.now().format(DATE_FORMAT);
+        ThoughtRepository thoughtRepository = diaries.get(diary);
 
+        String status;
         try {
             if ("you".equals(username) && yourThought != null && !yourThought.trim().isEmpty()) {
-                // Save "your" thought
-                firebaseService.saveThought(date, "you", yourThought.trim());
-                model.addAttribute("feedbackMessage", "✅ Your thought saved permanently!");
+                // Save "your" thought and wait for the database to acknowledge it
+                thoughtRepository.saveThought(date, "you", yourThought.trim()).get(SUBMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                status = "saved-you";
 
             } else if ("her".equals(username) && herThought != null && !herThought.trim().isEmpty()) {
-                // Save "her" thought
-                firebaseService.saveThought(date, "her", herThought.trim());
-                model.addAttribute("feedbackMessage", "✅ Her thought saved permanently!");
+                // Save "her" thought and wait for the database to acknowledge it
+                thoughtRepository.saveThought(date, "her", herThought.trim()).get(SUBMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                status = "saved-her";
 
             } else {
-                model.addAttribute("feedbackMessage", "⚠️ Please write something!");
+                status = "empty";
             }
 
+        } catch (TimeoutException e) {
+            status = "pending";
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                requests.info("POST /submit - user {}: database overloaded", username);
+                return tooManyRequests(response, OVERLOADED_RETRY_AFTER, "The diary is busy - please try again in a moment");
+            }
+            log.error("Error saving: {}", e.getCause().getMessage());
+            status = "error";
         } catch (Exception e) {
-            model.addAttribute("feedbackMessage", "❌ Error saving: " + e.getMessage());
+            log.error("Error saving: {}", e.getMessage());
+            status = "error";
         }
 
-        return "redirect:/diary";
+        requests.info("POST /submit - user {}: {}", username, status);
+        return "redirect:/diary?status=" + status;
+    }
+
+    private static String tooManyRequests(HttpServletResponse response, Duration retryAfter, String message)
+            throws IOException {
+        long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), message);
+        return null;
     }
 
     // 5. CLEAR ALL THOUGHTS (optional - for testing)
     @GetMapping("/clear")
     @ResponseBody
-    public String clearThoughts(HttpSession session) {
-        String username = (String) session.getAttribute("username");
+    public String clearThoughts(@RequestAttribute(name = SessionCookies.USERNAME, required = false) String username) {
         if (!"you".equals(username)) {
             return "Only 'you' can clear thoughts";
         }
@@ -167,15 +317,26 @@ public class MainController {
 
     // 6. LOGOUT
     @GetMapping("/logout")
-    public String logout(HttpSession session) {
-        session.invalidate();
+    public String logout(HttpServletRequest request, HttpServletResponse response) {
+        sessionCookies.clear(request, response);
         return "redirect:/";
     }
 
     // 7. HEALTH CHECK
+    // Readiness for the platform's health check: 503 while Firebase is unreachable,
+    // so traffic is held back instead of being served empty pages
     @GetMapping("/health")
     @ResponseBody
-    public String health() {
-        return "✅ Server is running with Firebase!";
+    public ResponseEntity<String> health() {
+        HealthComponent readiness = healthEndpoint.healthForPath("readiness");
+        if (readiness == null) {
+            readiness = healthEndpoint.health();
+        }
+
+        if (Status.UP.equals(readiness.getStatus())) {
+            return ResponseEntity.ok("✅ Server is running with Firebase!");
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body("⚠️ Not ready: " + readiness.getStatus().getCode());
     }
 }
\ No newline at end of file
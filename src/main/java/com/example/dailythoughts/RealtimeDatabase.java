@@ -0,0 +1,54 @@
+package com.example.dailythoughts;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// Thin, path-based view of the Realtime Database.
+// Values are plain Java objects, the same shape DataSnapshot.getValue() returns
+// (Map<String, Object> for nodes, String/Long/Boolean for leaves).
+public interface RealtimeDatabase {
+
+    // One-off read of the value at a path (a remote round trip)
+    CompletableFuture<Object> get(String path);
+
+    // One-off ordered query; the result map iterates in query order (ascending)
+    CompletableFuture<Map<String, Object>> query(String path, ChildQuery query);
+
+    // Replace the value at a path
+    CompletableFuture<Void> set(String path, Object value);
+
+    // Atomic multi-path update: each key is a path relative to path ("" = root)
+    CompletableFuture<Void> update(String path, Map<String, Object> values);
+
+    // Remove the value at a path
+    CompletableFuture<Void> remove(String path);
+
+    // Replace the value at a path with update(current value), atomically: the server runs it again
+    // when another write got there first, so update must have no side effects. Completes with the
+    // committed value
+    CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update);
+
+    // Long-lived listener on the direct children of a path.
+    // Existing children are replayed as onChildAdded right after registration.
+    Registration listenChildren(String path, ChildListener listener);
+
+    // Long-lived listener on the value at a path, called with the current value and on every change
+    Registration listenValue(String path, Consumer<Object> listener);
+
+    interface ChildListener {
+        void onChildAdded(String key, Object value);
+
+        void onChildChanged(String key, Object value);
+
+        void onChildRemoved(String key);
+
+        default void onCancelled(Exception error) {
+        }
+    }
+
+    interface Registration {
+        void remove();
+    }
+}
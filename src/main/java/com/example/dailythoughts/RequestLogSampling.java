@@ -0,0 +1,47 @@
+package com.example.dailythoughts;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Logback turbo filter that keeps about one in oneIn lines below WARN from the loggers under
+// loggerName (the per-request lines), and lets everything else through to the normal level checks.
+// Configured in logback-spring.xml:
+//   <turboFilter class="com.example.dailythoughts.RequestLogSampling">
+//     <loggerName>dailythoughts.requests</loggerName>
+//     <oneIn>10</oneIn>
+//   </turboFilter>
+//
+// Turbo filters run before every logging call of every logger, so this stays branch-and-random:
+// no lock, no shared counter for the request threads to contend on.
+public class RequestLogSampling extends TurboFilter {
+
+    private String loggerName = "dailythoughts.requests";
+    private int oneIn = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format is null for isInfoEnabled() and friends: only sample the line itself, once
+        if (oneIn <= 1 || format == null || level.isGreaterOrEqual(Level.WARN) || !isSampled(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(oneIn) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean isSampled(String name) {
+        return name.startsWith(loggerName)
+                && (name.length() == loggerName.length() || name.charAt(loggerName.length()) == '.');
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    public void setOneIn(int oneIn) {
+        this.oneIn = oneIn;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.dailythoughts;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+// Inverted index over thought text: term -> posting list of keys, newest first.
+// A query matches thoughts containing all of its terms; results page by (timestamp, key) like HistoryIndex.
+// Readers never block; writers serialize on the index.
+class SearchIndex {
+
+    // Runs of anything but letters and digits separate terms
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // What each key was indexed under, so it can be taken out again
+    private final Map<String, Indexed> indexed = new ConcurrentHashMap<>();
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+
+    synchronized void put(String key, long timestamp, String text) {
+        remove(key);
+        Set<String> terms = terms(text);
+        HistoryIndex.Entry entry = new HistoryIndex.Entry(timestamp, key);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, ignored -> new Postings()).add(entry);
+        }
+        indexed.put(key, new Indexed(entry, terms));
+    }
+
+    synchronized void remove(String key) {
+        Indexed previous = indexed.remove(key);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous.terms()) {
+            Postings list = postings.get(term);
+            list.remove(previous.entry());
+            if (list.size == 0) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        indexed.clear();
+        postings.clear();
+    }
+
+    int size() {
+        return indexed.size();
+    }
+
+    int termCount() {
+        return postings.size();
+    }
+
+    // Keys of thoughts matching every term of the query, strictly older than the cursor
+    // (null = newest), at most limit of them
+    HistoryIndex.Page search(String query, ThoughtCursor before, int limit) {
+        Set<String> terms = terms(query);
+        if (terms.isEmpty()) {
+            return new HistoryIndex.Page(List.of(), null);
+        }
+
+        List<Postings> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                return new HistoryIndex.Page(List.of(), null);
+            }
+            lists.add(list);
+        }
+        // Walk the rarest term and probe the others, so the cost follows the smallest list
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        NavigableSet<HistoryIndex.Entry> rarest = lists.get(0).entries;
+        List<Postings> others = lists.subList(1, lists.size());
+
+        Iterator<HistoryIndex.Entry> iterator = before == null
+                ? rarest.iterator()
+                : rarest.tailSet(new HistoryIndex.Entry(before.timestamp(), before.key()), false).iterator();
+
+        List<String> keys = new ArrayList<>(Math.min(limit, lists.get(0).size));
+        ThoughtCursor nextCursor = null;
+        HistoryIndex.Entry last = null;
+        while (iterator.hasNext()) {
+            HistoryIndex.Entry entry = iterator.next();
+            if (!containsAll(others, entry)) {
+                continue;
+            }
+            if (keys.size() == limit) {
+                nextCursor = new ThoughtCursor(last.timestamp(), last.key());
+                break;
+            }
+            keys.add(entry.key());
+            last = entry;
+        }
+
+        return new HistoryIndex.Page(keys, nextCursor);
+    }
+
+    // Lower-cased words and numbers of the text, each once
+    static Set<String> terms(String text) {
+        if (text == null || text.isBlank()) {
+            return Set.of();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static boolean containsAll(List<Postings> lists, HistoryIndex.Entry entry) {
+        for (Postings list : lists) {
+            if (!list.entries.contains(entry)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Indexed(HistoryIndex.Entry entry, Set<String> terms) {
+    }
+
+    // Skip-list sizes are O(n), so each list keeps its own count; written under the index lock
+    private static final class Postings {
+        final NavigableSet<HistoryIndex.Entry> entries = new ConcurrentSkipListSet<>();
+        volatile int size;
+
+        void add(HistoryIndex.Entry entry) {
+            if (entries.add(entry)) {
+                size++;
+            }
+        }
+
+        void remove(HistoryIndex.Entry entry) {
+            if (entries.remove(entry)) {
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.dailythoughts;
+
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// Checks the session cookie on every page request and exposes the user and their diary as the
+// "username" and "diary" request attributes; controllers read them with @RequestAttribute. Nothing is
+// stored on the server. Both also go in the logging MDC, so every log line of the request carries them.
+@Component
+public class SessionCookieFilter extends OncePerRequestFilter {
+
+    private final SessionCookies sessionCookies;
+
+    public SessionCookieFilter(SessionCookies sessionCookies) {
+        this.sessionCookies = sessionCookies;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SessionCookies.Session session = sessionCookies.authenticate(request, response);
+        if (session == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        request.setAttribute(SessionCookies.USERNAME, session.username());
+        request.setAttribute(SessionCookies.DIARY, session.diary());
+        MDC.put(SessionCookies.USERNAME, session.username());
+        MDC.put(SessionCookies.DIARY, session.diary());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(SessionCookies.USERNAME);
+            MDC.remove(SessionCookies.DIARY);
+        }
+    }
+
+    // Static files and probes never need the user
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith("/css/") || path.startsWith("/actuator/") || path.equals("/health");
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Stateless login: the diary, the username and an expiry in an HMAC-SHA256 signed cookie, so any replica
+// can check it without a server-side session.
+// Value: <key id>.<base64url diary/username>.<expiry epoch s>.<base64url mac>
+// Cookies from before diaries had IDs carry no diary and are no longer valid: those users log in again.
+//
+// Keys come from dailythoughts.session.keys as "id:base64secret,id:base64secret". The first one signs,
+// all of them verify: to rotate, put a new key in front, and drop the old one once every cookie signed
+// with it has been re-signed or expired. Without keys a random one is made at startup, which logs
+// everyone out on restart and does not work across replicas.
+@Component
+public class SessionCookies {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionCookies.class);
+
+    public static final String COOKIE = "dt_session";
+    // Request attributes the filter sets for a valid cookie
+    public static final String USERNAME = "username";
+    public static final String DIARY = "diary";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9_-]{1,16}");
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Map<String, Mac> macs = new LinkedHashMap<>();
+    private final String signingKeyId;
+    private final Duration ttl;
+    private final Clock clock;
+
+    @Autowired
+    public SessionCookies(@Value("${dailythoughts.session.keys:}") String keys,
+                          @Value("${dailythoughts.session.ttl:7d}") Duration ttl) {
+        this(keys, ttl, Clock.systemUTC());
+    }
+
+    SessionCookies(String keys, Duration ttl, Clock clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+
+        for (String entry : keys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length != 2 || !KEY_ID.matcher(parts[0]).matches()) {
+                throw new IllegalArgumentException("dailythoughts.session.keys: expected id:base64secret, got " + parts[0]);
+            }
+            macs.put(parts[0], mac(Base64.getDecoder().decode(parts[1])));
+        }
+        if (macs.isEmpty()) {
+            log.warn("No dailythoughts.session.keys set - using a random key, logins end on restart");
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            macs.put("dev", mac(secret));
+        }
+        this.signingKeyId = macs.keySet().iterator().next();
+    }
+
+    // Set a fresh cookie for username in the diary
+    public void issue(HttpServletRequest request, HttpServletResponse response, String diary, String username) {
+        response.addCookie(cookie(request, sign(diary, username), (int) ttl.toSeconds()));
+    }
+
+    public void clear(HttpServletRequest request, HttpServletResponse response) {
+        response.addCookie(cookie(request, "", 0));
+    }
+
+    // Session in the request's cookie if it is valid and unexpired, otherwise null.
+    // Re-issues the cookie once it is past half its life or was signed with a retired key
+    public Session authenticate(HttpServletRequest request, HttpServletResponse response) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (!COOKIE.equals(cookie.getName())) {
+                continue;
+            }
+            Session session = verify(cookie.getValue());
+            if (session == null) {
+                return null;
+            }
+            long remaining = session.expiresAt() - clock.instant().getEpochSecond();
+            if (remaining < ttl.toSeconds() / 2 || !signingKeyId.equals(session.keyId())) {
+                issue(request, response, session.diary(), session.username());
+            }
+            return session;
+        }
+        return null;
+    }
+
+    String sign(String diary, String username) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        String subject = diary + "/" + username;
+        String payload = signingKeyId + "." + ENCODER.encodeToString(subject.getBytes(StandardCharsets.UTF_8))
+                + "." + expiresAt;
+        return payload + "." + ENCODER.encodeToString(mac(signingKeyId, payload));
+    }
+
+    // Null unless the value is well formed, signed by a known key and unexpired
+    Session verify(String value) {
+        if (value == null) {
+            return null;
+        }
+        int signatureStart = value.lastIndexOf('.');
+        String[] parts = value.split("\\.", -1);
+        if (parts.length != 4 || !macs.containsKey(parts[0])) {
+            return null;
+        }
+        try {
+            byte[] expected = mac(parts[0], value.substring(0, signatureStart));
+            if (!MessageDigest.isEqual(expected, DECODER.decode(parts[3]))) {
+                return null;
+            }
+            long expiresAt = Long.parseLong(parts[2]);
+            if (expiresAt <= clock.instant().getEpochSecond()) {
+                return null;
+            }
+            // Diary IDs have no '/'
+            String subject = new String(DECODER.decode(parts[1]), StandardCharsets.UTF_8);
+            int slash = subject.indexOf('/');
+            if (slash < 0) {
+                return null;
+            }
+            return new Session(parts[0], subject.substring(0, slash), subject.substring(slash + 1), expiresAt);
+        } catch (IllegalArgumentException e) { // bad base64 or number
+            return null;
+        }
+    }
+
+    // Mac instances are not thread-safe; a clone of the keyed prototype skips the key setup
+    private byte[] mac(String keyId, String payload) {
+        try {
+            Mac mac = (Mac) macs.get(keyId).clone();
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Mac mac(byte[] secret) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("dailythoughts.session.keys: secrets need at least 32 bytes");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Cookie cookie(HttpServletRequest request, String value, int maxAge) {
+        Cookie cookie = new Cookie(COOKIE, value);
+        cookie.setPath("/");
+        cookie.setMaxAge(maxAge);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
+
+    public record Session(String keyId, String diary, String username, long expiresAt) {
+    }
+}
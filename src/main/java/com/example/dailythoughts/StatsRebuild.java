@@ -0,0 +1,135 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// One-off job that recomputes a diary's stats rollups (StatsRollup) from its thoughts, hot and
+// archived. Run it with --dailythoughts.stats.rebuild=true (and --dailythoughts.stats.rebuild-diary=<id>
+// for another diary than the default) once after deploying the rollups, and whenever they may have
+// drifted, such as after thoughts were edited by hand in the console. ThoughtTransfer uses it for the
+// months an import touched.
+//
+// Each month is one chunk: its archive blob and a date range query of the hot node, counted on its
+// own thread, at most parallelism at once. A month's counts replace that month's node as soon as they
+// are known, and a month left without thoughts is removed, so the other months keep taking submits.
+// A submit landing in a month between its read and its write is left out; run it again if in doubt.
+@Component
+@Profile("!embedded")
+@ConditionalOnProperty(name = "dailythoughts.stats.rebuild", havingValue = "true")
+public class StatsRebuild implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StatsRebuild.class);
+
+    private final RealtimeDatabase database;
+    private final String root;
+    private final int parallelism;
+
+    public StatsRebuild(RealtimeDatabase database,
+                        @Value("${dailythoughts.stats.rebuild-diary:${dailythoughts.diaries.default-id:default}}")
+                        String diaryId,
+                        @Value("${dailythoughts.stats.rebuild-parallelism:8}") int parallelism) {
+        this.database = database;
+        this.root = Diaries.root(diaryId);
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Rebuilding stats of {}...", root);
+        int months = rebuild();
+        log.info("Rebuilt stats of {} months", months);
+    }
+
+    // Every month with thoughts or stats; returns the number of months with thoughts
+    int rebuild() {
+        Set<String> months = new TreeSet<>(keys(root + "archived"));
+        months.addAll(keys(root + "stats"));
+        YearMonth oldest = hotMonth(ChildQuery.byChild("date").startAfter("").limitToFirst(1));
+        YearMonth newest = hotMonth(ChildQuery.byChild("date").startAfter("").limitToLast(1));
+        if (oldest != null && newest != null) {
+            for (YearMonth month = oldest; !month.isAfter(newest); month = month.plusMonths(1)) {
+                months.add(month.toString());
+            }
+        }
+        return rebuild(months);
+    }
+
+    // Only the given yyyy-MM months; returns the number of them with thoughts
+    int rebuild(Collection<String> months) {
+        Set<String> archived = keys(root + "archived");
+        Semaphore running = new Semaphore(parallelism);
+        try (ExecutorService counters = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Boolean>> counted = new ArrayList<>();
+            for (String month : months) {
+                counted.add(CompletableFuture.supplyAsync(() -> {
+                    running.acquireUninterruptibly();
+                    try {
+                        return rebuildMonth(month, archived.contains(month));
+                    } finally {
+                        running.release();
+                    }
+                }, counters));
+            }
+            return (int) counted.stream().filter(CompletableFuture::join).count();
+        }
+    }
+
+    // Count one month and write its node; returns whether it had thoughts
+    private boolean rebuildMonth(String month, boolean archived) {
+        // A month can be both archived and hot again (after an import); a thought in both counts once
+        Map<String, Object> thoughts = new HashMap<>();
+        if (archived && database.get(root + "archive/" + month).join() instanceof String blob) {
+            thoughts.putAll(ArchivedMonth.decodeRaw(blob).get(ArchivedMonth.THOUGHTS));
+        }
+        thoughts.putAll(database.query(root + "thoughts", ChildQuery.byChild("date")
+                .startAfter(month).endBefore(YearMonth.parse(month).plusMonths(1).toString())).join());
+
+        // author -> day -> count, the shape of the month's node
+        Map<String, Map<String, Long>> counts = new TreeMap<>();
+        for (Map.Entry<String, Object> child : thoughts.entrySet()) {
+            Thought thought = Thought.fromValue(child.getKey(), child.getValue());
+            String day = StatsRollup.dayOf(thought.date());
+            if (thought.author() != null && day != null) {
+                counts.computeIfAbsent(thought.author().id(), ignored -> new TreeMap<>()).merge(day, 1L, Long::sum);
+            }
+        }
+
+        Map<String, Object> node = new HashMap<>();
+        node.put(month, counts.isEmpty() ? null : counts);
+        database.update(root + "stats", node).join();
+        log.info("Counted {} thoughts of {}", thoughts.size(), month);
+        return !counts.isEmpty();
+    }
+
+    private Set<String> keys(String path) {
+        Set<String> keys = new TreeSet<>();
+        if (database.get(path).join() instanceof Map<?, ?> children) {
+            children.keySet().forEach(key -> keys.add(key.toString()));
+        }
+        return keys;
+    }
+
+    private YearMonth hotMonth(ChildQuery query) {
+        Map<String, Object> found = database.query(root + "thoughts", query).join();
+        for (Map.Entry<String, Object> child : found.entrySet()) {
+            String day = StatsRollup.dayOf(Thought.fromValue(child.getKey(), child.getValue()).date());
+            if (day != null) {
+                return YearMonth.parse(day.substring(0, 7));
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.dailythoughts;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// Thought counts per author per day, the rollup /stats is computed from. Firebase keeps them under
+// <root>stats/{yyyy-MM}/{author}/{yyyy-MM-dd}, at most a month's days per author and month whatever
+// the number of thoughts; saveThought and deleteThought adjust a day's count in a transaction.
+// FirebaseService keeps a copy fed month by month by a listener, EmbeddedThoughtRepository one of
+// its own.
+//
+// In memory it holds one number per author and day written. toStats walks all of them, so its result
+// is kept and served again until the rollup changes or the day does: /stats costs O(days) once per
+// change, and nothing per request in between. Changes need outside locking; toStats calls may run
+// concurrently with each other.
+class StatsRollup {
+
+    // Author id to day to thoughts that day, days in order
+    private final Map<String, NavigableMap<String, Long>> days = new TreeMap<>();
+    // Last toStats result, dropped by any change
+    private volatile Computed computed;
+
+    // From the value of the stats node: month -> author -> day -> count
+    static StatsRollup fromValue(Object value) {
+        StatsRollup rollup = new StatsRollup();
+        if (value instanceof Map<?, ?> months) {
+            months.values().forEach(rollup::addMonth);
+        }
+        return rollup;
+    }
+
+    // Replace the counts of one yyyy-MM month with those of its node (author -> day -> count),
+    // or drop them when value is null
+    void replaceMonth(String month, Object value) {
+        for (NavigableMap<String, Long> counts : days.values()) {
+            counts.subMap(month, month + "~").clear();
+        }
+        addMonth(value);
+        computed = null;
+    }
+
+    void clear() {
+        days.clear();
+        computed = null;
+    }
+
+    private void addMonth(Object authors) {
+        if (!(authors instanceof Map<?, ?> byAuthor)) {
+            return;
+        }
+        for (Map.Entry<?, ?> author : byAuthor.entrySet()) {
+            if (!(author.getValue() instanceof Map<?, ?> byDay)) {
+                continue;
+            }
+            for (Map.Entry<?, ?> day : byDay.entrySet()) {
+                if (day.getValue() instanceof Number count) {
+                    add(author.getKey().toString(), day.getKey().toString(), count.longValue());
+                }
+            }
+        }
+    }
+
+    // "yyyy-MM-dd" of a thought's "yyyy-MM-dd HH:mm:ss" date, or null when it has none the rollup can use
+    static String dayOf(String date) {
+        if (date == null || date.length() < 10) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date.substring(0, 10)).toString();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Path of an author's count of a day under the stats node
+    static String countPath(String author, String day) {
+        return day.substring(0, 7) + "/" + author + "/" + day;
+    }
+
+    // A stored count moved by delta, for a transaction; a day left with no thoughts is removed
+    static Object adjust(Object count, long delta) {
+        long adjusted = (count instanceof Number number ? number.longValue() : 0) + delta;
+        return adjusted > 0 ? adjusted : null;
+    }
+
+    void add(String author, String day, long delta) {
+        NavigableMap<String, Long> counts = days.computeIfAbsent(author, ignored -> new TreeMap<>());
+        long count = counts.getOrDefault(day, 0L) + delta;
+        if (count > 0) {
+            counts.put(day, count);
+        } else {
+            counts.remove(day);
+        }
+        computed = null;
+    }
+
+    void add(Thought thought, long delta) {
+        String day = dayOf(thought.date());
+        if (thought.author() != null && day != null) {
+            add(thought.author().id(), day, delta);
+        }
+    }
+
+    // Month by month counts and per-author streaks as of today
+    DiaryStats toStats(LocalDate today) {
+        Computed last = computed;
+        if (last != null && last.today().equals(today)) {
+            return last.stats();
+        }
+        DiaryStats stats = compute(today);
+        computed = new Computed(today, stats);
+        return stats;
+    }
+
+    private DiaryStats compute(LocalDate today) {
+        NavigableMap<String, Map<String, Long>> months = new TreeMap<>(Comparator.reverseOrder());
+        Map<String, DiaryStats.AuthorStats> authors = new TreeMap<>();
+
+        for (Map.Entry<String, NavigableMap<String, Long>> author : days.entrySet()) {
+            NavigableMap<String, Long> counts = author.getValue();
+            if (counts.isEmpty()) {
+                continue;
+            }
+            long total = 0;
+            int run = 0;
+            int longest = 0;
+            LocalDate previous = null;
+            for (Map.Entry<String, Long> day : counts.entrySet()) {
+                months.computeIfAbsent(day.getKey().substring(0, 7), ignored -> new TreeMap<>())
+                        .merge(author.getKey(), day.getValue(), Long::sum);
+                total += day.getValue();
+
+                LocalDate date = LocalDate.parse(day.getKey());
+                run = previous != null && previous.plusDays(1).equals(date) ? run + 1 : 1;
+                longest = Math.max(longest, run);
+                previous = date;
+            }
+            // The run that ends on the last day written still counts while it can be continued
+            int current = !previous.isBefore(today.minusDays(1)) ? run : 0;
+            authors.put(author.getKey(), new DiaryStats.AuthorStats(total, previous.toString(), current, longest));
+        }
+
+        List<DiaryStats.Month> list = new ArrayList<>(months.size());
+        months.forEach((month, counts) -> list.add(new DiaryStats.Month(month, counts)));
+        return new DiaryStats(list, authors, false);
+    }
+
+    // Streaks depend on the day they are computed for
+    private record Computed(LocalDate today, DiaryStats stats) {
+    }
+}
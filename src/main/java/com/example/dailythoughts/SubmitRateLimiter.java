@@ -0,0 +1,68 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Token bucket per user for /submit: up to burst submits at once, then one more every refill interval.
+//
+// Each bucket is a single AtomicLong holding the time at which it will be full again (minus the
+// burst allowance, the "theoretical arrival time" of the generic cell rate algorithm), so taking a
+// token is one compare-and-set: no lock, no refill thread, and a rejected caller learns exactly how
+// long until the next token.
+@Component
+public class SubmitRateLimiter {
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long refillNanos;
+    private final long burstNanos;
+    private final LongSupplier nanoClock;
+    private final Counter rejected;
+
+    @Autowired
+    public SubmitRateLimiter(@Value("${dailythoughts.submit.burst:5}") int burst,
+                             @Value("${dailythoughts.submit.refill:6s}") Duration refill,
+                             MeterRegistry registry) {
+        this(burst, refill, System::nanoTime, registry);
+    }
+
+    SubmitRateLimiter(int burst, Duration refill, LongSupplier nanoClock, MeterRegistry registry) {
+        if (burst < 1 || refill.isNegative() || refill.isZero()) {
+            throw new IllegalArgumentException("dailythoughts.submit: burst must be >= 1 and refill > 0");
+        }
+        this.refillNanos = refill.toNanos();
+        this.burstNanos = (burst - 1) * refillNanos;
+        this.nanoClock = nanoClock;
+        this.rejected = Counter.builder("dailythoughts.submit.rejected")
+                .description("Submits refused by the per-user rate limit")
+                .register(registry);
+    }
+
+    // Takes a token for user and returns zero, or returns how long until the next token
+    // (taking nothing) when the bucket is empty
+    public Duration tryAcquire(String user) {
+        AtomicLong arrival = buckets.computeIfAbsent(user, ignored -> new AtomicLong(Long.MIN_VALUE));
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long current = arrival.get();
+            // An idle bucket is full, not owed tokens from the past
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long wait = base - now - burstNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return Duration.ofNanos(wait);
+            }
+            if (arrival.compareAndSet(current, base + refillNanos)) {
+                return Duration.ZERO;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.dailythoughts;
+
+import java.util.Map;
+
+// One raw thought as stored under thoughts/{key}. author is null for an author other than you and
+// her, date is "yyyy-MM-dd HH:mm:ss" (null on data older than the field), timestamp is 0 when missing.
+public record Thought(String key, Author author, String text, long timestamp, String date) {
+
+    // Newest first; ties broken by key so thoughts sharing a timestamp keep a stable order
+    static int newestFirst(Thought a, Thought b) {
+        int byTime = Long.compare(b.timestamp, a.timestamp);
+        return byTime != 0 ? byTime : b.key.compareTo(a.key);
+    }
+
+    // From the node's value as the database hands it over: a map with "timestamp" as a Long
+    // (older data has it as a numeric String)
+    static Thought fromValue(String key, Object value) {
+        if (!(value instanceof Map<?, ?> fields)) {
+            return new Thought(key, null, null, 0L, null);
+        }
+        Object author = fields.get("author");
+        Object text = fields.get("thought");
+        Object date = fields.get("date");
+        return new Thought(key,
+                author != null ? Author.of(author.toString()) : null,
+                text != null ? text.toString() : null,
+                timestampOf(fields.get("timestamp")),
+                date != null ? date.toString() : null);
+    }
+
+    private static long timestampOf(Object timestamp) {
+        if (timestamp instanceof Number number) {
+            return number.longValue();
+        }
+        if (timestamp != null) {
+            try {
+                return Long.parseLong(timestamp.toString());
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        }
+        return 0L;
+    }
+
+}
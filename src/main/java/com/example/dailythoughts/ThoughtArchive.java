@@ -0,0 +1,215 @@
+package com.example.dailythoughts;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Cold storage for one diary: whole months moved out of <root>thoughts and <root>days into one
+// compressed blob each under <root>archive/{yyyy-MM} (see ArchivedMonth), with the month's version
+// under <root>archived/{yyyy-MM}. The listeners and the initial sync of FirebaseService only see the
+// hot nodes, so old months cost nothing until someone pages back to them.
+//
+// compact moves a month in one multi-path update that writes its blob and version and removes its
+// thoughts and days, so each is always in exactly one of the two places. A month archived before is
+// merged with what is already archived. Reads go through the shared ArchiveCache.
+class ThoughtArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(ThoughtArchive.class);
+
+    private final RealtimeDatabase database;
+    private final String root;
+    private final String thoughtsPath;
+    private final String daysPath;
+    private final String archivePath;
+    private final String versionsPath;
+    private final ArchiveCache cache;
+    private final Duration readTimeout;
+
+    // Archived months to their versions, newest first; null until read and again after a change
+    private volatile NavigableMap<String, String> months;
+
+    ThoughtArchive(RealtimeDatabase database, String root, ArchiveCache cache, Duration readTimeout) {
+        this.database = database;
+        this.root = root;
+        this.thoughtsPath = root + "thoughts";
+        this.daysPath = root + "days";
+        this.archivePath = root + "archive";
+        this.versionsPath = root + "archived";
+        this.cache = cache;
+        this.readTimeout = readTimeout;
+    }
+
+    // Read the list of archived months again on next use; days leaving the hot node are the sign
+    // that a compaction (here or on another instance) has changed it
+    void forget() {
+        months = null;
+    }
+
+    // Whether the day's month is archived, read afresh. Compaction writes a month's version in the
+    // same update that removes its days, so a removed day whose month has a version was archived
+    CompletableFuture<Boolean> holdsMonthOf(String day) {
+        return database.get(versionsPath + "/" + day.substring(0, Math.min(7, day.length())))
+                .thenApply(Objects::nonNull);
+    }
+
+    // Archived days strictly older than the cursor day (null = newest), newest first
+    DayPage days(String before, int limit) throws ExecutionException, InterruptedException, TimeoutException {
+        NavigableMap<String, String> archived = months();
+        if (before != null) {
+            archived = archived.tailMap(before.substring(0, Math.min(7, before.length())), true);
+        }
+
+        Map<String, DailyThought> page = new LinkedHashMap<>();
+        String lastDay = null;
+        for (Map.Entry<String, String> month : archived.entrySet()) {
+            NavigableMap<String, DailyThought> days = month(month.getKey(), month.getValue()).days();
+            for (Map.Entry<String, DailyThought> day : (before != null ? days.tailMap(before, false) : days).entrySet()) {
+                if (page.size() == limit) {
+                    return new DayPage(page, lastDay);
+                }
+                page.put(day.getKey(), day.getValue());
+                lastDay = day.getKey();
+            }
+        }
+        return new DayPage(page, null);
+    }
+
+    // Whether an archived month could hold days or thoughts older than the day or date (null = newest);
+    // reads only the list of archived months
+    boolean hasOlder(String before) throws ExecutionException, InterruptedException, TimeoutException {
+        NavigableMap<String, String> archived = months();
+        return !(before != null ? archived.tailMap(before.substring(0, Math.min(7, before.length())), true) : archived)
+                .isEmpty();
+    }
+
+    // Archived thoughts containing every word of the query, strictly older than the cursor
+    // (null = newest), newest first. Reads every archived month it has to go through
+    ThoughtPage search(String query, ThoughtCursor before, int limit)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        Set<String> terms = SearchIndex.terms(query);
+        List<Thought> thoughts = new ArrayList<>();
+        if (terms.isEmpty()) {
+            return new ThoughtPage(thoughts, null);
+        }
+
+        for (Map.Entry<String, String> month : months().entrySet()) {
+            for (Thought thought : month(month.getKey(), month.getValue()).thoughts()) {
+                if ((before != null && !before.precedes(thought))
+                        || !SearchIndex.terms(thought.text()).containsAll(terms)) {
+                    continue;
+                }
+                if (thoughts.size() == limit) {
+                    return new ThoughtPage(thoughts, ThoughtCursor.of(thoughts.get(limit - 1)));
+                }
+                thoughts.add(thought);
+            }
+        }
+        return new ThoughtPage(thoughts, null);
+    }
+
+    // Archive every month older than cutoff that still has thoughts in the hot node, oldest first;
+    // returns the number of months written
+    int compact(YearMonth cutoff) throws ExecutionException, InterruptedException, TimeoutException {
+        int archived = 0;
+        while (true) {
+            // Only dated thoughts are archived; "" sorts before every date and after missing ones
+            Map<String, Object> oldest = await(database.query(thoughtsPath,
+                    ChildQuery.byChild("date").startAfter("").limitToFirst(1)));
+            if (oldest.isEmpty()) {
+                break;
+            }
+            String date = Thought.fromValue(oldest.keySet().iterator().next(), oldest.values().iterator().next()).date();
+            YearMonth month;
+            try {
+                month = YearMonth.parse(date.substring(0, Math.min(7, date.length())));
+            } catch (DateTimeParseException e) {
+                log.warn("Not archiving past thought dated {} in {}", date, thoughtsPath);
+                break;
+            }
+            if (!month.isBefore(cutoff)) {
+                break;
+            }
+            compactMonth(month.toString(), month.plusMonths(1).toString());
+            archived++;
+        }
+        if (archived > 0) {
+            forget();
+        }
+        return archived;
+    }
+
+    private void compactMonth(String month, String nextMonth)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        // "yyyy-MM" sorts before every date and day of the month, "yyyy-MM" of the next after them
+        Map<String, Object> thoughts = await(database.query(thoughtsPath,
+                ChildQuery.byChild("date").startAfter(month).endBefore(nextMonth)));
+        Map<String, Object> days = await(database.query(daysPath,
+                ChildQuery.byKey().startAfter(month).endBefore(nextMonth)));
+
+        Map<String, Object> archivedThoughts = new HashMap<>();
+        Map<String, Object> archivedDays = new HashMap<>();
+        if (await(database.get(archivePath + "/" + month)) instanceof String blob) {
+            Map<String, Map<String, Object>> raw = ArchivedMonth.decodeRaw(blob);
+            archivedThoughts.putAll(raw.get(ArchivedMonth.THOUGHTS));
+            archivedDays.putAll(raw.get(ArchivedMonth.DAYS));
+        }
+        archivedThoughts.putAll(thoughts);
+        archivedDays.putAll(days);
+        String blob = ArchivedMonth.encode(archivedThoughts, archivedDays);
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(archivePath + "/" + month, blob);
+        updates.put(versionsPath + "/" + month, ArchivedMonth.version(blob));
+        for (String key : thoughts.keySet()) {
+            updates.put(thoughtsPath + "/" + key, null);
+        }
+        for (String day : days.keySet()) {
+            updates.put(daysPath + "/" + day, null);
+        }
+        await(database.update("", updates));
+        log.info("Archived {} thoughts and {} days of {} in {}archive ({} characters)",
+                thoughts.size(), days.size(), month, root, blob.length());
+    }
+
+    private NavigableMap<String, String> months() throws ExecutionException, InterruptedException, TimeoutException {
+        NavigableMap<String, String> known = months;
+        if (known == null) {
+            known = new TreeMap<String, String>().descendingMap();
+            if (await(database.get(versionsPath)) instanceof Map<?, ?> versions) {
+                for (Map.Entry<?, ?> version : versions.entrySet()) {
+                    known.put(version.getKey().toString(), String.valueOf(version.getValue()));
+                }
+            }
+            months = known;
+        }
+        return known;
+    }
+
+    private ArchivedMonth month(String month, String version)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        String key = root + month + "@" + version;
+        ArchivedMonth cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Object blob = await(database.get(archivePath + "/" + month));
+        ArchivedMonth decoded = blob instanceof String s
+                ? ArchivedMonth.decode(month, s)
+                : new ArchivedMonth(month, List.of(), Collections.emptyNavigableMap(), 0);
+        cache.put(key, decoded);
+        return decoded;
+    }
+
+    private <T> T await(CompletableFuture<T> future)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return future.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.dailythoughts;
+
+// Where a page of thoughts ended: the timestamp and key of its last (oldest) thought, in the order of
+// Thought.newestFirst. The next page holds the thoughts strictly older than it, so thoughts sharing a
+// timestamp are neither skipped nor repeated at a page boundary. In a URL it is "timestamp:key".
+public record ThoughtCursor(long timestamp, String key) {
+
+    static ThoughtCursor of(Thought thought) {
+        return new ThoughtCursor(thought.timestamp(), thought.key());
+    }
+
+    // From ?before=; Spring calls it to bind the parameter, and answers 400 when it throws
+    public static ThoughtCursor valueOf(String value) {
+        int colon = value.indexOf(':');
+        if (colon <= 0 || colon == value.length() - 1) {
+            throw new IllegalArgumentException("Not a timestamp:key cursor: " + value);
+        }
+        return new ThoughtCursor(Long.parseLong(value.substring(0, colon)), value.substring(colon + 1));
+    }
+
+    // Whether the thought comes after the cursor newest first, so on a later page
+    boolean precedes(Thought thought) {
+        return thought.timestamp() < timestamp
+                || (thought.timestamp() == timestamp && thought.key().compareTo(key) < 0);
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + ":" + key;
+    }
+}
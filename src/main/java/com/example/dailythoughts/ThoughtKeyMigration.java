@@ -0,0 +1,116 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One-off job that moves thoughts from legacy "yyyy-MM-dd HH-mm-ss" keys to push ID keys.
+// Run it with --dailythoughts.migration.thought-keys=true.
+//
+// The thoughts node is streamed in key-ordered pages, so memory stays at one page. Each page
+// becomes one multi-path update that writes the rekeyed thoughts (with a long timestamp and the
+// original date), removes the legacy keys and records the last key done under migrations/.
+// An interrupted run resumes from that cursor; new keys are derived from the old ones, so
+// repeating a page writes the same keys again instead of duplicating thoughts.
+@Component
+@Profile("!embedded")
+@ConditionalOnProperty(name = "dailythoughts.migration.thought-keys", havingValue = "true")
+public class ThoughtKeyMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ThoughtKeyMigration.class);
+
+    private static final String THOUGHTS = "thoughts";
+    static final String CURSOR = "migrations/thoughtKeys/cursor";
+
+    private static final DateTimeFormatter LEGACY_KEY = DateTimeFormatter.ofPattern("yyyy-MM-dd HH-mm-ss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final RealtimeDatabase database;
+    private final int pageSize;
+
+    public ThoughtKeyMigration(RealtimeDatabase database,
+                               @Value("${dailythoughts.migration.page-size:500}") int pageSize) {
+        this.database = database;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Migrating thought keys...");
+        int migrated = migrate();
+        log.info("Migrated {} thoughts to push ID keys", migrated);
+    }
+
+    // Returns the number of thoughts rekeyed by this run
+    int migrate() {
+        Object saved = database.get(CURSOR).join();
+        String cursor = saved != null ? saved.toString() : null;
+        int migrated = 0;
+
+        while (true) {
+            ChildQuery query = ChildQuery.byKey().limitToFirst(pageSize);
+            if (cursor != null) {
+                query = query.startAfter(cursor);
+            }
+            Map<String, Object> page = database.query(THOUGHTS, query).join();
+            if (page.isEmpty()) {
+                break;
+            }
+
+            Map<String, Object> updates = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> child : page.entrySet()) {
+                cursor = child.getKey();
+                if (!ThoughtKeys.isLegacy(child.getKey()) || !(child.getValue() instanceof Map<?, ?> fields)) {
+                    continue; // already a push ID
+                }
+
+                LocalDateTime dateTime = LocalDateTime.parse(child.getKey(), LEGACY_KEY);
+                long timestamp = timestampOf(fields.get("timestamp"), dateTime);
+
+                Map<String, Object> thoughtData = new LinkedHashMap<>();
+                thoughtData.put("author", fields.get("author"));
+                thoughtData.put("thought", fields.get("thought"));
+                thoughtData.put("timestamp", timestamp);
+                thoughtData.put("date", dateTime.format(DATE));
+
+                updates.put(THOUGHTS + "/" + ThoughtKeys.forLegacy(timestamp, child.getKey()), thoughtData);
+                updates.put(THOUGHTS + "/" + child.getKey(), null);
+                migrated++;
+            }
+            updates.put(CURSOR, cursor);
+            database.update("", updates).join();
+            log.info("Migrated thoughts up to {}", cursor);
+
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        return migrated;
+    }
+
+    // Timestamps were sometimes stored as strings; fall back to the date in the key
+    private static long timestampOf(Object timestamp, LocalDateTime dateTime) {
+        if (timestamp instanceof Number number) {
+            return number.longValue();
+        }
+        if (timestamp != null) {
+            try {
+                return Long.parseLong(timestamp.toString());
+            } catch (NumberFormatException ignored) {
+                // use the key
+            }
+        }
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.dailythoughts;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+// Thought keys in the Firebase push ID format: 8 characters of millisecond timestamp followed by
+// 12 random characters, from an alphabet whose ASCII order matches its value order.
+// Keys therefore sort in creation order. Within one generator the clock never goes backwards:
+// a repeated or earlier millisecond reuses the last time and increments the random part,
+// so two submits in the same second (or millisecond) always get distinct, ordered keys.
+class ThoughtKeys {
+
+    private static final String ALPHABET = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final int TIME_CHARS = 8;
+    private static final int RANDOM_CHARS = 12;
+
+    // "yyyy-MM-dd HH-mm-ss", the key format before push IDs
+    private static final Pattern LEGACY = Pattern.compile("\\d{4}-\\d{2}-\\d{2} \\d{2}-\\d{2}-\\d{2}");
+
+    private final Random random;
+    private final int[] lastRandom = new int[RANDOM_CHARS];
+    private long lastTime = -1;
+
+    ThoughtKeys() {
+        this(new SecureRandom());
+    }
+
+    ThoughtKeys(Random random) {
+        this.random = random;
+    }
+
+    synchronized String next(long now) {
+        if (now > lastTime) {
+            lastTime = now;
+            for (int i = 0; i < RANDOM_CHARS; i++) {
+                lastRandom[i] = random.nextInt(ALPHABET.length());
+            }
+        } else {
+            // Same or earlier millisecond: stay on lastTime and count up
+            int i = RANDOM_CHARS - 1;
+            while (i >= 0 && lastRandom[i] == ALPHABET.length() - 1) {
+                lastRandom[i--] = 0;
+            }
+            if (i < 0) {
+                lastTime++; // 64^12 keys in one millisecond; move the clock on instead of wrapping
+            } else {
+                lastRandom[i]++;
+            }
+        }
+        return encode(lastTime, lastRandom);
+    }
+
+    // Deterministic key for a thought written under a legacy date key, so a re-run migration
+    // produces the same key instead of a duplicate
+    static String forLegacy(long timestamp, String legacyKey) {
+        Random seeded = new Random(legacyKey.hashCode() * 31L + timestamp);
+        int[] randomPart = new int[RANDOM_CHARS];
+        for (int i = 0; i < RANDOM_CHARS; i++) {
+            randomPart[i] = seeded.nextInt(ALPHABET.length());
+        }
+        return encode(timestamp, randomPart);
+    }
+
+    static boolean isLegacy(String key) {
+        return LEGACY.matcher(key).matches();
+    }
+
+    private static String encode(long time, int[] randomPart) {
+        char[] key = new char[TIME_CHARS + RANDOM_CHARS];
+        for (int i = TIME_CHARS - 1; i >= 0; i--) {
+            key[i] = ALPHABET.charAt((int) (time % ALPHABET.length()));
+            time /= ALPHABET.length();
+        }
+        for (int i = 0; i < RANDOM_CHARS; i++) {
+            key[TIME_CHARS + i] = ALPHABET.charAt(randomPart[i]);
+        }
+        return new String(key);
+    }
+}
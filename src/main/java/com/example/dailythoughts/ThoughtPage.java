@@ -0,0 +1,17 @@
+package com.example.dailythoughts;
+
+import java.util.List;
+
+// One page of history, newest first.
+// nextCursor is the cursor to pass as ?before= for the next (older) page, or null on the last page.
+// stale is set when the database did not answer in time and an earlier copy is shown instead.
+public record ThoughtPage(List<Thought> thoughts, ThoughtCursor nextCursor, boolean stale) {
+
+    public ThoughtPage(List<Thought> thoughts, ThoughtCursor nextCursor) {
+        this(thoughts, nextCursor, false);
+    }
+
+    ThoughtPage markStale() {
+        return new ThoughtPage(thoughts, nextCursor, true);
+    }
+}
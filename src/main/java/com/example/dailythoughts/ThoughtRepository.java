@@ -0,0 +1,47 @@
+package com.example.dailythoughts;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+// Storage for the thoughts of one diary; Diaries hands out one per diary ID.
+// FirebaseService is the default; EmbeddedThoughtRepository runs locally with the "embedded" profile.
+public interface ThoughtRepository {
+
+    // Save a thought under a new unique, time-ordered key and fold it into that day's DailyThought;
+    // date is "yyyy-MM-dd HH:mm:ss" and decides the day. Completes once the write is durable, or fails
+    // with RejectedExecutionException when the store has too much pending work to take it
+    CompletableFuture<Void> saveThought(String date, String author, String thought);
+
+    // All thoughts by key; with Firebase, those not archived yet (see ThoughtArchive)
+    Map<String, Thought> loadAllThoughts();
+
+    // One page of thoughts older than the cursor (null = newest), newest first
+    ThoughtPage loadPage(ThoughtCursor before, int limit);
+
+    // One page of days older than the cursor day (null = newest), newest first
+    DayPage loadDays(String before, int limit);
+
+    // One page of thoughts containing every word of the query (case-insensitive), newest first;
+    // same cursor as loadPage
+    ThoughtPage search(String query, ThoughtCursor before, int limit);
+
+    // Opaque token that changes whenever the day index changes, the same for the same content;
+    // null while it is not known (still loading, or serving stale data)
+    String version();
+
+    // Call listener with each day row changed from now on, by this or any other instance
+    // (null when the day is gone), until the registration is removed. Runs on the writer's thread,
+    // so it must not block
+    RealtimeDatabase.Registration watchDays(BiConsumer<String, DailyThought> listener);
+
+    // Thoughts per author and month and each author's streaks, from rollups kept up to date by
+    // saveThought and deleteThought rather than from the thoughts themselves
+    DiaryStats loadStats();
+
+    // Delete a thought by its key
+    void deleteThought(String key);
+
+    // Approximate bytes of thoughts this repository holds in memory, for the bound on open diaries
+    long cachedBytes();
+}
@@ -0,0 +1,213 @@
+package com.example.dailythoughts;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+// Backup and restore of a diary's thoughts node as NDJSON: one {"key": ..., "value": {...}} object per
+// line, in key order, values exactly as stored (timestamp stays a number).
+//
+// Export reads ordered key pages and writes each line as it goes; import parses one line at a time
+// and writes batches of batchSize thoughts as multi-path updates, at most maxInFlight at once.
+// Either way only a page or a few batches are held in memory, whatever the size of the diary.
+// Import keeps the exported keys, so running it twice writes the same data. Once the thoughts are
+// written, each day they fall on is folded again from all of its thoughts in the diary, so a day row
+// holds each author's latest thought whether that was imported or already there; the stats of the
+// months it touched are counted again (StatsRebuild). A second run changes neither. A submit landing
+// in a day while it is folded may be left out of the row until the next change to that day.
+// Export starts with the thoughts of the archived months (ThoughtArchive), a month at a time; import
+// writes everything to the hot node, from where the next compaction archives old months again.
+@Component
+@Profile("!embedded")
+public class ThoughtTransfer {
+
+    // Characters Firebase does not allow in keys; "/" would also write outside thoughts/
+    private static final Pattern VALID_KEY = Pattern.compile("[^/.#$\\[\\]]+");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private final RealtimeDatabase database;
+    private final int pageSize;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    public ThoughtTransfer(RealtimeDatabase database,
+                           @Value("${dailythoughts.transfer.page-size:1000}") int pageSize,
+                           @Value("${dailythoughts.transfer.batch-size:500}") int batchSize,
+                           @Value("${dailythoughts.transfer.max-in-flight:4}") int maxInFlight) {
+        this.database = database;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    // Returns the number of thoughts of the diary written to out; out is left open
+    public long export(String diaryId, OutputStream out) throws IOException {
+        String thoughtsPath = Diaries.root(diaryId) + "thoughts";
+        long exported = 0;
+        try (SequenceWriter writer = MAPPER.writer().withRootValueSeparator("\n").writeValues(out)) {
+            // Archived months hold the oldest keys
+            if (database.get(Diaries.root(diaryId) + "archived").join() instanceof Map<?, ?> months) {
+                for (Object month : new TreeSet<>(months.keySet())) {
+                    Object blob = database.get(Diaries.root(diaryId) + "archive/" + month).join();
+                    if (blob instanceof String archived) {
+                        Map<String, Object> thoughts =
+                                new TreeMap<>(ArchivedMonth.decodeRaw(archived).get(ArchivedMonth.THOUGHTS));
+                        for (Map.Entry<String, Object> child : thoughts.entrySet()) {
+                            writer.write(Map.of("key", child.getKey(), "value", child.getValue()));
+                        }
+                        exported += thoughts.size();
+                    }
+                }
+            }
+
+            CompletableFuture<Map<String, Object>> next = page(thoughtsPath, null);
+            while (next != null) {
+                Map<String, Object> page = next.join();
+                String lastKey = null;
+                for (String key : page.keySet()) {
+                    lastKey = key;
+                }
+                // Ask for the next page before writing this one, so the query overlaps the write
+                next = page.size() < pageSize ? null : page(thoughtsPath, lastKey);
+
+                for (Map.Entry<String, Object> child : page.entrySet()) {
+                    writer.write(Map.of("key", child.getKey(), "value", child.getValue()));
+                }
+                exported += page.size();
+            }
+        }
+        out.write('\n');
+        out.flush();
+        return exported;
+    }
+
+    // Returns the number of thoughts imported into the diary; in is left open.
+    // Fails on the first malformed line or rejected batch; batches before it stay written
+    public long importFrom(String diaryId, InputStream in) throws IOException {
+        String root = Diaries.root(diaryId);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Map<String, Object> batch = new LinkedHashMap<>();
+        Set<String> days = new TreeSet<>();
+        Set<String> months = new TreeSet<>();
+        int batched = 0;
+        long imported = 0;
+        long line = 0;
+
+        try (MappingIterator<Map<String, Object>> lines = MAPPER.readerForMapOf(Object.class).readValues(in)) {
+            while (lines.hasNextValue()) {
+                Map<String, Object> entry = lines.nextValue();
+                line++;
+                Object key = entry.get("key");
+                Object value = entry.get("value");
+                if (!(key instanceof String k) || !VALID_KEY.matcher(k).matches() || !(value instanceof Map)) {
+                    throw new IllegalArgumentException("Invalid thought on line " + line + ": " + entry);
+                }
+
+                batch.put(root + "thoughts/" + k, value);
+                String day = StatsRollup.dayOf(Thought.fromValue(k, value).date());
+                if (day != null) {
+                    days.add(day);
+                    months.add(day.substring(0, 7));
+                }
+                if (++batched == batchSize) {
+                    write(batch, inFlight, failure);
+                    imported += batched;
+                    batch = new LinkedHashMap<>();
+                    batched = 0;
+                }
+            }
+            write(batch, inFlight, failure);
+            imported += batched;
+        } finally {
+            // Wait for the batches still in flight, also when giving up early
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+
+        if (failure.get() != null) {
+            throw new CompletionException("Import failed", failure.get());
+        }
+        rebuildDays(root, days);
+        new StatsRebuild(database, diaryId, maxInFlight).rebuild(months);
+        return imported;
+    }
+
+    // Fold each day again from all of its thoughts, the imported ones and those already there, and
+    // replace its row; at most maxInFlight days at once
+    private void rebuildDays(String root, Set<String> days) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (String day : days) {
+            inFlight.acquireUninterruptibly();
+            if (failure.get() != null) {
+                inFlight.release();
+                break;
+            }
+            FirebaseService.foldDay(database, root + "thoughts", LocalDate.parse(day))
+                    .thenCompose(row -> {
+                        Map<String, Object> node = new HashMap<>();
+                        node.put(day, row != null ? row.toValue() : null);
+                        return database.update(root + "days", node);
+                    })
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            failure.compareAndSet(null, error);
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquireUninterruptibly(maxInFlight);
+        if (failure.get() != null) {
+            throw new CompletionException("Import failed", failure.get());
+        }
+    }
+
+    private CompletableFuture<Map<String, Object>> page(String thoughtsPath, String afterKey) {
+        ChildQuery query = ChildQuery.byKey().limitToFirst(pageSize);
+        if (afterKey != null) {
+            query = query.startAfter(afterKey);
+        }
+        return database.query(thoughtsPath, query);
+    }
+
+    private void write(Map<String, Object> batch, Semaphore inFlight, AtomicReference<Throwable> failure) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        inFlight.acquireUninterruptibly();
+        if (failure.get() != null) {
+            inFlight.release();
+            throw new CompletionException("Import failed", failure.get());
+        }
+        database.update("", batch).whenComplete((ignored, error) -> {
+            if (error != null) {
+                failure.compareAndSet(null, error);
+            }
+            inFlight.release();
+        });
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Write pipeline for the Realtime Database.
+// Writes go into a bounded queue; a single writer thread merges everything that arrives
+// within a short window into one multi-path updateChildren call. Each write gets a future
+// that completes when the server acknowledges (or rejects) the batch it was part of. The server takes
+// or refuses a multi-path update as a whole, so when a batch is refused each of its writes is sent
+// again on its own: one write the rules reject only fails its own submit.
+//
+// Backpressure: at most maxPending writes may be accepted and not yet acknowledged, counting both
+// the queue and the batches already sent, so a slow or stalled server cannot pile up unbounded
+// work in the SDK. Past that, submit fails at once with RejectedExecutionException.
+//
+// close stops taking writes and sends whatever was already accepted, then waits up to closeTimeout
+// for the server; only the writes still unacknowledged by then fail.
+class WriteBatcher implements AutoCloseable {
+
+    private final RealtimeDatabase database;
+    private final BlockingQueue<PendingWrite> queue;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final Duration closeTimeout;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread writer;
+
+    private final DistributionSummary batchSize;
+    private final Timer ackLatency;
+    private final Counter rejected;
+
+    private volatile boolean running = true;
+    private volatile long closeDeadline;
+
+    WriteBatcher(RealtimeDatabase database, int capacity, int maxPending, Duration window, int maxBatchSize,
+                 Duration closeTimeout, MeterRegistry registry) {
+        this.database = database;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+        this.closeTimeout = closeTimeout;
+
+        this.batchSize = DistributionSummary.builder("dailythoughts.writes.batch.size")
+                .description("Thought writes merged into one updateChildren call")
+                .register(registry);
+        this.ackLatency = Timer.builder("dailythoughts.writes.ack.latency")
+                .description("Time from submit to server acknowledgement")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejected = Counter.builder("dailythoughts.writes.rejected")
+                .description("Writes refused because the queue or the pending-write cap was full")
+                .register(registry);
+        Gauge.builder("dailythoughts.writes.pending", pending, AtomicInteger::get)
+                .description("Writes accepted and not yet acknowledged, queued or sent")
+                .register(registry);
+        Gauge.builder("dailythoughts.writes.queued", queue, Queue::size)
+                .description("Writes waiting for the writer thread")
+                .register(registry);
+
+        this.writer = new Thread(this::run, "thought-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Queue a write of value at path; fails fast when the queue is full
+    CompletableFuture<Void> submit(String path, Object value) {
+        return submit(Collections.singletonMap(path, value));
+    }
+
+    // Queue several paths that must land together; they go out in the same update
+    CompletableFuture<Void> submit(Map<String, Object> updates) {
+        PendingWrite write = new PendingWrite(updates, System.nanoTime(), new CompletableFuture<>());
+
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            rejected.increment();
+            write.future().completeExceptionally(new RejectedExecutionException("Too many writes waiting for the database"));
+            return write.future();
+        }
+        write.future().whenComplete((ignored, error) -> pending.decrementAndGet());
+        if (!running || !queue.offer(write)) {
+            rejected.increment();
+            write.future().completeExceptionally(new RejectedExecutionException("Write queue is full"));
+        }
+        return write.future();
+    }
+
+    // Accepted and not yet acknowledged
+    int pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+
+                // Keep collecting until the window closes or the batch is full
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingWrite next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(List.copyOf(batch));
+                batch.clear();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        drain(batch);
+    }
+
+    // On close: send the half-collected batch and the queue, wait for them until the deadline, and
+    // fail whatever the server has not acknowledged by then
+    private void drain(List<PendingWrite> batch) {
+        Thread.interrupted();
+        queue.drainTo(batch);
+        for (int from = 0; from < batch.size(); from += maxBatchSize) {
+            flush(List.copyOf(batch.subList(from, Math.min(from + maxBatchSize, batch.size()))));
+        }
+
+        try {
+            CompletableFuture.allOf(batch.stream().map(PendingWrite::future).toArray(CompletableFuture<?>[]::new))
+                    .get(Math.max(0, closeDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // A rejected batch has already failed its writes; the rest are failed below
+        }
+
+        // Including anything a submit racing with close slipped in after the drain
+        queue.drainTo(batch);
+        RejectedExecutionException shutdown = new RejectedExecutionException("Write pipeline stopped");
+        batch.forEach(write -> write.future().completeExceptionally(shutdown));
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        // Later writes to the same path win, as they would have with separate calls
+        Map<String, Object> updates = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            updates.putAll(write.updates());
+        }
+        batchSize.record(batch.size());
+
+        send(updates).whenComplete((ignored, error) -> {
+            if (error != null && batch.size() > 1) {
+                batch.forEach(write -> send(write.updates()).whenComplete((none, own) -> acknowledge(write, own)));
+                return;
+            }
+            batch.forEach(write -> acknowledge(write, error));
+        });
+    }
+
+    private CompletableFuture<Void> send(Map<String, Object> updates) {
+        try {
+            return database.update("", updates);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void acknowledge(PendingWrite write, Throwable error) {
+        ackLatency.record(System.nanoTime() - write.submittedAt(), TimeUnit.NANOSECONDS);
+        if (error != null) {
+            write.future().completeExceptionally(error);
+        } else {
+            write.future().complete(null);
+        }
+    }
+
+    @Override
+    public void close() {
+        closeDeadline = System.nanoTime() + closeTimeout.toNanos();
+        running = false;
+        writer.interrupt();
+        try {
+            // A little past the deadline, for the writer to fail what is left
+            writer.join(closeTimeout.plusSeconds(1).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingWrite(Map<String, Object> updates, long submittedAt, CompletableFuture<Void> future) {
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.dailythoughts;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+// Local write-ahead journal for Firebase writes: a submit is accepted once its multi-path update is
+// appended here and fsynced, and JournalReplayer takes it to Firebase from there.
+//
+// Records are [int length][int crc32][JSON body] appended through a FileChannel. Appends go through a
+// queue to one writer thread, which writes everything waiting in one gathering write and fsyncs once
+// for all of it, so concurrent submits share the fsync (group commit) instead of queuing for their own.
+// The offset up to which Firebase has acknowledged everything is kept in <path>.acked. On startup a
+// torn tail (bad length or CRC) is cut off, and records past the acknowledged offset are replayed.
+// Once everything is acknowledged and the file has grown past compactThreshold, it is truncated.
+// A record that cannot be read is copied to <path>.quarantine and skipped, so one bad record does not
+// hold back every write after it; JournalHealthIndicator reports DOWN while that file exists.
+class WriteJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteJournal.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> UPDATES = new TypeReference<>() {
+    };
+    private static final int HEADER = 8;
+    private static final int MAX_GROUP = 1000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    // Queued by close: the writer writes the appends before it and stops
+    private static final Append CLOSE = new Append(new byte[0], new CompletableFuture<>());
+
+    private final Path path;
+    private final Path quarantinePath;
+    private final FileChannel channel;
+    private final FileChannel ackChannel;
+    private final long compactThreshold;
+    private final int maxBacklog;
+
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Records accepted and not yet acknowledged by Firebase, including those still being written
+    private final AtomicInteger backlog = new AtomicInteger();
+    // Durable end of the journal and the acknowledged offset; guarded by this
+    private long end;
+    private long acked;
+    // Unreadable records before this offset are already in the quarantine file
+    private long quarantinedUpTo;
+
+    private final Timer fsyncTimer;
+    private final DistributionSummary groupSize;
+    private final Counter rejected;
+    private final Counter quarantined;
+
+    WriteJournal(Path path, long compactThreshold, int maxBacklog, MeterRegistry registry) throws IOException {
+        this.path = path;
+        this.quarantinePath = quarantinePath(path);
+        this.compactThreshold = compactThreshold;
+        this.maxBacklog = maxBacklog;
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ackChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".acked"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+
+        this.fsyncTimer = Timer.builder("dailythoughts.journal.fsync")
+                .description("Time to write and fsync one group of journal appends")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.groupSize = DistributionSummary.builder("dailythoughts.journal.group.size")
+                .description("Appends sharing one fsync")
+                .register(registry);
+        this.rejected = Counter.builder("dailythoughts.writes.rejected")
+                .description("Writes refused because the queue or the pending-write cap was full")
+                .register(registry);
+        this.quarantined = Counter.builder("dailythoughts.journal.quarantined")
+                .description("Unreadable journal records moved aside instead of sent to Firebase")
+                .register(registry);
+        Gauge.builder("dailythoughts.journal.backlog", backlog, AtomicInteger::get)
+                .description("Journaled writes Firebase has not acknowledged yet")
+                .register(registry);
+
+        this.writer = new Thread(this::run, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Completes once updates are on disk; fails at once with RejectedExecutionException when
+    // maxBacklog writes are already waiting for Firebase
+    CompletableFuture<Void> append(Map<String, Object> updates) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (backlog.incrementAndGet() > maxBacklog) {
+            backlog.decrementAndGet();
+            rejected.increment();
+            durable.completeExceptionally(new RejectedExecutionException("Too many writes waiting for the database"));
+            return durable;
+        }
+        byte[] body;
+        try {
+            body = MAPPER.writeValueAsBytes(updates);
+        } catch (IOException e) {
+            backlog.decrementAndGet();
+            durable.completeExceptionally(e);
+            return durable;
+        }
+        if (!running || !appends.offer(new Append(body, durable))) {
+            backlog.decrementAndGet();
+            durable.completeExceptionally(new RejectedExecutionException("Journal closed"));
+        }
+        return durable;
+    }
+
+    // Where a journal at path puts the records it cannot read
+    static Path quarantinePath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".quarantine");
+    }
+
+    // Up to max records after the acknowledged offset, waiting up to timeout for one to arrive;
+    // empty when none did. A record that cannot be read comes with null updates, once quarantined
+    synchronized List<Entry> awaitUnacknowledged(int max, long timeoutMillis) throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (acked == end && running) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return List.of();
+            }
+            wait(remaining);
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        long position = acked;
+        while (position < end && entries.size() < max) {
+            Entry entry = read(position);
+            if (entry == null) {
+                // A broken frame: where the next record starts is unknown, so the rest goes with it
+                entry = new Entry(position, end, null);
+            }
+            if (entry.updates() == null) {
+                quarantine(entry);
+            }
+            entries.add(entry);
+            position = entry.next();
+        }
+        return entries;
+    }
+
+    // Firebase has acknowledged everything before offset, records records in all
+    synchronized void acknowledge(long offset, int records) throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(Long.BYTES).putLong(0, offset);
+        ackChannel.write(value, 0);
+        ackChannel.force(false);
+        acked = offset;
+        backlog.addAndGet(-records);
+
+        if (acked == end && end >= compactThreshold) {
+            // Truncate before resetting the acknowledged offset: a crash in between leaves an offset
+            // past the end of an empty journal, which recover() treats as 0
+            channel.truncate(0);
+            channel.force(true);
+            ackChannel.write(ByteBuffer.allocate(Long.BYTES), 0);
+            ackChannel.force(false);
+            log.info("Compacted write journal: {} bytes acknowledged", end);
+            end = 0;
+            acked = 0;
+            quarantinedUpTo = 0;
+        }
+    }
+
+    int backlog() {
+        return backlog.get();
+    }
+
+    // Stops the writer without interrupting it: an interrupt during a channel write or force closes
+    // the channel and loses the group being committed
+    @Override
+    public void close() {
+        running = false;
+        appends.offer(CLOSE);
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            channel.close();
+            ackChannel.close();
+        } catch (IOException e) {
+            log.warn("Error closing write journal: {}", e.getMessage());
+        }
+    }
+
+    private void run() {
+        List<Append> group = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                group.add(appends.take());
+                appends.drainTo(group, MAX_GROUP - 1);
+            } catch (InterruptedException e) {
+                break;
+            }
+            closing = group.removeIf(append -> append == CLOSE);
+            if (!group.isEmpty()) {
+                write(group);
+            }
+            group.clear();
+        }
+        RejectedExecutionException closed = new RejectedExecutionException("Journal closed");
+        appends.forEach(append -> append.durable().completeExceptionally(closed));
+    }
+
+    // One gathering write and one fsync for the whole group
+    private void write(List<Append> group) {
+        ByteBuffer[] buffers = new ByteBuffer[group.size() * 2];
+        long size = 0;
+        for (int i = 0; i < group.size(); i++) {
+            byte[] body = group.get(i).body();
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            buffers[2 * i] = ByteBuffer.allocate(HEADER).putInt(0, body.length).putInt(4, (int) crc.getValue());
+            buffers[2 * i + 1] = ByteBuffer.wrap(body);
+            size += HEADER + body.length;
+        }
+
+        long start = System.nanoTime();
+        synchronized (this) {
+            try {
+                channel.position(end);
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(false);
+                end += size;
+                notifyAll();
+            } catch (IOException e) {
+                log.error("Error appending to write journal: {}", e.getMessage());
+                backlog.addAndGet(-group.size());
+                group.forEach(append -> append.durable().completeExceptionally(e));
+                try {
+                    channel.truncate(end); // drop whatever part of the group made it
+                } catch (IOException ignored) {
+                    // recover() drops a torn tail on the next start
+                }
+                return;
+            }
+        }
+        fsyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        groupSize.record(group.size());
+        group.forEach(append -> append.durable().complete(null));
+    }
+
+    // Append the record's bytes to the quarantine file, once however often it is handed out
+    private void quarantine(Entry entry) throws IOException {
+        if (entry.offset() < quarantinedUpTo) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) (entry.next() - entry.offset()));
+        readFully(bytes, entry.offset());
+        bytes.flip();
+        try (FileChannel out = FileChannel.open(quarantinePath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+        }
+        quarantinedUpTo = entry.next();
+        quarantined.increment();
+        log.error("Skipping unreadable journal record at offset {} in {} ({} bytes copied to {})",
+                entry.offset(), path, entry.next() - entry.offset(), quarantinePath);
+    }
+
+    private void recover() throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+        acked = ackChannel.read(value, 0) == Long.BYTES ? value.getLong(0) : 0;
+        if (acked > channel.size()) {
+            acked = 0; // compacted, and the crash came before the offset was reset
+        }
+
+        long position = acked;
+        int records = 0;
+        Entry entry;
+        while ((entry = read(position)) != null) {
+            position = entry.next();
+            records++;
+        }
+        if (position < channel.size()) {
+            log.warn("Dropping torn journal tail at offset {} in {}", position, path);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        end = position;
+        backlog.set(records);
+        if (records > 0) {
+            log.info("Write journal has {} writes to replay to Firebase", records);
+        }
+    }
+
+    // The record at position, or null at the end or at a torn/corrupt record; a record that is whole
+    // but whose body does not parse has null updates
+    private Entry read(long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (readFully(header, position) < HEADER) {
+            return null;
+        }
+        int length = header.getInt(0);
+        if (length <= 0 || position + HEADER + length > channel.size()) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (readFully(body, position + HEADER) < length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        if ((int) crc.getValue() != header.getInt(4)) {
+            return null;
+        }
+        Map<String, Object> updates;
+        try {
+            updates = MAPPER.readValue(body.array(), UPDATES);
+        } catch (IOException e) {
+            updates = null;
+        }
+        return new Entry(position, position + HEADER + length, updates);
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    // One journaled multi-path update (null if unreadable) and the offset of the record after it
+    record Entry(long offset, long next, Map<String, Object> updates) {
+    }
+
+    private record Append(byte[] body, CompletableFuture<Void> durable) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DayBackfillTest {
+
+    @Test
+    void buildsOneNodePerDayWithEachAuthorsLatestThought() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        database.set("thoughts/2024-01-01 08-00-00", Map.of("author", "you", "thought", "early", "timestamp", 1L));
+        database.set("thoughts/2024-01-01 09-00-00", Map.of("author", "her", "thought", "hi", "timestamp", 2L));
+        database.set("thoughts/2024-01-01 21-00-00", Map.of("author", "you", "thought", "late", "timestamp", 3L));
+        for (int day = 2; day <= 9; day++) {
+            database.set("thoughts/2024-01-0" + day + " 10-00-00",
+                    Map.of("author", "her", "thought", "day " + day, "timestamp", 10L + day));
+        }
+
+        // Pages of 2 thoughts split the first day across reads; batches of 3 days
+        int written = new DayBackfill(database, 2, 3).backfill();
+
+        assertEquals(9, written);
+        assertEquals(Map.of("yourThought", "late", "herThought", "hi"), database.valueAt("days/2024-01-01"));
+        assertEquals(Map.of("yourThought", "", "herThought", "day 9"), database.valueAt("days/2024-01-09"));
+
+        // Running it again rewrites the same days
+        assertEquals(9, new DayBackfill(database, 500, 100).backfill());
+        assertEquals(Map.of("yourThought", "late", "herThought", "hi"), database.valueAt("days/2024-01-01"));
+    }
+
+    @Test
+    void autoOnlyRunsOnADiaryWithThoughtsButNoDays() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        DayBackfill backfill = new DayBackfill(database, "auto", "smiths", 500, 100);
+        assertFalse(backfill.due(), "nothing to index");
+
+        database.set("diaries/smiths/thoughts/-a", Map.of("author", "you", "thought", "early", "timestamp", 1L,
+                "date", "2024-01-01 08:00:00"));
+        assertTrue(backfill.due());
+        backfill.run(null);
+        assertEquals(Map.of("yourThought", "early", "herThought", ""), database.valueAt("diaries/smiths/days/2024-01-01"));
+        assertFalse(backfill.due(), "once there are days, saves keep them up to date");
+    }
+}
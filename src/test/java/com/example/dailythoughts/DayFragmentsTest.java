@@ -0,0 +1,150 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DayFragmentsTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final TemplateEngine TEMPLATES = templateEngine();
+
+    @Test
+    void rendersEachVersionOfADayOnceAndEscapesIt() {
+        FirebaseService service = new FirebaseService(new FakeRealtimeDatabase(), TIMEOUT, new SimpleMeterRegistry());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DayFragments fragments = new DayFragments(DiariesTest.serving(service), TEMPLATES, 1 << 20, registry);
+
+        DailyThought row = new DailyThought("fish & <chips>", "\"quoted\" it's");
+        String html = fragments.html("default", "2024-01-01", row);
+        assertTrue(html.startsWith("<div data-day=\"2024-01-01\">"));
+        assertTrue(html.contains("<span class=\"yourThought\">fish &amp; &lt;chips&gt;</span>"));
+        assertTrue(html.contains("<span class=\"herThought\">&quot;quoted&quot; it&#39;s</span>"));
+
+        assertEquals(html, fragments.html("default", "2024-01-01", new DailyThought("fish & <chips>", "\"quoted\" it's")));
+        assertEquals(1.0, registry.find("dailythoughts.fragments.cache.requests").tag("result", "hit").counter().count());
+
+        // An edited day is rendered again and replaces the old row
+        String edited = fragments.html("default", "2024-01-01", new DailyThought("fish & <chips>", "changed"));
+        assertTrue(edited.contains(">changed</span>"));
+        assertEquals(1, fragments.size());
+        assertEquals(2.0, registry.find("dailythoughts.fragments.cache.requests").tag("result", "miss").counter().count());
+        service.stopListening();
+    }
+
+    @Test
+    void homeFillsItsDayTemplateFromTheSameRow() {
+        HistoryStreamTest.PagedRepository repository = new HistoryStreamTest.PagedRepository(1);
+        DayFragments fragments = new DayFragments(DiariesTest.serving(repository), TEMPLATES, 1 << 20,
+                new SimpleMeterRegistry());
+        Context context = new Context(Locale.ENGLISH);
+        context.setVariable("username", "you");
+        context.setVariable("diary", "default");
+        context.setVariable("history", new HistoryStream(repository, null, 20, 20, () -> { }));
+        context.setVariable("fragments", fragments);
+        context.setVariable("limit", 20);
+
+        String home = TEMPLATES.process("home", context);
+        assertTrue(home.contains(fragments.render("2024-01-01", new DailyThought("you", "her"))));
+        assertTrue(home.contains("<template id=\"day-template\">\n        "
+                + fragments.render(null, DailyThought.EMPTY) + "\n    </template>"));
+    }
+
+    @Test
+    void dropsTheRowOfADayChangedOrDeletedInTheDiary() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+        service.saveThought("2024-01-01 08:00:00", "you", "first").join();
+        service.saveThought("2024-01-02 08:00:00", "you", "second").join();
+        DayFragments fragments = new DayFragments(DiariesTest.serving(service), TEMPLATES, 1 << 20, new SimpleMeterRegistry());
+        service.loadDays(null, 10).days().forEach((day, row) -> fragments.html("default", day, row));
+        assertEquals(2, fragments.size());
+
+        String key = service.loadAllThoughts().entrySet().stream()
+                .filter(entry -> entry.getValue().date().startsWith("2024-01-01"))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+        service.deleteThought(key);
+        await(() -> fragments.size() == 1);
+        long bytes = fragments.bytes();
+
+        service.saveThought("2024-01-02 09:00:00", "her", "reply").join();
+        await(() -> fragments.size() == 0);
+        assertTrue(bytes > 0);
+        assertEquals(0, fragments.bytes());
+        service.stopListening();
+    }
+
+    @Test
+    void keepsTheMostRecentlyUsedRowsWithinItsBytesAndForgetsClosedDiaries() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseWrites writes = new FirebaseWrites(database, 1000, null, registry);
+        FirebaseDiaryStore store = new FirebaseDiaryStore(database, TIMEOUT, writes, new ArchiveCache(1 << 20, registry),
+                registry);
+        Diaries diaries = new Diaries(store, "default", 2, registry);
+        DailyThought row = new DailyThought("a walk", "");
+        int rowBytes = new DayFragments(diaries, TEMPLATES, 0, registry).render("2024-01-01", row).length();
+        DayFragments fragments = new DayFragments(diaries, TEMPLATES, 3L * rowBytes, registry);
+
+        fragments.html("smiths", "2024-01-01", row);
+        fragments.html("smiths", "2024-01-02", row);
+        fragments.html("jones", "2024-01-01", row);
+        fragments.html("smiths", "2024-01-01", row);
+        fragments.html("jones", "2024-01-02", row);
+        assertEquals(3, fragments.size());
+        assertEquals(1.0, registry.find("dailythoughts.fragments.cache.evictions").counter().count());
+
+        // A third diary pushes the least recently used one, smiths, out of Diaries, and its rows go with it
+        diaries.get("jones");
+        diaries.get("browns");
+        assertEquals(2, fragments.size());
+        assertEquals(2L * rowBytes, fragments.bytes());
+
+        fragments.close();
+        assertEquals(0, fragments.size());
+        writes.close();
+    }
+
+    // The templates from the classpath, evaluated with SpEL as the application does
+    static TemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCacheable(true);
+
+        TemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        // No servlet context here, so resolve context-relative links (@{/...}) against ""
+        templateEngine.setLinkBuilder(new StandardLinkBuilder() {
+            @Override
+            protected String computeContextPath(IExpressionContext context, String base, Map<String, Object> parameters) {
+                return "";
+            }
+        });
+        return templateEngine;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Thousands of diaries behind a cache that holds a few hundred: virtual users open diaries at random,
+// most often one of a hot hundred, and read their days, search them (which loads every thought) or
+// write to them, while a monitor samples what is held. However many diaries are touched, open
+// diaries, attached listeners and cached bytes stay within what the cache size allows.
+class DiariesLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(DiariesLoadTest.class);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final int DIARIES = 5000;
+    private static final int HOT_DIARIES = 100;
+    private static final int SEED_DAYS = 10;
+    private static final int CACHE_SIZE = 200;
+    private static final int USERS = 32;
+    private static final int OPERATIONS = 40_000;
+
+    @Test
+    void memoryStaysWithinTheCacheBoundAcrossThousandsOfDiaries() throws Exception {
+        LoadTestDatabase database = new LoadTestDatabase(Duration.ZERO, 0);
+        for (int i = 0; i < DIARIES; i++) {
+            database.seed(id(i), SEED_DAYS);
+        }
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseWrites writes = new FirebaseWrites(database, 1000, null, registry);
+        FirebaseDiaryStore store = new FirebaseDiaryStore(database, TIMEOUT, writes, new ArchiveCache(1 << 20, registry),
+                registry);
+        Diaries diaries = new Diaries(store, "default", CACHE_SIZE, registry);
+
+        Set<String> touched = ConcurrentHashMap.newKeySet();
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        AtomicInteger maxListeners = new AtomicInteger();
+        AtomicLong maxCachedBytes = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        long start = System.nanoTime();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            users.execute(() -> {
+                while (running.get()) {
+                    maxOpen.accumulateAndGet(diaries.size(), Math::max);
+                    maxListeners.accumulateAndGet(database.listeners(), Math::max);
+                    maxCachedBytes.accumulateAndGet(diaries.cachedBytes(), Math::max);
+                    LockSupport.parkNanos(1_000_000);
+                }
+            });
+            try (ExecutorService operations = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int u = 0; u < USERS; u++) {
+                    operations.execute(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        int operation;
+                        while ((operation = started.getAndIncrement()) < OPERATIONS) {
+                            String id = id(random.nextInt(10) < 8 ? random.nextInt(HOT_DIARIES) : random.nextInt(DIARIES));
+                            touched.add(id);
+                            try {
+                                ThoughtRepository diary = diaries.get(id);
+                                switch (random.nextInt(5)) {
+                                    case 0 -> diary.search("seeded", null, 10);
+                                    case 1 -> diary.saveThought("2024-06-01 12:00:00", "you", "Thought #" + operation)
+                                            .join();
+                                    default -> assertFalse(diary.loadDays(null, 20).days().isEmpty());
+                                }
+                            } catch (RuntimeException | AssertionError e) {
+                                log.warn("Operation on {} failed: {}", id, e.toString());
+                                failures.incrementAndGet();
+                            }
+                        }
+                    });
+                }
+            }
+            running.set(false);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Every diary holds at most what the database has for it now, as thoughts only get added
+        long largestDiary = 0;
+        for (int i = 0; i < DIARIES; i++) {
+            Object thoughts = database.valueAt(Diaries.root(id(i)) + "thoughts");
+            long bytes = 0;
+            for (Map.Entry<?, ?> child : ((Map<?, ?>) thoughts).entrySet()) {
+                bytes += FirebaseService.sizeOf(Thought.fromValue((String) child.getKey(), child.getValue()));
+            }
+            largestDiary = Math.max(largestDiary, bytes);
+        }
+        long allDiaries = DIARIES * largestDiary;
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        log.info("{} operations on {} diaries in {} ms: at most {} open, {} listeners, {} cached bytes"
+                        + " (bound {}, all diaries up to {}); {} opens; heap in use {} MB",
+                OPERATIONS, touched.size(), elapsed.toMillis(), maxOpen.get(), maxListeners.get(), maxCachedBytes.get(),
+                CACHE_SIZE * largestDiary, allDiaries,
+                (long) registry.find("dailythoughts.diaries.opened").counter().count(),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+
+        assertEquals(0, failures.get());
+        assertTrue(touched.size() > 10 * CACHE_SIZE, "far more diaries than the cache holds, touched " + touched.size());
+        assertTrue(maxOpen.get() <= CACHE_SIZE, "open diaries peaked at " + maxOpen.get());
+        assertTrue(maxCachedBytes.get() <= CACHE_SIZE * largestDiary, "cached bytes peaked at " + maxCachedBytes.get());
+        // Each open diary has a thoughts and a days listener; a diary being closed has not let go yet
+        assertTrue(maxListeners.get() <= 2 * (CACHE_SIZE + USERS), "listeners peaked at " + maxListeners.get());
+
+        // At rest, exactly the open diaries are listened to
+        assertEquals(CACHE_SIZE, diaries.size());
+        assertTrue(database.listeners() <= 2 * CACHE_SIZE);
+        diaries.close();
+        assertEquals(0, database.listeners(), "closing every diary detaches every listener");
+        writes.close();
+    }
+
+    private static String id(int i) {
+        return "diary-" + i;
+    }
+}
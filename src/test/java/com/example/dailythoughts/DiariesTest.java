@@ -0,0 +1,94 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiariesTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void closesTheLeastRecentlyUsedDiaryAndDetachesItsListeners() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseWrites writes = new FirebaseWrites(database, 1000, null, registry);
+        FirebaseDiaryStore store = new FirebaseDiaryStore(database, TIMEOUT, writes, new ArchiveCache(1 << 20, registry),
+                registry);
+        Diaries diaries = new Diaries(store, "default", 2, registry);
+        List<String> evicted = new ArrayList<>();
+        diaries.onEviction(evicted::add);
+
+        ThoughtRepository smiths = diaries.get("smiths");
+        smiths.loadDays(null, 10);
+        diaries.get("jones").loadDays(null, 10);
+        assertSame(smiths, diaries.get("smiths"), "open diaries are reused");
+        assertEquals(2, database.listeners());
+
+        // jones is now the least recently used
+        diaries.get("browns").loadDays(null, 10);
+        assertEquals(List.of("jones"), evicted);
+        assertEquals(2, diaries.size());
+        assertEquals(2, database.listeners(), "the closed diary's listener is gone");
+        assertEquals(1.0, registry.find("dailythoughts.diaries.evictions").counter().count());
+
+        // A closed diary is opened afresh, and a request still holding the old one attaches nothing
+        diaries.get("jones").loadDays(null, 10);
+        assertEquals(List.of("jones", "smiths"), evicted);
+        smiths.loadDays(null, 10);
+        assertEquals(2, database.listeners());
+        writes.close();
+    }
+
+    @Test
+    void keepsEachDiarysDataUnderItsOwnId() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseWrites writes = new FirebaseWrites(database, 1000, null, registry);
+        FirebaseDiaryStore store = new FirebaseDiaryStore(database, TIMEOUT, writes, new ArchiveCache(1 << 20, registry),
+                registry);
+        Diaries diaries = new Diaries(store, "default", 10, registry);
+
+        diaries.get("smiths").saveThought("2024-01-01 08:00:00", "you", "ours").join();
+        diaries.get("jones").saveThought("2024-01-01 09:00:00", "her", "theirs").join();
+
+        assertEquals(Map.of("yourThought", "ours"), database.valueAt("diaries/smiths/days/2024-01-01"));
+        assertEquals(Map.of("herThought", "theirs"), database.valueAt("diaries/jones/days/2024-01-01"));
+        assertEquals(1, ((Map<?, ?>) database.valueAt("diaries/jones/thoughts")).size());
+        assertNull(database.valueAt("thoughts"));
+        assertEquals(1, diaries.get("jones").loadDays(null, 10).days().size());
+        assertEquals("ours", diaries.get("smiths").loadDays(null, 10).days().get("2024-01-01").getYourThought());
+        writes.close();
+    }
+
+    @Test
+    void acceptsOnlyIdsThatAreSafeAsAPathAndAFileName() {
+        Diaries diaries = serving(new HistoryStreamTest.PagedRepository(0));
+
+        assertNotNull(diaries.get("smiths-2"));
+        for (String id : new String[]{null, "", "Smiths", "../days", "a/b", "a.b", "-smiths", "x".repeat(41)}) {
+            assertThrows(IllegalArgumentException.class, () -> diaries.get(id), String.valueOf(id));
+        }
+    }
+
+    // Diaries that hands out the same repository for every ID
+    static Diaries serving(ThoughtRepository repository) {
+        DiaryStore store = new DiaryStore() {
+            @Override
+            public ThoughtRepository open(String diaryId) {
+                return repository;
+            }
+
+            @Override
+            public void close(ThoughtRepository diary) {
+            }
+        };
+        return new Diaries(store, "default", 10, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiaryFeedTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void fansEachSavedDayOutToThousandsOfConnections() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        database.set("days/2023-12-31", Map.of("yourThought", "old", "herThought", ""));
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+        DiaryFeed feed = feed(service, 32);
+
+        List<RecordingEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            RecordingEmitter emitter = new RecordingEmitter();
+            assertTrue(feed.subscribe("default", emitter));
+            emitters.add(emitter);
+        }
+
+        service.saveThought("2024-01-01 08:00:00", "you", "morning").join();
+        service.saveThought("2024-01-01 09:00:00", "her", "hi \"there\"").join();
+        service.saveThought("2024-01-02 07:00:00", "her", "next day").join();
+
+        await(() -> emitters.stream().allMatch(emitter -> emitter.events.size() >= 3));
+        for (RecordingEmitter emitter : emitters) {
+            List<String> events = List.copyOf(emitter.events);
+            assertEquals(3, events.size(), "existing days are not replayed");
+            assertEquals("{\"day\":\"2024-01-01\",\"yourThought\":\"morning\",\"herThought\":\"\"}", events.get(0));
+            assertEquals("{\"day\":\"2024-01-01\",\"yourThought\":\"morning\",\"herThought\":\"hi \\\"there\\\"\"}", events.get(1));
+            assertTrue(events.get(2).startsWith("{\"day\":\"2024-01-02\""));
+        }
+        assertEquals(5000, feed.subscriberCount());
+        feed.close();
+        assertEquals(0, feed.subscriberCount());
+    }
+
+    @Test
+    void takesNoMoreThanMaxSubscribersWhenManyConnectAtOnce() throws Exception {
+        EmbeddedThoughtRepository repository = new EmbeddedThoughtRepository(dir.resolve("thoughts.log").toString(), 1 << 20);
+        DiaryFeed feed = new DiaryFeed(DiariesTest.serving(repository), 4, 100, Duration.ofMinutes(1),
+                Duration.ofMinutes(30), new SimpleMeterRegistry());
+
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService clients = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 400; i++) {
+                clients.submit(() -> {
+                    start.await();
+                    if (feed.subscribe("default", new RecordingEmitter())) {
+                        accepted.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        assertEquals(100, accepted.get());
+        assertEquals(100, feed.subscriberCount());
+        feed.close();
+        repository.close();
+    }
+
+    @Test
+    void sendsNoRemovalForDaysMovedToTheArchive() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, registry);
+        DiaryFeed feed = feed(service, 32);
+        RecordingEmitter emitter = new RecordingEmitter();
+        feed.subscribe("default", emitter);
+
+        service.saveThought("2023-01-05 08:00:00", "you", "january snow").join();
+        service.saveThought("2024-06-01 08:00:00", "you", "june sun").join();
+        await(() -> emitter.events.size() == 2);
+
+        new ThoughtArchive(database, "", new ArchiveCache(1 << 20, registry), TIMEOUT).compact(YearMonth.of(2024, 1));
+        String june = service.loadAllThoughts().values().stream()
+                .filter(thought -> thought.date().startsWith("2024-06"))
+                .map(Thought::key)
+                .findFirst()
+                .orElseThrow();
+        service.deleteThought(june);
+
+        await(() -> emitter.events.size() == 3);
+        assertEquals("{\"day\":\"2024-06-01\",\"removed\":true}", List.copyOf(emitter.events).get(2));
+        assertFalse(List.copyOf(emitter.events).stream().anyMatch(event -> event.contains("2023-01-05\",\"removed")));
+        feed.close();
+        service.stopListening();
+    }
+
+    @Test
+    void dropsAClientThatFallsBehindWithoutHoldingUpTheRest() throws Exception {
+        EmbeddedThoughtRepository repository = new EmbeddedThoughtRepository(dir.resolve("thoughts.log").toString(), 1 << 20);
+        DiaryFeed feed = feed(repository, 4);
+
+        CountDownLatch stuck = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    stuck.await(); // a client that never reads
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        RecordingEmitter fast = new RecordingEmitter();
+        feed.subscribe("default", slow);
+        feed.subscribe("default", fast);
+
+        // Saves never wait on the stuck client; the one that keeps up sees every day
+        for (int i = 0; i < 20; i++) {
+            repository.saveThought("2024-01-" + (10 + i) + " 08:00:00", "you", "#" + i).join();
+            int expected = i + 1;
+            await(() -> fast.events.size() == expected);
+        }
+        assertTrue(slow.completed, "the slow client is disconnected");
+        assertEquals(1, feed.subscriberCount());
+        stuck.countDown();
+        repository.close();
+    }
+
+    @Test
+    void forgetsClientsThatWentAway() throws Exception {
+        EmbeddedThoughtRepository repository = new EmbeddedThoughtRepository(dir.resolve("thoughts.log").toString(), 1 << 20);
+        DiaryFeed feed = feed(repository, 4);
+        RecordingEmitter gone = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        feed.subscribe("default", gone);
+
+        repository.saveThought("2024-01-01 08:00:00", "you", "anyone?").join();
+        await(() -> feed.subscriberCount() == 0);
+        repository.close();
+    }
+
+    @Test
+    void endsTheFeedsOfAClosedDiaryAndKeepsDiariesApart() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseWrites writes = new FirebaseWrites(database, 1000, null, registry);
+        FirebaseDiaryStore store = new FirebaseDiaryStore(database, TIMEOUT, writes, new ArchiveCache(1 << 20, registry),
+                registry);
+        Diaries diaries = new Diaries(store, "default", 2, registry);
+        DiaryFeed feed = new DiaryFeed(diaries, 32, 100_000, Duration.ofMinutes(1), Duration.ofMinutes(30), registry);
+
+        RecordingEmitter smiths = new RecordingEmitter();
+        RecordingEmitter jones = new RecordingEmitter();
+        feed.subscribe("smiths", smiths);
+        feed.subscribe("jones", jones);
+        diaries.get("jones").saveThought("2024-01-01 08:00:00", "you", "only for the joneses").join();
+        await(() -> jones.events.size() == 1);
+        assertTrue(smiths.events.isEmpty());
+
+        // A third diary pushes the least recently used one, smiths, out of the cache
+        diaries.get("browns");
+        assertTrue(smiths.completed, "the closed diary's connection is ended");
+        assertFalse(jones.completed);
+        assertEquals(1, feed.subscriberCount());
+
+        // Reconnecting opens it again, and it is live again
+        RecordingEmitter reconnected = new RecordingEmitter();
+        feed.subscribe("smiths", reconnected);
+        diaries.get("smiths").saveThought("2024-01-02 08:00:00", "her", "we're back").join();
+        await(() -> reconnected.events.size() == 1);
+        feed.close();
+        writes.close();
+    }
+
+    private static DiaryFeed feed(ThoughtRepository repository, int bufferSize) {
+        return new DiaryFeed(DiariesTest.serving(repository), bufferSize, 100_000, Duration.ofMinutes(1),
+                Duration.ofMinutes(30), new SimpleMeterRegistry());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    // Keeps the data of each "day" event, as the browser would see it
+    static class RecordingEmitter extends SseEmitter {
+        final Queue<String> events = new ConcurrentLinkedQueue<>();
+        volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            List<ResponseBodyEmitter.DataWithMediaType> parts = new ArrayList<>(builder.build());
+            if (parts.size() > 1 && parts.get(0).getData().toString().contains("event:day")) {
+                events.add(parts.get(1).getData().toString());
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+}
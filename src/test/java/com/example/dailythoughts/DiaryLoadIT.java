@@ -0,0 +1,79 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The whole app on a random port against LoadTestDatabase, driven by LoadGenerator. Runs in the
+// integration-test phase of mvn verify (failsafe), offline; sizes and injected latency/failures are
+// in application-loadtest.properties.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class DiaryLoadIT {
+
+    private static final Logger log = LoggerFactory.getLogger(DiaryLoadIT.class);
+
+    private static final long DRAIN_TIMEOUT_MILLIS = 60_000;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    LoadTestDatabase database;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Value("${dailythoughts.loadtest.concurrency}")
+    int concurrency;
+
+    @Value("${dailythoughts.loadtest.flows}")
+    int flows;
+
+    @Value("${dailythoughts.loadtest.seed-days}")
+    int seedDays;
+
+    @Value("${dailythoughts.diaries.default-id:default}")
+    String diaryId;
+
+    @Test
+    void loginDiaryAndSubmitUnderLoad() throws Exception {
+        LoadGenerator.Report report = new LoadGenerator(URI.create("http://localhost:" + port), concurrency, flows).run();
+        log.info("Load test, {} users:\n{}", concurrency, report);
+
+        assertEquals(0, report.failures(), "failed requests");
+        assertEquals(flows, report.steps().get(LoadGenerator.Step.SUBMIT).requests());
+        assertTrue(report.flowsPerSecond() > 0);
+
+        // Injected write failures only delay thoughts: the journal retries them until they land
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (registry.find("dailythoughts.journal.backlog").gauge().value() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0.0, registry.find("dailythoughts.journal.backlog").gauge().value(), "journal drained");
+        int saved = flows - report.throttled();
+        Map<?, ?> thoughts = (Map<?, ?>) database.valueAt(Diaries.root(diaryId) + "thoughts");
+        assertEquals(2 * seedDays + saved, thoughts.size());
+        if (report.throttled() == 0) {
+            Set<Object> texts = new HashSet<>();
+            thoughts.values().forEach(thought -> texts.add(((Map<?, ?>) thought).get("thought")));
+            for (int flow = 0; flow < flows; flow++) {
+                assertTrue(texts.contains("Load test thought #" + flow), "thought of flow " + flow + " saved");
+            }
+        }
+        log.info("{} injected write failures retried", database.failedWrites());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiaryMigrationTest {
+
+    // A deployment from before diaries and the day index: thoughts at the top level, no days anywhere
+    @Test
+    void anUpgradedDeploymentGetsItsHistoryOnTheFirstStart() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        database.set("thoughts/-a", Map.of("author", "you", "thought", "early", "timestamp", 1L,
+                "date", "2024-01-01 08:00:00"));
+        database.set("thoughts/-b", Map.of("author", "her", "thought", "hi", "timestamp", 2L,
+                "date", "2024-01-01 09:00:00"));
+
+        // In the order Spring runs them
+        new DiaryMigration(database, "auto", "default", 1).run(null);
+        new DayBackfill(database, "auto", "default", 500, 100).run(null);
+
+        assertEquals(Map.of(), database.valueAt("thoughts"));
+        assertEquals(2, ((Map<?, ?>) database.valueAt("diaries/default/thoughts")).size());
+        assertEquals(Map.of("yourThought", "early", "herThought", "hi"), database.valueAt("diaries/default/days/2024-01-01"));
+
+        // The next start finds nothing to do
+        assertEquals(0, new DiaryMigration(database, "auto", "default", 1).migrate());
+    }
+
+    @Test
+    void autoLetsTheAppStartWhenTheDatabaseIsUnreachable() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public java.util.concurrent.CompletableFuture<Map<String, Object>> query(String path, ChildQuery query) {
+                throw new IllegalStateException("offline");
+            }
+        };
+        assertDoesNotThrow(() -> new DiaryMigration(database, "auto", "default", 500).run(null));
+        assertDoesNotThrow(() -> new DayBackfill(database, "auto", "default", 500, 100).run(null));
+        assertThrows(IllegalStateException.class, () -> new DiaryMigration(database, "true", "default", 500).run(null));
+    }
+}
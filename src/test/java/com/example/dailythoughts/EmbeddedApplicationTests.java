@@ -0,0 +1,65 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The whole app started as it is deployed without Firebase, so a bean Spring cannot create or a
+// template that does not render fails mvn test: log in, submit, and read the thought back on /diary.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "dailythoughts.embedded.dir=target/embedded-test/${random.uuid}")
+@ActiveProfiles("embedded")
+class EmbeddedApplicationTests {
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void logsInSubmitsAndRendersTheDiary() throws Exception {
+        try (HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build()) {
+            HttpResponse<String> login = client.send(post("/login", "username=you&password="
+                    + DiaryMembers.BUILT_IN.get("you")), HttpResponse.BodyHandlers.ofString());
+            assertEquals(302, login.statusCode());
+            assertEquals("/diary", URI.create(login.headers().firstValue("Location").orElseThrow()).getPath());
+
+            HttpResponse<String> submit = client.send(post("/submit", "yourThought="
+                    + URLEncoder.encode("fish & <chips>", StandardCharsets.UTF_8)), HttpResponse.BodyHandlers.ofString());
+            assertEquals(302, submit.statusCode());
+            assertTrue(submit.headers().firstValue("Location").orElseThrow().contains("status=saved"));
+
+            HttpResponse<String> diary = client.send(HttpRequest.newBuilder(uri("/diary")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, diary.statusCode());
+            assertTrue(diary.body().contains("<span class=\"yourThought\">fish &amp; &lt;chips&gt;</span>"), diary.body());
+            assertEquals(2, diary.body().split("class=\"thought-item\"").length - 1, "the row and the live-update template");
+            // Maven filled in the build, so a deploy changes every ETag
+            String etag = diary.headers().firstValue("ETag").orElseThrow();
+            assertTrue(etag.matches("W/\"[^@\"]+-\\d{14}-.*"), etag);
+        }
+    }
+
+    private HttpRequest post(String path, String form) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
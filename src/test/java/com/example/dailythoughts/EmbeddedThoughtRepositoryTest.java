@@ -0,0 +1,130 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedThoughtRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversIndexFromLogOnRestart() throws Exception {
+        Path log = dir.resolve("thoughts.log");
+
+        EmbeddedThoughtRepository repository = new EmbeddedThoughtRepository(log.toString(), 1 << 20);
+        for (int i = 0; i < 30; i++) {
+            repository.saveThought("day-" + i, i % 2 == 0 ? "you" : "her", "thought " + i);
+            Thread.sleep(1); // distinct timestamps
+        }
+        // Same date again gets its own key instead of overwriting
+        repository.saveThought("day-3", "her", "again");
+        String deleted = keyOf(repository, "day-4");
+        repository.deleteThought(deleted);
+        repository.close();
+
+        EmbeddedThoughtRepository reopened = new EmbeddedThoughtRepository(log.toString(), 1 << 20);
+        assertEquals(30, reopened.loadAllThoughts().size());
+        assertNull(reopened.loadAllThoughts().get(deleted));
+
+        ThoughtPage first = reopened.loadPage(null, 10);
+        Thought newest = first.thoughts().get(0);
+        assertEquals("again", newest.text());
+        assertEquals("day-3", newest.date());
+        ThoughtPage second = reopened.loadPage(first.nextCursor(), 10);
+        assertEquals(10, second.thoughts().size());
+        assertFalse(second.thoughts().stream().anyMatch(first.thoughts()::contains));
+
+        // The search index is rebuilt from the log as well
+        assertEquals(1, reopened.search("again", null, 10).thoughts().size());
+        assertTrue(reopened.search("thought 4", null, 10).thoughts().isEmpty());
+        assertEquals(29, reopened.search("thought", null, 100).thoughts().size());
+        reopened.close();
+    }
+
+    @Test
+    void keepsOneRowPerDayWithEachAuthorsLatestThought() throws Exception {
+        Path log = dir.resolve("thoughts.log");
+
+        EmbeddedThoughtRepository repository = new EmbeddedThoughtRepository(log.toString(), 1 << 20);
+        repository.saveThought("2024-01-01 08:00:00", "you", "first");
+        repository.saveThought("2024-01-01 09:00:00", "her", "hello");
+        repository.saveThought("2024-01-01 20:00:00", "you", "second");
+        repository.saveThought("2024-01-02 07:00:00", "her", "next day");
+        repository.deleteThought(keyOf(repository, "2024-01-01 20:00:00"));
+        repository.close();
+
+        EmbeddedThoughtRepository reopened = new EmbeddedThoughtRepository(log.toString(), 1 << 20);
+        DayPage page = reopened.loadDays(null, 1);
+        assertEquals("2024-01-02", page.days().keySet().iterator().next());
+        assertEquals("2024-01-02", page.nextCursor());
+
+        DayPage older = reopened.loadDays(page.nextCursor(), 1);
+        DailyThought day = older.days().get("2024-01-01");
+        assertEquals("first", day.getYourThought());
+        assertEquals("hello", day.getHerThought());
+        assertNull(older.nextCursor());
+        reopened.close();
+    }
+
+    @Test
+    void rebuildsStatsFromTheLogOnRestart() throws Exception {
+        Path log = dir.resolve("thoughts.log");
+        EmbeddedThoughtRepository repository = new EmbeddedThoughtRepository(log.toString(), 1 << 20);
+        repository.saveThought("2024-01-30 08:00:00", "you", "one");
+        repository.saveThought("2024-01-31 08:00:00", "you", "two");
+        repository.saveThought("2024-02-01 08:00:00", "you", "three");
+        repository.saveThought("2024-02-01 09:00:00", "her", "hers");
+        repository.deleteThought(keyOf(repository, "2024-01-31 08:00:00"));
+        repository.close();
+
+        EmbeddedThoughtRepository reopened = new EmbeddedThoughtRepository(log.toString(), 1 << 20);
+        DiaryStats stats = reopened.loadStats();
+        assertEquals(List.of(new DiaryStats.Month("2024-02", Map.of("you", 1L, "her", 1L)),
+                new DiaryStats.Month("2024-01", Map.of("you", 1L))), stats.months());
+        assertEquals(2, stats.authors().get("you").thoughts());
+        assertEquals(1, stats.authors().get("you").longestStreak(), "the deleted thought broke the run");
+        assertEquals("2024-02-01", stats.authors().get("her").lastWritten());
+        reopened.close();
+    }
+
+    @Test
+    void compactsTombstonesAwayOnceTheyDominate() throws Exception {
+        Path log = dir.resolve("thoughts.log");
+
+        EmbeddedThoughtRepository repository = new EmbeddedThoughtRepository(log.toString(), 1024);
+        for (int i = 0; i < 200; i++) {
+            repository.saveThought("day-" + i, "you", "some fairly long thought text number " + i);
+        }
+        for (int i = 0; i < 190; i++) {
+            repository.deleteThought(keyOf(repository, "day-" + i));
+        }
+
+        assertEquals(10, repository.loadAllThoughts().size());
+        assertFalse(Files.exists(dir.resolve("thoughts.log.compact")));
+        String content = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+        assertFalse(content.contains("number 0"), "deleted records were compacted away");
+        repository.close();
+
+        EmbeddedThoughtRepository reopened = new EmbeddedThoughtRepository(log.toString(), 1024);
+        assertEquals(10, reopened.loadPage(null, 50).thoughts().size());
+        assertEquals("day-199", reopened.loadPage(null, 1).thoughts().get(0).date());
+        reopened.close();
+    }
+
+    private static String keyOf(ThoughtRepository repository, String date) {
+        return repository.loadAllThoughts().entrySet().stream()
+                .filter(entry -> date.equals(entry.getValue().date()))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+    }
+}
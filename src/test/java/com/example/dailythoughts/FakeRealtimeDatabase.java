@@ -0,0 +1,318 @@
+package com.example.dailythoughts;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// In-memory stand-in for the Realtime Database: a tree of nested maps
+// with synchronous child listeners and a counter of remote reads.
+class FakeRealtimeDatabase implements RealtimeDatabase {
+
+    // Marker key: the write replaced the listened node (or an ancestor) wholesale
+    private static final String WHOLE_NODE = "\u0000";
+
+    private final Map<String, Object> root = new TreeMap<>();
+    private final List<ChildSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<ValueSubscription> valueSubscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private volatile Duration readLatency = Duration.ZERO;
+
+    int reads() {
+        return reads.get();
+    }
+
+    // Child and value listeners attached and not yet removed
+    int listeners() {
+        return subscriptions.size() + valueSubscriptions.size();
+    }
+
+    // Delay the answer to every get/query, as a slow network would
+    void setReadLatency(Duration readLatency) {
+        this.readLatency = readLatency;
+    }
+
+    @Override
+    public CompletableFuture<Object> get(String path) {
+        reads.incrementAndGet();
+        synchronized (this) {
+            return answer(copy(valueAt(path)));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> query(String path, ChildQuery query) {
+        reads.incrementAndGet();
+        List<Map.Entry<String, Object>> matches = new ArrayList<>();
+
+        synchronized (this) {
+            for (Map.Entry<String, Object> child : children(valueAt(path)).entrySet()) {
+                Object orderValue = orderValue(child, query);
+                if (query.startAfter() != null && compareValues(orderValue, query.startAfter()) <= 0) {
+                    continue;
+                }
+                if (query.endBefore() != null) {
+                    int toEnd = compareValues(orderValue, query.endBefore());
+                    if (toEnd > 0 || (toEnd == 0 && (query.endBeforeKey() == null
+                            || child.getKey().compareTo(query.endBeforeKey()) >= 0))) {
+                        continue;
+                    }
+                }
+                matches.add(Map.entry(child.getKey(), copy(child.getValue())));
+            }
+        }
+
+        matches.sort((a, b) -> {
+            int byValue = compareValues(orderValue(a, query), orderValue(b, query));
+            return byValue != 0 ? byValue : a.getKey().compareTo(b.getKey());
+        });
+        if (query.limitToFirst() != null && matches.size() > query.limitToFirst()) {
+            matches = matches.subList(0, query.limitToFirst());
+        }
+        if (query.limitToLast() != null && matches.size() > query.limitToLast()) {
+            matches = matches.subList(matches.size() - query.limitToLast(), matches.size());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        matches.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return answer(result);
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String path, Object value) {
+        write(path, copy(value));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+        Map<String, Object> writes = new LinkedHashMap<>();
+        values.forEach((child, value) -> writes.put(path + "/" + child, copy(value)));
+        write(writes);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> remove(String path) {
+        write(path, null);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Never contended: the whole tree is locked while update runs
+    @Override
+    public CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update) {
+        synchronized (this) {
+            Object updated = copy(update.apply(copy(valueAt(path))));
+            write(path, updated);
+            return CompletableFuture.completedFuture(copy(updated));
+        }
+    }
+
+    @Override
+    public Registration listenChildren(String path, ChildListener listener) {
+        ChildSubscription subscription = new ChildSubscription(segments(path), listener);
+        synchronized (this) {
+            subscriptions.add(subscription);
+            children(valueAt(path)).forEach((key, value) -> listener.onChildAdded(key, copy(value)));
+        }
+        return () -> subscriptions.remove(subscription);
+    }
+
+    private <T> CompletableFuture<T> answer(T value) {
+        if (readLatency.isZero()) {
+            return CompletableFuture.completedFuture(value);
+        }
+        return CompletableFuture.supplyAsync(() -> value,
+                CompletableFuture.delayedExecutor(readLatency.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public Registration listenValue(String path, Consumer<Object> listener) {
+        ValueSubscription subscription = new ValueSubscription(segments(path), listener);
+        synchronized (this) {
+            valueSubscriptions.add(subscription);
+            listener.accept(copy(valueAt(path)));
+        }
+        return () -> valueSubscriptions.remove(subscription);
+    }
+
+    synchronized Object valueAt(String path) {
+        Object node = root;
+        for (String segment : segments(path)) {
+            if (!(node instanceof Map<?, ?> map)) {
+                return null;
+            }
+            node = map.get(segment);
+        }
+        return node;
+    }
+
+    private void write(String path, Object value) {
+        Map<String, Object> writes = new HashMap<>();
+        writes.put(path, value);
+        write(writes);
+    }
+
+    // All the writes land before any listener hears of them, as with a multi-path update
+    private synchronized void write(Map<String, Object> writes) {
+        List<List<String>> targets = new ArrayList<>();
+        writes.keySet().forEach(path -> targets.add(segments(path)));
+
+        // Remember what each listener saw, so only the affected children are diffed
+        Map<ChildSubscription, Map<String, Object>> before = new HashMap<>();
+        for (ChildSubscription subscription : subscriptions) {
+            for (List<String> target : targets) {
+                Map<String, Object> affected = affectedChildren(subscription.path, target);
+                if (affected != null) {
+                    before.computeIfAbsent(subscription, ignored -> new HashMap<>()).putAll(affected);
+                }
+            }
+        }
+
+        writes.forEach((path, value) -> put(segments(path), value));
+
+        for (ValueSubscription subscription : valueSubscriptions) {
+            List<String> listened = subscription.path();
+            for (List<String> target : targets) {
+                int common = Math.min(listened.size(), target.size());
+                if (listened.subList(0, common).equals(target.subList(0, common))) {
+                    subscription.listener().accept(copy(valueAt(String.join("/", listened))));
+                    break;
+                }
+            }
+        }
+
+        for (ChildSubscription subscription : subscriptions) {
+            Map<String, Object> old = before.get(subscription);
+            if (old == null) {
+                continue;
+            }
+            Map<String, Object> now = children(valueAt(String.join("/", subscription.path)));
+            Set<String> keys = new TreeSet<>(old.keySet());
+            if (keys.remove(WHOLE_NODE)) {
+                keys.addAll(now.keySet());
+            }
+            for (String key : keys) {
+                Object previous = old.get(key);
+                Object current = now.get(key);
+                if (previous == null && current != null) {
+                    subscription.listener.onChildAdded(key, copy(current));
+                } else if (previous != null && current == null) {
+                    subscription.listener.onChildRemoved(key);
+                } else if (previous != null && !previous.equals(current)) {
+                    subscription.listener.onChildChanged(key, copy(current));
+                }
+            }
+        }
+    }
+
+    // Children of the listened node that a write to target can touch, or null if none
+    private Map<String, Object> affectedChildren(List<String> listened, List<String> target) {
+        Map<String, Object> children = children(valueAt(String.join("/", listened)));
+
+        if (target.size() > listened.size() && target.subList(0, listened.size()).equals(listened)) {
+            String key = target.get(listened.size());
+            Map<String, Object> affected = new HashMap<>();
+            affected.put(key, copy(children.get(key)));
+            return affected;
+        }
+        if (listened.size() >= target.size() && listened.subList(0, target.size()).equals(target)) {
+            // Write at or above the listened node: everything may change
+            Map<String, Object> affected = new HashMap<>();
+            children.forEach((key, child) -> affected.put(key, copy(child)));
+            affected.put(WHOLE_NODE, Boolean.TRUE);
+            return affected;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(List<String> path, Object value) {
+        Map<String, Object> node = root;
+        for (int i = 0; i < path.size() - 1; i++) {
+            Object child = node.get(path.get(i));
+            if (!(child instanceof Map)) {
+                if (value == null) {
+                    return;
+                }
+                child = new TreeMap<String, Object>();
+                node.put(path.get(i), child);
+            }
+            node = (Map<String, Object>) child;
+        }
+        if (path.isEmpty()) {
+            root.clear();
+            if (value instanceof Map<?, ?> map) {
+                map.forEach((k, v) -> root.put((String) k, v));
+            }
+        } else if (value == null || (value instanceof Map<?, ?> map && map.isEmpty())) {
+            node.remove(path.get(path.size() - 1));
+        } else {
+            node.put(path.get(path.size() - 1), value);
+        }
+    }
+
+    private static Object orderValue(Map.Entry<String, Object> child, ChildQuery query) {
+        if (query.orderBy() == null) {
+            return child.getKey();
+        }
+        return children(child.getValue()).get(query.orderBy());
+    }
+
+    // Firebase ordering, simplified: missing values first, then numbers, then strings
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if (a instanceof Number || b instanceof Number) {
+            return a instanceof Number ? -1 : 1;
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> children(Object node) {
+        return node instanceof Map<?, ?> map ? (Map<String, Object>) map : Collections.emptyMap();
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    // Deep copy, so callers can never mutate the stored tree
+    private static Object copy(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> copy = new TreeMap<>();
+            map.forEach((k, v) -> {
+                if (v != null) {
+                    copy.put(String.valueOf(k), copy(v));
+                }
+            });
+            return copy;
+        }
+        if (value instanceof Integer number) {
+            return number.longValue(); // Firebase hands back whole numbers as Long
+        }
+        return value;
+    }
+
+    private record ValueSubscription(List<String> path, Consumer<Object> listener) {
+    }
+
+    private record ChildSubscription(List<String> path, ChildListener listener) {
+    }
+}
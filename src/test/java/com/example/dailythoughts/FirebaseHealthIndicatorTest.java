@@ -0,0 +1,26 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FirebaseHealthIndicatorTest {
+
+    @Test
+    void followsTheConnectionState() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseHealthIndicator indicator = new FirebaseHealthIndicator(database);
+        assertEquals(Status.DOWN, indicator.health().getStatus());
+
+        database.set(".info/connected", true).join();
+        assertEquals(Status.UP, indicator.health().getStatus());
+
+        database.set(".info/connected", false).join();
+        assertEquals(Status.DOWN, indicator.health().getStatus());
+
+        indicator.stopListening();
+        database.set(".info/connected", true).join();
+        assertEquals(Status.DOWN, indicator.health().getStatus());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FirebaseRealtimeDatabaseTest {
+
+    @Test
+    void exclusiveBoundsMatchTheirValueOnlyAsTheServerComparesIt() {
+        assertTrue(FirebaseRealtimeDatabase.sameValue(5L, 5));
+        assertTrue(FirebaseRealtimeDatabase.sameValue(1.5, 1.5));
+        assertTrue(FirebaseRealtimeDatabase.sameValue("2024-01", "2024-01"));
+        assertFalse(FirebaseRealtimeDatabase.sameValue("5", 5L), "a string never equals a number");
+        assertFalse(FirebaseRealtimeDatabase.sameValue(5L, "5"));
+        assertFalse(FirebaseRealtimeDatabase.sameValue(null, ""), "a missing child is not on the \"\" bound");
+        assertFalse(FirebaseRealtimeDatabase.sameValue("x", null));
+    }
+
+    @Test
+    void keepsTheFirstOrLastChildrenUnderALimit() {
+        Map<String, Object> children = new LinkedHashMap<>();
+        for (String key : List.of("a", "b", "c", "d")) {
+            children.put(key, key.toUpperCase());
+        }
+
+        assertEquals(List.of("a", "b"), List.copyOf(FirebaseRealtimeDatabase.limited(children, 2, false).keySet()));
+        assertEquals(List.of("c", "d"), List.copyOf(FirebaseRealtimeDatabase.limited(children, 2, true).keySet()));
+        assertSame(children, FirebaseRealtimeDatabase.limited(children, 4, true));
+    }
+}
@@ -0,0 +1,391 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FirebaseServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    @Test
+    void diaryReadsComeFromMemoryAfterWarmUp() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        database.set("thoughts/2024-01-01 10-00-00", Map.of("author", "you", "thought", "hello", "timestamp", 1L));
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        assertEquals(1, service.loadAllThoughts().size());
+        int readsAfterWarmUp = database.reads();
+
+        for (int i = 0; i < 100; i++) {
+            service.loadAllThoughts();
+        }
+
+        assertEquals(readsAfterWarmUp, database.reads(), "no remote reads per request after warm-up");
+    }
+
+    @Test
+    void cacheFollowsRemoteChangesAndWritesThrough() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+        assertTrue(service.loadAllThoughts().isEmpty());
+
+        service.saveThought("2024-01-02 09:00:00", "her", "morning").join();
+        String saved = keyOf(service, "2024-01-02 09:00:00");
+        assertEquals("morning", service.loadAllThoughts().get(saved).text());
+
+        // Changes made by another instance arrive through the listener
+        database.set("thoughts/-remote", Map.of("author", "you", "thought", "remote", "timestamp", 2L));
+        assertEquals("remote", service.loadAllThoughts().get("-remote").text());
+        assertEquals(2L, service.loadAllThoughts().get("-remote").timestamp());
+
+        database.remove("thoughts/-remote");
+        service.deleteThought(saved);
+        assertTrue(service.loadAllThoughts().isEmpty());
+    }
+
+    @Test
+    void aDeleteFirebaseRefusesKeepsTheThoughtCached() {
+        AtomicBoolean reachable = new AtomicBoolean(true);
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Void> remove(String path) {
+                return reachable.get() ? super.remove(path) : CompletableFuture.failedFuture(new IllegalStateException("offline"));
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, registry);
+        service.saveThought("2024-01-02 09:00:00", "her", "morning").join();
+        String saved = keyOf(service, "2024-01-02 09:00:00");
+
+        reachable.set(false);
+        service.deleteThought(saved);
+        assertEquals(1.0, registry.find("dailythoughts.firebase.write.failures").tag("op", "delete").counter().count());
+        assertEquals("morning", service.loadAllThoughts().get(saved).text());
+        assertEquals(1, service.search("morning", null, 10).thoughts().size());
+
+        reachable.set(true);
+        service.deleteThought(saved);
+        assertTrue(service.loadAllThoughts().isEmpty());
+        service.stopListening();
+    }
+
+    @Test
+    void countsEachConcurrentSubmitAndDeleteInTheStatsRollups() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        try (ExecutorService users = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> submits = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String author = i % 4 == 0 ? "her" : "you";
+                String date = "2024-01-0" + (1 + i % 3) + " 10:00:00";
+                submits.add(users.submit(() -> service.saveThought(date, author, "busy").join()));
+            }
+            for (Future<?> submit : submits) {
+                submit.get();
+            }
+        }
+        service.saveThought("2024-01-03 11:00:00", "someone", "not counted").join();
+
+        assertEquals(17L, database.valueAt("stats/2024-01/her/2024-01-01"), "every concurrent submit is counted");
+        DiaryStats stats = service.loadStats();
+        assertEquals(Map.of("you", 150L, "her", 50L), stats.months().get(0).counts());
+        assertEquals(3, stats.authors().get("you").longestStreak());
+        int reads = database.reads();
+        assertSame(stats, service.loadStats(), "computed once per change");
+        assertEquals(reads, database.reads(), "served from the listener's copy");
+
+        service.deleteThought(keyOf(service, "2024-01-03 11:00:00"));
+        String herThought = service.loadAllThoughts().values().stream()
+                .filter(thought -> thought.author() == Author.HER && thought.date().startsWith("2024-01-01")).findFirst().orElseThrow().key();
+        service.deleteThought(herThought);
+        awaitValue(database, "stats/2024-01/her/2024-01-01", 16L);
+        assertNull(database.valueAt("stats/2024-01/someone"));
+        assertEquals(49L, service.loadStats().authors().get("her").thoughts());
+    }
+
+    @Test
+    void submitsInTheSameSecondGetDistinctTimeOrderedKeys() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            saves.add(service.saveThought("2024-01-01 12:00:00", i % 2 == 0 ? "you" : "her", "#" + i));
+        }
+        saves.forEach(CompletableFuture::join);
+
+        Map<String, Object> stored = database.query("thoughts", ChildQuery.byKey()).join();
+        assertEquals(50, stored.size());
+        List<String> inKeyOrder = new ArrayList<>();
+        stored.values().forEach(value -> inKeyOrder.add(((Map<?, ?>) value).get("thought").toString()));
+        assertEquals("#0", inKeyOrder.get(0));
+        assertEquals("#49", inKeyOrder.get(49));
+        assertInstanceOf(Long.class, ((Map<?, ?>) stored.values().iterator().next()).get("timestamp"));
+    }
+
+    @Test
+    void savesFoldBothAuthorsIntoOneDayInTheSameUpdate() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+        assertTrue(service.loadDays(null, 10).days().isEmpty());
+
+        service.saveThought("2024-01-01 08:00:00", "you", "first").join();
+        service.saveThought("2024-01-01 09:00:00", "her", "hello").join();
+        service.saveThought("2024-01-01 20:00:00", "you", "second").join();
+        service.saveThought("2024-01-02 07:00:00", "her", "next day").join();
+
+        assertEquals(Map.of("yourThought", "second", "herThought", "hello"), database.valueAt("days/2024-01-01"));
+
+        DayPage page = service.loadDays(null, 10);
+        assertEquals(List.of("2024-01-02", "2024-01-01"), List.copyOf(page.days().keySet()));
+        assertEquals("second", page.days().get("2024-01-01").getYourThought());
+        assertEquals("hello", page.days().get("2024-01-01").getHerThought());
+
+        // Deleting the latest thought brings back the one before it
+        service.deleteThought(keyOf(service, "2024-01-01 20:00:00"));
+        awaitDay(database, "2024-01-01", Map.of("yourThought", "first", "herThought", "hello"));
+        service.deleteThought(keyOf(service, "2024-01-02 07:00:00"));
+        awaitDay(database, "2024-01-02", null);
+        assertEquals(List.of("2024-01-01"), List.copyOf(service.loadDays(null, 10).days().keySet()));
+    }
+
+    @Test
+    void versionFollowsTheDaysAndMatchesForTheSameContent() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+        assertNull(service.version(), "unknown before the days are loaded");
+        service.loadDays(null, 10);
+        String empty = service.version();
+        assertNotNull(empty);
+
+        service.saveThought("2024-01-01 08:00:00", "you", "first").join();
+        String afterFirst = service.version();
+        assertNotEquals(empty, afterFirst);
+        assertEquals(afterFirst, service.version(), "stable while nothing changes");
+
+        service.saveThought("2024-01-01 09:00:00", "her", "hello").join();
+        assertNotEquals(afterFirst, service.version());
+
+        // Remote edits count too, and deleting back to the same content gives the same version
+        database.set("days/2023-12-31", Map.of("yourThought", "remote", "herThought", ""));
+        String withRemote = service.version();
+        assertNotEquals(afterFirst, withRemote);
+        database.remove("days/2023-12-31");
+        service.deleteThought(keyOf(service, "2024-01-01 09:00:00"));
+        awaitDay(database, "2024-01-01", Map.of("yourThought", "first", "herThought", ""));
+        assertEquals(afterFirst, service.version());
+    }
+
+    @Test
+    void searchFollowsSavesRemoteChangesAndDeletes() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        database.set("thoughts/-old", Map.of("author", "you", "thought", "Walk by the sea", "timestamp", 1L));
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        service.saveThought("2024-01-02 09:00:00", "her", "the sea was cold").join();
+        ThoughtPage results = service.search("SEA", null, 10);
+        assertFalse(results.stale());
+        assertEquals(List.of("the sea was cold", "Walk by the sea"),
+                results.thoughts().stream().map(Thought::text).toList());
+
+        database.set("thoughts/-old", Map.of("author", "you", "thought", "Walk in the hills", "timestamp", 1L));
+        assertEquals(1, service.search("sea", null, 10).thoughts().size());
+        service.deleteThought(keyOf(service, "2024-01-02 09:00:00"));
+        assertTrue(service.search("sea", null, 10).thoughts().isEmpty());
+        int reads = database.reads();
+        service.search("hills", null, 10);
+        assertEquals(reads, database.reads(), "searches never go to the database");
+    }
+
+    @Test
+    void dayPagesWalkOlderDaysByCursor() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        for (int day = 10; day <= 30; day++) {
+            database.set("days/2024-01-" + day, Map.of("yourThought", "you " + day, "herThought", ""));
+        }
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        DayPage first = service.loadDays(null, 10);
+        assertEquals("2024-01-30", first.days().keySet().iterator().next());
+        assertEquals("2024-01-21", first.nextCursor());
+
+        DayPage second = service.loadDays(first.nextCursor(), 10);
+        assertEquals("2024-01-20", second.days().keySet().iterator().next());
+
+        DayPage last = service.loadDays(second.nextCursor(), 10);
+        assertEquals(1, last.days().size());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void pagesWalkHistoryNewestFirstAndStayStableAsThoughtsArrive() {
+        FakeRealtimeDatabase database = seeded(25);
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        ThoughtPage first = service.loadPage(null, 10);
+        assertEquals(List.of(25L, 16L), firstAndLast(first));
+        assertEquals(new ThoughtCursor(16, "t16"), first.nextCursor());
+
+        // A new thought must not shift the older pages
+        database.set("thoughts/new", Map.of("author", "her", "thought", "late", "timestamp", 100L));
+
+        ThoughtPage second = service.loadPage(first.nextCursor(), 10);
+        assertEquals(List.of(15L, 6L), firstAndLast(second));
+
+        ThoughtPage last = service.loadPage(second.nextCursor(), 10);
+        assertEquals(List.of(5L, 1L), firstAndLast(last));
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void coldPagesUseAnOrderedLimitedQuery() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Object> get(String path) {
+                return new CompletableFuture<>(); // initial sync never finishes
+            }
+        };
+        for (int i = 1; i <= 25; i++) {
+            database.set("thoughts/t" + i, Map.of("author", "you", "thought", "#" + i, "timestamp", (long) i));
+        }
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        ThoughtPage first = service.loadPage(null, 10);
+        ThoughtPage second = service.loadPage(first.nextCursor(), 10);
+
+        assertEquals(List.of(25L, 16L), firstAndLast(first));
+        assertEquals(List.of(15L, 6L), firstAndLast(second));
+        assertEquals(2, database.reads());
+    }
+
+    @Test
+    void aFailedFirstSyncIsTriedAgainByTheNextRequest() {
+        AtomicBoolean reachable = new AtomicBoolean();
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Object> get(String path) {
+                return reachable.get() ? super.get(path) : CompletableFuture.failedFuture(new IllegalStateException("offline"));
+            }
+        };
+        database.set("thoughts/t1", Map.of("author", "you", "thought", "walk", "timestamp", 1L));
+        database.set("days/2024-01-01", Map.of("yourThought", "walk", "herThought", ""));
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+        service.setResyncBackoff(Duration.ZERO);
+
+        service.loadPage(null, 10);
+        service.loadDays(null, 10);
+        assertNull(service.version(), "the days never finished loading");
+
+        reachable.set(true);
+        database.remove("thoughts/t1");
+        database.set("thoughts/t2", Map.of("author", "her", "thought", "tea", "timestamp", 2L));
+        assertEquals(List.of("t2"), service.loadPage(null, 10).thoughts().stream().map(Thought::key).toList());
+        service.loadDays(null, 10);
+        assertNotNull(service.version());
+
+        int reads = database.reads();
+        service.loadPage(null, 10);
+        assertEquals(reads, database.reads(), "served from the new listener's cache");
+        service.stopListening();
+    }
+
+    @Test
+    void coldPagesGoOnWithTheThoughtsSharingTheCursorsTimestamp() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Object> get(String path) {
+                return new CompletableFuture<>(); // initial sync never finishes
+            }
+        };
+        for (int i = 1; i <= 6; i++) {
+            database.set("thoughts/t" + i, Map.of("author", "you", "thought", "#" + i, "timestamp", 5L));
+        }
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+
+        ThoughtPage first = service.loadPage(null, 4);
+        assertEquals(new ThoughtCursor(5, "t3"), first.nextCursor());
+        ThoughtPage second = service.loadPage(first.nextCursor(), 4);
+        assertEquals(List.of("t2", "t1"), second.thoughts().stream().map(Thought::key).toList());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void slowBackendServesStalePagesWithinTheDeadline() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Object> get(String path) {
+                return new CompletableFuture<>(); // initial sync stalls
+            }
+        };
+        for (int i = 1; i <= 25; i++) {
+            database.set("thoughts/t" + i, Map.of("author", "you", "thought", "#" + i, "timestamp", (long) i));
+        }
+        FirebaseService service = new FirebaseService(database, Duration.ofMillis(100), new SimpleMeterRegistry());
+        ThoughtPage fresh = service.loadPage(null, 10);
+        assertFalse(fresh.stale());
+
+        // Backend now takes 10 s per read; 2000 concurrent requests must still finish well inside one backend round trip
+        database.setReadLatency(Duration.ofSeconds(10));
+        long started = System.nanoTime();
+        List<Future<ThoughtPage>> pages = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 2000; i++) {
+                pages.add(executor.submit(() -> service.loadPage(null, 10)));
+            }
+            for (Future<ThoughtPage> page : pages) {
+                assertTrue(page.get().stale());
+                assertEquals(fresh.thoughts(), page.get().thoughts());
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(5)) < 0, "2000 requests took " + elapsed);
+    }
+
+    private static FakeRealtimeDatabase seeded(int count) {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        for (int i = 1; i <= count; i++) {
+            database.set("thoughts/t" + i, Map.of("author", "you", "thought", "#" + i, "timestamp", (long) i));
+        }
+        return database;
+    }
+
+    private static List<Long> firstAndLast(ThoughtPage page) {
+        List<Long> timestamps = new ArrayList<>();
+        page.thoughts().forEach(thought -> timestamps.add(thought.timestamp()));
+        return List.of(timestamps.get(0), timestamps.get(timestamps.size() - 1));
+    }
+
+    private static String keyOf(ThoughtRepository repository, String date) {
+        return repository.loadAllThoughts().entrySet().stream()
+                .filter(entry -> date.equals(entry.getValue().date()))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void awaitDay(FakeRealtimeDatabase database, String day, Object expected) {
+        awaitValue(database, "days/" + day, expected);
+    }
+
+    private static void awaitValue(FakeRealtimeDatabase database, String path, Object expected) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!java.util.Objects.equals(expected, database.valueAt(path)) && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(expected, database.valueAt(path));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryIndexTest {
+
+    @Test
+    void pagesNewestFirstWhateverTheInsertionOrder() {
+        HistoryIndex index = new HistoryIndex();
+        List<Long> timestamps = new ArrayList<>();
+        for (long t = 1; t <= 100; t++) {
+            timestamps.add(t);
+        }
+        Collections.shuffle(timestamps, new Random(7));
+        timestamps.forEach(t -> index.put(thought("k" + t, t)));
+
+        ThoughtPage first = index.page(null, 30);
+        assertEquals(100L, first.thoughts().get(0).timestamp());
+        assertEquals(71L, first.thoughts().get(29).timestamp());
+        assertEquals(new ThoughtCursor(71, "k71"), first.nextCursor());
+
+        ThoughtPage last = index.page(new ThoughtCursor(11, "k11"), 30);
+        assertEquals(10, last.thoughts().size());
+        assertEquals(10L, last.thoughts().get(0).timestamp());
+        assertNull(last.nextCursor());
+        assertTrue(index.page(new ThoughtCursor(1, "k1"), 30).thoughts().isEmpty());
+    }
+
+    @Test
+    void replacesAndRemovesByKey() {
+        HistoryIndex index = new HistoryIndex();
+        index.put(thought("a", 1));
+        index.put(thought("b", 2));
+        index.put(thought("c", 3));
+
+        Thought moved = thought("a", 4);
+        assertEquals(1L, index.put(moved).timestamp());
+        assertSame(moved, index.get("a"));
+        assertEquals(List.of("a", "c", "b"), keys(index.page(null, 10)));
+
+        assertEquals("c", index.remove("c").key());
+        assertNull(index.remove("c"));
+        assertEquals(List.of("a", "b"), keys(index.page(null, 10)));
+        assertEquals(2, index.size());
+        assertEquals(Set.of("a", "b"), index.all().keySet());
+    }
+
+    @Test
+    void thoughtsSharingATimestampKeepAStableOrder() {
+        HistoryIndex index = new HistoryIndex();
+        index.put(thought("-b", 5));
+        index.put(thought("-c", 5));
+        index.put(thought("-a", 5));
+        index.put(thought("-z", 4));
+
+        assertEquals(List.of("-c", "-b", "-a", "-z"), keys(index.page(null, 10)));
+
+        // A page ending inside the run goes on with the rest of it
+        ThoughtPage first = index.page(null, 2);
+        assertEquals(new ThoughtCursor(5, "-b"), first.nextCursor());
+        assertEquals(List.of("-a", "-z"), keys(index.page(first.nextCursor(), 10)));
+        // Also once the thought at the cursor is gone
+        index.remove("-b");
+        assertEquals(List.of("-a", "-z"), keys(index.page(first.nextCursor(), 10)));
+    }
+
+    @Test
+    void readsTimestampsStoredAsNumbersOrStrings() {
+        assertEquals(1_700_000_000_000L, Thought.fromValue("k", Map.of("timestamp", 1_700_000_000_000L)).timestamp());
+        assertEquals(1_700_000_000_000L, Thought.fromValue("k", Map.of("timestamp", "1700000000000")).timestamp());
+        assertEquals(0L, Thought.fromValue("k", Map.of("thought", "no timestamp")).timestamp());
+
+        Thought thought = Thought.fromValue("k", Map.of("author", "her", "thought", "hi", "date", "2024-01-01 10:00:00"));
+        assertEquals(Author.HER, thought.author());
+        assertNull(Thought.fromValue("k", Map.of("author", "someone else")).author());
+    }
+
+    private static Thought thought(String key, long timestamp) {
+        return new Thought(key, Author.YOU, "#" + timestamp, timestamp, null);
+    }
+
+    private static List<String> keys(ThoughtPage page) {
+        return page.thoughts().stream().map(Thought::key).toList();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryStreamTest {
+
+    @Test
+    void readsOneChunkAtATimeAndFlushesBeforeEachRead() {
+        PagedRepository repository = new PagedRepository(50);
+        List<String> events = new ArrayList<>();
+        HistoryStream history = new HistoryStream(repository, null, 45, 20, () -> events.add("flush"));
+
+        assertFalse(history.isEmpty());
+        assertEquals(List.of("flush"), events);
+        assertEquals(List.of(20), repository.requestedLimits);
+
+        List<String> days = new ArrayList<>();
+        for (Map.Entry<String, DailyThought> entry : history) {
+            days.add(entry.getKey());
+            events.add(entry.getKey());
+        }
+
+        assertEquals(45, days.size());
+        assertEquals("2024-02-19", days.get(0));
+        assertEquals("2024-01-06", days.get(44));
+        // Last chunk only asks for what is left of the page
+        assertEquals(List.of(20, 20, 5), repository.requestedLimits);
+        // Rows of a chunk go out before the next one is read
+        assertEquals("flush", events.get(21));
+        assertEquals("2024-01-31", events.get(20));
+        assertEquals("2024-01-06", history.getNextCursor());
+        assertFalse(history.isStale());
+    }
+
+    @Test
+    void endsWithoutCursorWhenHistoryRunsOut() {
+        PagedRepository repository = new PagedRepository(3);
+        HistoryStream history = new HistoryStream(repository, null, 20, 20, () -> { });
+
+        int rows = 0;
+        for (Map.Entry<String, DailyThought> entry : history) {
+            assertEquals("her", entry.getValue().getHerThought());
+            rows++;
+        }
+
+        assertEquals(3, rows);
+        assertNull(history.getNextCursor());
+    }
+
+    @Test
+    void emptyHistoryReadsOnce() {
+        PagedRepository repository = new PagedRepository(0);
+        HistoryStream history = new HistoryStream(repository, null, 20, 20, () -> { });
+
+        assertTrue(history.isEmpty());
+        assertFalse(history.iterator().hasNext());
+        assertEquals(1, repository.requestedLimits.size());
+    }
+
+    @Test
+    void homeShowsTheStaleStatusOfAChunkReadAfterTheFirst() {
+        PagedRepository repository = new PagedRepository(30) {
+            @Override
+            public DayPage loadDays(String before, int limit) {
+                DayPage page = super.loadDays(before, limit);
+                return before != null ? page.markStale() : page;
+            }
+        };
+        TemplateEngine templates = DayFragmentsTest.templateEngine();
+        Context context = new Context(Locale.ENGLISH);
+        context.setVariable("username", "you");
+        context.setVariable("diary", "default");
+        context.setVariable("history", new HistoryStream(repository, null, 30, 20, () -> { }));
+        context.setVariable("fragments", new DayFragments(DiariesTest.serving(repository), templates, 1 << 20,
+                new SimpleMeterRegistry()));
+        context.setVariable("limit", 30);
+
+        String home = templates.process("home", context);
+        assertTrue(home.contains("showing the last saved copy"));
+        assertFalse(home.contains("Connected to permanent database"));
+        assertTrue(home.indexOf("showing the last saved copy") > home.indexOf("data-day=\"2024-01-01\""));
+    }
+
+    // One day per thought from 2024-01-01, paged newest first
+    static class PagedRepository implements ThoughtRepository {
+        final NavigableMap<String, DailyThought> days = new TreeMap<>(Comparator.reverseOrder());
+        final List<Integer> requestedLimits = new ArrayList<>();
+
+        PagedRepository(int count) {
+            for (int i = 0; i < count; i++) {
+                days.put(java.time.LocalDate.of(2024, 1, 1).plusDays(i).toString(), new DailyThought("you", "her"));
+            }
+        }
+
+        @Override
+        public DayPage loadDays(String before, int limit) {
+            requestedLimits.add(limit);
+            List<String> older = new ArrayList<>((before != null ? days.tailMap(before, false) : days).keySet());
+            Map<String, DailyThought> page = new LinkedHashMap<>();
+            for (String day : older.subList(0, Math.min(limit, older.size()))) {
+                page.put(day, days.get(day));
+            }
+            return new DayPage(page, older.size() > limit ? older.get(limit - 1) : null);
+        }
+
+        @Override
+        public CompletableFuture<Void> saveThought(String date, String author, String thought) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Thought> loadAllThoughts() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ThoughtPage loadPage(ThoughtCursor before, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ThoughtPage search(String query, ThoughtCursor before, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RealtimeDatabase.Registration watchDays(java.util.function.BiConsumer<String, DailyThought> listener) {
+            // The days never change
+            return () -> { };
+        }
+
+        @Override
+        public String version() {
+            return null;
+        }
+
+        @Override
+        public void deleteThought(String date) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long cachedBytes() {
+            return 0;
+        }
+
+        @Override
+        public DiaryStats loadStats() {
+            return DiaryStats.EMPTY;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.dailythoughts;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Closed-loop load generator for the login -> /diary -> /submit flow.
+//
+// concurrency virtual users (virtual threads) each repeat the flow until flows have been started in
+// total: log in afresh, load /diary, submit a thought. Every request is timed; the report has
+// throughput and, per step, p50/p99 latency and failures. A 429 from /submit is counted as throttled,
+// not failed. Runs against any base URI:
+//
+//     java -cp target/test-classes:<test classpath> com.example.dailythoughts.LoadGenerator http://localhost:8080 64 10000
+class LoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    enum Step {LOGIN, DIARY, SUBMIT}
+
+    private final URI baseUri;
+    private final int concurrency;
+    private final int flows;
+
+    LoadGenerator(URI baseUri, int concurrency, int flows) {
+        this.baseUri = baseUri;
+        this.concurrency = concurrency;
+        this.flows = flows;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        URI baseUri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int flows = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        log.info("Load test against {}:\n{}", baseUri, new LoadGenerator(baseUri, concurrency, flows).run());
+    }
+
+    Report run() throws InterruptedException {
+        Map<Step, Latencies> latencies = new EnumMap<>(Step.class);
+        for (Step step : Step.values()) {
+            latencies.put(step, new Latencies(flows));
+        }
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger throttled = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < concurrency; u++) {
+                users.execute(() -> {
+                    CookieManager cookies = new CookieManager();
+                    try (HttpClient client = HttpClient.newBuilder()
+                            .cookieHandler(cookies)
+                            .followRedirects(HttpClient.Redirect.NEVER)
+                            .version(HttpClient.Version.HTTP_1_1)
+                            .build()) {
+                        int flow;
+                        while ((flow = started.getAndIncrement()) < flows) {
+                            cookies.getCookieStore().removeAll(); // every flow is a new login
+                            runFlow(client, flow, latencies, throttled);
+                        }
+                    }
+                });
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        Map<Step, StepStats> steps = new EnumMap<>(Step.class);
+        latencies.forEach((step, recorded) -> steps.put(step, recorded.stats(step)));
+        return new Report(flows, elapsed, steps, throttled.get());
+    }
+
+    // One login session; stops at the first failed step
+    private void runFlow(HttpClient client, int flow, Map<Step, Latencies> latencies, AtomicInteger throttled) {
+        String username = flow % 2 == 0 ? "you" : "her";
+
+        int status = send(client, latencies.get(Step.LOGIN),
+                post("/login", Map.of("username", username, "password", DiaryMembers.BUILT_IN.get(username))), 302);
+        if (status != 302) {
+            return;
+        }
+        status = send(client, latencies.get(Step.DIARY), HttpRequest.newBuilder(baseUri.resolve("/diary"))
+                .timeout(REQUEST_TIMEOUT).GET().build(), 200);
+        if (status != 200) {
+            return;
+        }
+        String field = username.equals("you") ? "yourThought" : "herThought";
+        status = send(client, latencies.get(Step.SUBMIT),
+                post("/submit", Map.of(field, "Load test thought #" + flow)), 302, 429);
+        if (status == 429) {
+            throttled.incrementAndGet();
+        }
+    }
+
+    // Sends and times a request; the status, or -1 after a failure (I/O error or unexpected status)
+    private static int send(HttpClient client, Latencies latencies, HttpRequest request, int... expected) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            latencies.record(System.nanoTime() - start);
+            int status = response.statusCode();
+            boolean saved = !request.uri().getPath().equals("/submit") || status != 302
+                    || response.headers().firstValue("Location").orElse("").contains("status=saved");
+            if (saved && Arrays.stream(expected).anyMatch(code -> code == status)) {
+                return status;
+            }
+            log.warn("{} {}: {} {}", request.method(), request.uri().getPath(), status,
+                    response.headers().firstValue("Location").orElse(""));
+        } catch (IOException e) {
+            latencies.record(System.nanoTime() - start);
+            log.warn("{} {}: {}", request.method(), request.uri().getPath(), e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        latencies.failed();
+        return -1;
+    }
+
+    private HttpRequest post(String path, Map<String, String> form) {
+        StringJoiner body = new StringJoiner("&");
+        form.forEach((name, value) -> body.add(name + "=" + URLEncoder.encode(value, StandardCharsets.UTF_8)));
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    // Request times of one step, at most one per flow
+    private static class Latencies {
+        private final long[] nanos;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        Latencies(int capacity) {
+            this.nanos = new long[capacity];
+        }
+
+        void record(long elapsed) {
+            nanos[count.getAndIncrement()] = elapsed;
+        }
+
+        void failed() {
+            failures.incrementAndGet();
+        }
+
+        // Only called once every user thread has finished
+        StepStats stats(Step step) {
+            long[] sorted = Arrays.copyOf(nanos, count.get());
+            Arrays.sort(sorted);
+            return new StepStats(step, sorted.length, failures.get(), percentile(sorted, 0.50),
+                    percentile(sorted, 0.99));
+        }
+
+        // Nearest rank
+        private static Duration percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos(sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)]);
+        }
+    }
+
+    record StepStats(Step step, int requests, int failures, Duration p50, Duration p99) {
+    }
+
+    record Report(int flows, Duration elapsed, Map<Step, StepStats> steps, int throttled) {
+
+        int requests() {
+            return steps.values().stream().mapToInt(StepStats::requests).sum();
+        }
+
+        int failures() {
+            return steps.values().stream().mapToInt(StepStats::failures).sum();
+        }
+
+        double flowsPerSecond() {
+            return flows / (elapsed.toNanos() / 1e9);
+        }
+
+        double requestsPerSecond() {
+            return requests() / (elapsed.toNanos() / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                    "%d flows in %.1f s: %.1f flows/s, %.1f requests/s, %d failed, %d submits throttled%n",
+                    flows, elapsed.toMillis() / 1000.0, flowsPerSecond(), requestsPerSecond(), failures(), throttled));
+            for (StepStats step : steps.values()) {
+                report.append(String.format(Locale.ROOT, "  %-7s %6d requests %4d failed  p50 %7.2f ms  p99 %7.2f ms%n",
+                        step.step().name().toLowerCase(Locale.ROOT), step.requests(), step.failures(),
+                        step.p50().toNanos() / 1e6, step.p99().toNanos() / 1e6));
+            }
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.dailythoughts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+// Replaces FirebaseConfig under the loadtest profile: the whole app runs against a LoadTestDatabase,
+// with no Firebase project and no network. Settings in application-loadtest.properties.
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    @Bean
+    public LoadTestDatabase realtimeDatabase(
+            @Value("${dailythoughts.loadtest.latency:5ms}") Duration latency,
+            @Value("${dailythoughts.loadtest.write-failure-rate:0}") double writeFailureRate,
+            @Value("${dailythoughts.loadtest.seed-days:365}") int seedDays,
+            @Value("${dailythoughts.diaries.default-id:default}") String diaryId) {
+        LoadTestDatabase database = new LoadTestDatabase(latency, writeFailureRate);
+        database.seed(diaryId, seedDays);
+        return database;
+    }
+}
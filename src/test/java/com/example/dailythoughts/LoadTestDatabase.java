@@ -0,0 +1,80 @@
+package com.example.dailythoughts;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Firebase stand-in for load tests (profile "loadtest", see LoadTestConfig): the in-memory tree of
+// FakeRealtimeDatabase, reporting itself connected, where every read answers and every write is applied
+// only after latency, and each write fails instead with probability writeFailureRate, as if the
+// connection dropped before it reached the server.
+class LoadTestDatabase extends FakeRealtimeDatabase {
+
+    private final Duration latency;
+    private final double writeFailureRate;
+    private final AtomicInteger failedWrites = new AtomicInteger();
+
+    LoadTestDatabase(Duration latency, double writeFailureRate) {
+        this.latency = latency;
+        this.writeFailureRate = writeFailureRate;
+        setReadLatency(latency);
+        super.set(".info/connected", true);
+    }
+
+    int failedWrites() {
+        return failedWrites.get();
+    }
+
+    // One thought from each of you and her per day for the days before today, so the diary's /diary has
+    // history to page through
+    void seed(String diaryId, int days) {
+        ThoughtKeys keys = new ThoughtKeys();
+        Map<String, Object> updates = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now();
+        for (int i = days; i > 0; i--) {
+            String day = today.minusDays(i).toString();
+            long timestamp = System.currentTimeMillis() - i * 86_400_000L;
+            for (String author : new String[]{"you", "her"}) {
+                String thought = "Seeded thought of " + author + " on " + day;
+                updates.put(Diaries.root(diaryId) + "thoughts/" + keys.next(timestamp), Map.of("author", author, "thought", thought,
+                        "timestamp", timestamp, "date", day + " 12:00:00"));
+                updates.put(Diaries.root(diaryId) + "days/" + day + "/" + DailyThought.fieldFor(author), thought);
+            }
+        }
+        super.update("", updates);
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String path, Object value) {
+        return afterLatency(() -> super.set(path, value));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+        return afterLatency(() -> super.update(path, values));
+    }
+
+    @Override
+    public CompletableFuture<Void> remove(String path) {
+        return afterLatency(() -> super.remove(path));
+    }
+
+    private CompletableFuture<Void> afterLatency(Runnable write) {
+        Executor executor = latency.isZero()
+                ? Runnable::run
+                : CompletableFuture.delayedExecutor(latency.toMillis(), TimeUnit.MILLISECONDS);
+        return CompletableFuture.runAsync(() -> {
+            if (ThreadLocalRandom.current().nextDouble() < writeFailureRate) {
+                failedWrites.incrementAndGet();
+                throw new IllegalStateException("Injected write failure");
+            }
+            write.run();
+        }, executor);
+    }
+}
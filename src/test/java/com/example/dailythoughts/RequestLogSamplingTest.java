@@ -0,0 +1,54 @@
+package com.example.dailythoughts;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLogSamplingTest {
+
+    private final LoggerContext context = new LoggerContext();
+
+    @Test
+    void keepsAboutOneInNOfTheRequestLines() {
+        RequestLogSampling sampling = sampling(10);
+        Logger requests = context.getLogger("dailythoughts.requests");
+
+        int kept = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (sampling.decide(null, requests, Level.INFO, "GET /diary - user {}", null, null) == FilterReply.NEUTRAL) {
+                kept++;
+            }
+        }
+        assertTrue(kept > 9_000 && kept < 11_000, "kept " + kept);
+    }
+
+    @Test
+    void leavesWarningsOtherLoggersAndLevelChecksAlone() {
+        RequestLogSampling sampling = sampling(1_000_000);
+        Logger requests = context.getLogger("dailythoughts.requests");
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(FilterReply.NEUTRAL, sampling.decide(null, requests, Level.WARN, "slow", null, null));
+            assertEquals(FilterReply.NEUTRAL, sampling.decide(null, requests, Level.INFO, null, null, null),
+                    "isInfoEnabled() is not sampled, or the line would be sampled twice");
+            assertEquals(FilterReply.NEUTRAL, sampling.decide(null, context.getLogger(FirebaseService.class),
+                    Level.INFO, "Saved thought {} by {}", null, null));
+            assertEquals(FilterReply.NEUTRAL, sampling.decide(null, context.getLogger("dailythoughts.requestsOther"),
+                    Level.INFO, "line", null, null));
+        }
+        assertEquals(FilterReply.DENY, sampling.decide(null, context.getLogger("dailythoughts.requests.admin"),
+                Level.INFO, "line", null, null), "child loggers are sampled too");
+    }
+
+    private static RequestLogSampling sampling(int oneIn) {
+        RequestLogSampling sampling = new RequestLogSampling();
+        sampling.setLoggerName("dailythoughts.requests");
+        sampling.setOneIn(oneIn);
+        sampling.start();
+        return sampling;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    @Test
+    void matchesEveryTermCaseInsensitivelyNewestFirst() {
+        SearchIndex index = new SearchIndex();
+        index.put("a", 1, "Coffee in the park");
+        index.put("b", 2, "rainy day, more coffee!");
+        index.put("c", 3, "Park run, no COFFEE");
+        index.put("d", 4, "tea");
+
+        assertEquals(List.of("c", "b", "a"), index.search("coffee", null, 10).keys());
+        assertEquals(List.of("c", "a"), index.search("PARK  coffee", null, 10).keys());
+        assertEquals(List.of(), index.search("coffee tea", null, 10).keys());
+        assertEquals(List.of(), index.search("unknown", null, 10).keys());
+        assertEquals(List.of(), index.search(" ,. ", null, 10).keys());
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        SearchIndex index = new SearchIndex();
+        index.put("a", 1, "first draft");
+        index.put("a", 1, "final words");
+        assertEquals(List.of(), index.search("draft", null, 10).keys());
+        assertEquals(List.of("a"), index.search("final", null, 10).keys());
+
+        index.remove("a");
+        assertEquals(List.of(), index.search("final", null, 10).keys());
+        assertEquals(0, index.size());
+        assertEquals(0, index.termCount(), "empty posting lists are dropped");
+    }
+
+    @Test
+    void pagesWalkOlderMatchesByCursor() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 25; i++) {
+            index.put("k" + i, i, (i % 2 == 0 ? "even " : "odd ") + "thought " + i);
+        }
+
+        HistoryIndex.Page first = index.search("even thought", null, 5);
+        assertEquals(List.of("k24", "k22", "k20", "k18", "k16"), first.keys());
+        assertEquals(new ThoughtCursor(16, "k16"), first.nextCursor());
+
+        HistoryIndex.Page second = index.search("even thought", first.nextCursor(), 5);
+        assertEquals("k14", second.keys().get(0));
+
+        HistoryIndex.Page last = index.search("even", new ThoughtCursor(4, "k4"), 5);
+        assertEquals(List.of("k2", "k0"), last.keys());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void aPageEndingAmongMatchesThatShareATimestampGoesOnWithTheRest() {
+        SearchIndex index = new SearchIndex();
+        for (String key : List.of("-a", "-b", "-c", "-d")) {
+            index.put(key, 7, "same second");
+        }
+        index.put("-e", 6, "same word, earlier");
+
+        HistoryIndex.Page first = index.search("same", null, 2);
+        assertEquals(List.of("-d", "-c"), first.keys());
+        assertEquals(new ThoughtCursor(7, "-c"), first.nextCursor());
+        assertEquals(List.of("-b", "-a", "-e"), index.search("same", first.nextCursor(), 5).keys());
+    }
+}
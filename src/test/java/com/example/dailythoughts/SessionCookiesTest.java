@@ -0,0 +1,92 @@
+package com.example.dailythoughts;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionCookiesTest {
+
+    private static final String OLD_KEY = "k1:" + Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String NEW_KEY = "k2:" + Base64.getEncoder().encodeToString("a-new-32-byte-secret-for-testing".getBytes());
+    private static final Duration TTL = Duration.ofDays(7);
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void signedCookiesVerifyAndTamperedOnesDoNot() {
+        SessionCookies cookies = cookies(OLD_KEY, NOW);
+        String value = cookies.sign("smiths", "her");
+
+        assertEquals("her", cookies.verify(value).username());
+        assertEquals("smiths", cookies.verify(value).diary());
+        assertTrue(value.startsWith("k1.c21pdGhzL2hlcg."));
+        assertNull(cookies.verify(value.replace(".c21pdGhzL2hlcg.", ".c21pdGhzL3lvdQ.")), "username swapped to 'you'");
+        assertNull(cookies.verify(value.replace(".c21pdGhzL2hlcg.", ".am9uZXMvaGVy.")), "diary swapped");
+        assertNull(cookies.verify(value.substring(0, value.length() - 2)));
+        assertNull(cookies.verify("k1.aGVy.99999999999.AAAA"));
+        assertNull(cookies.verify("garbage"));
+        assertNull(cookies(NEW_KEY, NOW).verify(value), "a key it does not know");
+    }
+
+    @Test
+    void expiredCookiesAreRejected() {
+        String value = cookies(OLD_KEY, NOW).sign("smiths", "you");
+
+        assertNotNull(cookies(OLD_KEY, NOW.plus(TTL).minusSeconds(1)).verify(value));
+        assertNull(cookies(OLD_KEY, NOW.plus(TTL)).verify(value));
+    }
+
+    @Test
+    void rotationKeepsOldCookiesValidAndReSignsThem() {
+        String oldValue = cookies(OLD_KEY, NOW).sign("smiths", "you");
+        SessionCookies rotated = cookies(NEW_KEY + "," + OLD_KEY, NOW.plusSeconds(60));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(SessionCookies.COOKIE, oldValue));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertEquals("you", rotated.authenticate(request, response).username());
+
+        Cookie reissued = response.getCookie(SessionCookies.COOKIE);
+        assertNotNull(reissued, "signed with the retired key, so re-issued");
+        assertTrue(reissued.getValue().startsWith("k2."));
+        assertTrue(reissued.isHttpOnly());
+
+        // Once the old key is dropped only re-issued cookies still work
+        SessionCookies newOnly = cookies(NEW_KEY, NOW.plusSeconds(120));
+        assertNull(newOnly.verify(oldValue));
+        assertEquals("you", newOnly.verify(reissued.getValue()).username());
+    }
+
+    @Test
+    void filterExposesTheUserWithoutAHttpSession() throws Exception {
+        SessionCookies cookies = cookies(OLD_KEY, NOW);
+        SessionCookieFilter filter = new SessionCookieFilter(cookies);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/diary");
+        request.setCookies(new Cookie(SessionCookies.COOKIE, cookies.sign("smiths", "her")));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> { });
+
+        assertEquals("her", request.getAttribute(SessionCookies.USERNAME));
+        assertEquals("smiths", request.getAttribute(SessionCookies.DIARY));
+        assertNull(request.getSession(false));
+        assertNull(response.getCookie(SessionCookies.COOKIE), "fresh cookies are not re-sent");
+
+        MockHttpServletRequest anonymous = new MockHttpServletRequest("GET", "/diary");
+        filter.doFilter(anonymous, new MockHttpServletResponse(), (req, res) -> { });
+        assertNull(anonymous.getAttribute(SessionCookies.USERNAME));
+        assertNull(anonymous.getAttribute(SessionCookies.DIARY));
+    }
+
+    private static SessionCookies cookies(String keys, Instant now) {
+        return new SessionCookies(keys, TTL, Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsRebuildTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final String ROOT = "diaries/default/";
+
+    @Test
+    void rebuildsTheRollupsOfHotAndArchivedMonthsAndFixesDrift() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseService service = new FirebaseService(database, ROOT, TIMEOUT,
+                new FirebaseWrites(database, 1000, null, registry), new ArchiveCache(1 << 20, registry), registry);
+        for (int month = 1; month <= 4; month++) {
+            for (int day = 1; day <= 3; day++) {
+                service.saveThought(String.format("2023-%02d-%02d 08:00:00", month, day), "you", "walk").join();
+            }
+            service.saveThought(String.format("2023-%02d-02 18:00:00", month), "her", "tea").join();
+        }
+        new ThoughtArchive(database, ROOT, new ArchiveCache(1 << 20, registry), TIMEOUT).compact(YearMonth.of(2023, 3));
+        Object incremental = database.get(ROOT + "stats").join();
+
+        // Counts off after thoughts were removed by hand, one in a month with nothing else in it
+        database.set(ROOT + "stats/2023-04/you/2023-04-01", 5L).join();
+        database.set(ROOT + "stats/2022-12/her/2022-12-31", 1L).join();
+
+        assertEquals(4, new StatsRebuild(database, "default", 2).rebuild());
+        assertEquals(incremental, database.valueAt(ROOT + "stats"));
+        assertEquals(Map.of("you", 3L, "her", 1L), service.loadStats().months().get(0).counts());
+        service.stopListening();
+    }
+
+    @Test
+    void writesEachMonthOnItsOwnSoSubmitsToOtherMonthsStay() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        database.set(ROOT + "thoughts/-a", Map.of("author", "you", "thought", "walk", "timestamp", 1L,
+                "date", "2023-01-05 08:00:00")).join();
+        // Counted by a submit to a month the rebuild is not asked about
+        database.set(ROOT + "stats/2023-02/her/2023-02-01", 1L).join();
+
+        assertEquals(1, new StatsRebuild(database, "default", 2).rebuild(Set.of("2023-01")));
+        assertEquals(Map.of("2023-01", Map.of("you", Map.of("2023-01-05", 1L)),
+                "2023-02", Map.of("her", Map.of("2023-02-01", 1L))), database.valueAt(ROOT + "stats"));
+    }
+}
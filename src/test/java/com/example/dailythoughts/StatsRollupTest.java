@@ -0,0 +1,96 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsRollupTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 2);
+
+    @Test
+    void countsPerMonthNewestFirstAndTracksStreaks() {
+        StatsRollup rollup = StatsRollup.fromValue(Map.of(
+                "2024-02", Map.of(
+                        "you", Map.of("2024-02-27", 1L, "2024-02-28", 2L, "2024-02-29", 1L),
+                        "her", Map.of("2024-02-01", 1L, "2024-02-02", 1L, "2024-02-03", 1L,
+                                "2024-02-20", 1L)),
+                "2024-03", Map.of(
+                        "you", Map.of("2024-03-01", 1L, "2024-03-02", 3L))));
+
+        DiaryStats stats = rollup.toStats(TODAY);
+
+        assertEquals(List.of(new DiaryStats.Month("2024-03", Map.of("you", 4L)),
+                        new DiaryStats.Month("2024-02", Map.of("you", 4L, "her", 4L))),
+                stats.months());
+        // Five days in a row across the month boundary, up to today
+        assertEquals(new DiaryStats.AuthorStats(8, "2024-03-02", 5, 5), stats.authors().get("you"));
+        // Her longest run was three days, and the last one was too long ago to go on
+        assertEquals(new DiaryStats.AuthorStats(4, "2024-02-20", 0, 3), stats.authors().get("her"));
+    }
+
+    @Test
+    void aStreakEndingYesterdayIsStillCurrent() {
+        StatsRollup rollup = new StatsRollup();
+        rollup.add("her", "2024-02-29", 1);
+        rollup.add("her", "2024-03-01", 1);
+
+        assertEquals(2, rollup.toStats(TODAY).authors().get("her").currentStreak());
+        assertEquals(0, rollup.toStats(TODAY.plusDays(1)).authors().get("her").currentStreak());
+    }
+
+    @Test
+    void removingTheLastThoughtOfADayBreaksTheStreak() {
+        StatsRollup rollup = new StatsRollup();
+        for (String day : new String[]{"2024-02-28", "2024-02-29", "2024-03-01", "2024-03-02"}) {
+            rollup.add(new Thought("-" + day, Author.YOU, "x", 0, day + " 09:00:00"), 1);
+        }
+        rollup.add(new Thought("-unknown", null, "x", 0, "2024-03-02 09:00:00"), 1);
+        rollup.add(new Thought("-undated", Author.YOU, "x", 0, null), 1);
+
+        rollup.add("you", "2024-02-29", -1);
+        DiaryStats.AuthorStats you = rollup.toStats(TODAY).authors().get("you");
+        assertEquals(3, you.thoughts());
+        assertEquals(2, you.longestStreak());
+        assertEquals(2, you.currentStreak());
+        assertEquals(1, rollup.toStats(TODAY).authors().size());
+    }
+
+    @Test
+    void reusesItsStatsUntilAMonthOrTheDayChanges() {
+        StatsRollup rollup = StatsRollup.fromValue(Map.of(
+                "2024-02", Map.of("you", Map.of("2024-02-29", 2L)),
+                "2024-03", Map.of("you", Map.of("2024-03-01", 1L))));
+        DiaryStats stats = rollup.toStats(TODAY);
+        assertSame(stats, rollup.toStats(TODAY));
+        assertNotSame(stats, rollup.toStats(TODAY.plusDays(1)));
+
+        // A month's node replaces its counts and leaves the other months alone
+        rollup.replaceMonth("2024-03", Map.of("you", Map.of("2024-03-01", 1L, "2024-03-02", 4L)));
+        assertEquals(List.of(new DiaryStats.Month("2024-03", Map.of("you", 5L)),
+                new DiaryStats.Month("2024-02", Map.of("you", 2L))), rollup.toStats(TODAY).months());
+        rollup.replaceMonth("2024-02", null);
+        assertEquals(5, rollup.toStats(TODAY).authors().get("you").thoughts());
+    }
+
+    @Test
+    void onlyCalendarDatesCount() {
+        assertEquals("2024-03-02", StatsRollup.dayOf("2024-03-02 10:00:00"));
+        assertNull(StatsRollup.dayOf("2024-13-02 10:00:00"));
+        assertNull(StatsRollup.dayOf("2024-03"));
+        assertNull(StatsRollup.dayOf(null));
+        assertEquals("2024-03/you/2024-03-02", StatsRollup.countPath("you", "2024-03-02"));
+    }
+
+    @Test
+    void aTransactionMovesADaysCountAndRemovesItAtZero() {
+        assertEquals(1L, StatsRollup.adjust(null, 1));
+        assertEquals(3L, StatsRollup.adjust(2L, 1));
+        assertNull(StatsRollup.adjust(1L, -1));
+        assertNull(StatsRollup.adjust(null, -1));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Bursts of concurrent /submit calls through MainController and FirebaseService (with its write
+// journal) against a fake backend that is slow to acknowledge writes
+class SubmitLoadTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void aSlowDatabaseGets429sInsteadOfAGrowingBacklog() throws Exception {
+        SlowDatabase database = new SlowDatabase(Duration.ofMillis(200));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseService service = new FirebaseService(database, TIMEOUT, 50,
+                new WriteJournal(dir.resolve("journal.log"), 1 << 20, 50, registry), registry);
+        MainController controller = controller(service, new SubmitRateLimiter(1_000_000, Duration.ofMillis(1),
+                new SimpleMeterRegistry()));
+
+        List<Result> results = submitConcurrently(controller, 2000, 500);
+
+        long saved = results.stream().filter(result -> result.view() != null && result.view().contains("saved")).count();
+        long refused = results.stream().filter(result -> result.status() == 429).count();
+        assertEquals(results.size(), saved + refused, "every submit is either saved or refused");
+        assertTrue(refused > 0, "the pending-write cap was reached");
+        assertTrue(saved >= 50, "writes kept flowing, saved " + saved);
+        results.stream().filter(result -> result.status() == 429)
+                .forEach(result -> assertEquals("1", result.retryAfter()));
+
+        // Saved means journaled; the journal drains to the backend in the background
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (registry.find("dailythoughts.journal.backlog").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0.0, registry.find("dailythoughts.journal.backlog").gauge().value());
+        assertTrue(database.maxInFlight.get() <= 50, "at most 50 writes pending, saw " + database.maxInFlight.get());
+        assertEquals(saved, ((Map<?, ?>) database.valueAt("thoughts")).size(), "every saved thought landed");
+        assertEquals(saved, service.loadAllThoughts().size(), "refused thoughts are not left in the cache");
+        assertEquals((double) refused, registry.find("dailythoughts.writes.rejected").counter().count());
+        service.stopListening();
+    }
+
+    @Test
+    void eachUserGetsTheirOwnBurst() throws Exception {
+        SlowDatabase database = new SlowDatabase(Duration.ZERO);
+        FirebaseService service = new FirebaseService(database, TIMEOUT, new SimpleMeterRegistry());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MainController controller = controller(service, new SubmitRateLimiter(5, Duration.ofHours(1), registry));
+
+        List<Result> results = submitConcurrently(controller, 200, 100);
+
+        for (String user : List.of("you", "her")) {
+            List<Result> own = results.stream().filter(result -> result.user().equals(user)).toList();
+            assertEquals(5, own.stream().filter(result -> result.status() == 200).count());
+            own.stream().filter(result -> result.status() == 429).forEach(result ->
+                    assertTrue(Long.parseLong(result.retryAfter()) > 3000, "next token in about an hour"));
+        }
+        assertEquals(190.0, registry.find("dailythoughts.submit.rejected").counter().count());
+        assertEquals(10, ((Map<?, ?>) database.valueAt("thoughts")).size());
+        service.stopListening();
+    }
+
+    private static MainController controller(ThoughtRepository repository, SubmitRateLimiter limiter) {
+        return new MainController(DiariesTest.serving(repository), null, null, null, null, limiter, null, "test");
+    }
+
+    // submits from alternating users on virtual threads, at most concurrency at a time
+    private static List<Result> submitConcurrently(MainController controller, int submits, int concurrency)
+            throws Exception {
+        Semaphore slots = new Semaphore(concurrency);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Result>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < submits; i++) {
+                String user = i % 2 == 0 ? "you" : "her";
+                String thought = "Thought #" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    slots.acquire();
+                    try {
+                        MockHttpServletResponse response = new MockHttpServletResponse();
+                        String view = controller.submitThought(thought, thought, user, "default", response);
+                        return new Result(user, view, response.getStatus(), response.getHeader("Retry-After"));
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            start.countDown();
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+    }
+
+    record Result(String user, String view, int status, String retryAfter) {
+    }
+
+    // Applies each update at once but acknowledges it only after latency, like a distant server;
+    // tracks how many thoughts were sent and not yet acknowledged
+    static class SlowDatabase extends FakeRealtimeDatabase {
+        final Duration latency;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        SlowDatabase(Duration latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+            int thoughts = (int) values.keySet().stream().filter(key -> key.startsWith("thoughts/")).count();
+            maxInFlight.accumulateAndGet(inFlight.addAndGet(thoughts), Math::max);
+            super.update(path, values);
+            return CompletableFuture.runAsync(() -> inFlight.addAndGet(-thoughts),
+                    CompletableFuture.delayedExecutor(latency.toMillis(), TimeUnit.MILLISECONDS));
+        }
+    }
+}
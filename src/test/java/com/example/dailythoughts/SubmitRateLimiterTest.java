@@ -0,0 +1,86 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubmitRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(-5_000_000_000L); // nanoTime may well be negative
+
+    @Test
+    void allowsABurstThenOneTokenPerRefill() {
+        SubmitRateLimiter limiter = limiter(3, Duration.ofSeconds(6));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Duration.ZERO, limiter.tryAcquire("you"));
+        }
+        assertEquals(Duration.ofSeconds(6), limiter.tryAcquire("you"));
+
+        clock.addAndGet(Duration.ofSeconds(4).toNanos());
+        assertEquals(Duration.ofSeconds(2), limiter.tryAcquire("you"), "a refused call takes nothing");
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertEquals(Duration.ZERO, limiter.tryAcquire("you"));
+        assertEquals(Duration.ofSeconds(6), limiter.tryAcquire("you"));
+
+        assertEquals(Duration.ZERO, limiter.tryAcquire("her"), "buckets are per user");
+    }
+
+    @Test
+    void anIdleBucketRefillsOnlyUpToTheBurst() {
+        SubmitRateLimiter limiter = limiter(2, Duration.ofSeconds(1));
+        limiter.tryAcquire("you");
+        limiter.tryAcquire("you");
+
+        clock.addAndGet(Duration.ofHours(1).toNanos());
+        assertEquals(Duration.ZERO, limiter.tryAcquire("you"));
+        assertEquals(Duration.ZERO, limiter.tryAcquire("you"));
+        assertFalse(limiter.tryAcquire("you").isZero());
+    }
+
+    @Test
+    void concurrentCallersNeverGetMoreThanTheBurst() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SubmitRateLimiter limiter = new SubmitRateLimiter(100, Duration.ofHours(1), clock::get, registry);
+        int threads = 64;
+        int callsPerThread = 1000;
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> granted = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                granted.add(executor.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    for (int i = 0; i < callsPerThread; i++) {
+                        if (limiter.tryAcquire("you").isZero()) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> future : granted) {
+                total += future.get();
+            }
+            assertEquals(100, total);
+        }
+        assertEquals(threads * callsPerThread - 100.0, registry.find("dailythoughts.submit.rejected").counter().count());
+    }
+
+    private SubmitRateLimiter limiter(int burst, Duration refill) {
+        return new SubmitRateLimiter(burst, refill, clock::get, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThoughtArchiveTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final String ROOT = "diaries/smiths/";
+
+    @Test
+    void movesOldMonthsOutOfTheHotNodesInOneUpdate() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = diary(database);
+        save(service, "2023-01-05 08:00:00", "you", "january snow");
+        save(service, "2023-01-05 09:00:00", "her", "hot cocoa");
+        save(service, "2023-02-10 08:00:00", "you", "february rain");
+        save(service, "2024-06-01 08:00:00", "you", "june sun");
+
+        ThoughtArchive archive = archive(database, new ArchiveCache(1 << 20, new SimpleMeterRegistry()));
+        assertEquals(2, archive.compact(YearMonth.of(2024, 1)));
+
+        assertEquals(Set.of("2024-06-01"), children(database, ROOT + "days").keySet());
+        assertEquals(1, children(database, ROOT + "thoughts").size());
+        assertEquals(Set.of("2023-01", "2023-02"), children(database, ROOT + "archived").keySet());
+        assertInstanceOf(String.class, database.valueAt(ROOT + "archive/2023-01"));
+
+        ArchivedMonth january = ArchivedMonth.decode("2023-01", (String) database.valueAt(ROOT + "archive/2023-01"));
+        assertEquals(List.of("hot cocoa", "january snow"), january.thoughts().stream().map(Thought::text).toList());
+        assertEquals("january snow", january.days().get("2023-01-05").getYourThought());
+        assertEquals("hot cocoa", january.days().get("2023-01-05").getHerThought());
+
+        // Nothing left to move
+        assertEquals(0, archive.compact(YearMonth.of(2024, 1)));
+        service.stopListening();
+    }
+
+    @Test
+    void mergesLateThoughtsIntoAnArchivedMonth() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService service = diary(database);
+        save(service, "2023-01-05 08:00:00", "you", "first");
+        ThoughtArchive archive = archive(database, new ArchiveCache(1 << 20, new SimpleMeterRegistry()));
+        archive.compact(YearMonth.of(2024, 1));
+        String firstVersion = (String) database.valueAt(ROOT + "archived/2023-01");
+
+        // An import, say, brings back a thought of the month
+        save(service, "2023-01-20 08:00:00", "her", "second");
+        assertEquals(1, archive.compact(YearMonth.of(2024, 1)));
+
+        ArchivedMonth january = ArchivedMonth.decode("2023-01", (String) database.valueAt(ROOT + "archive/2023-01"));
+        assertEquals(2, january.thoughts().size());
+        assertEquals(Set.of("2023-01-05", "2023-01-20"), january.days().keySet());
+        assertNotEquals(firstVersion, database.valueAt(ROOT + "archived/2023-01"));
+        assertTrue(children(database, ROOT + "thoughts").isEmpty());
+        service.stopListening();
+    }
+
+    @Test
+    void diaryPagesAndSearchesIntoArchivedMonthsOnlyWhenItGetsThere() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService writer = diary(database);
+        for (int month = 1; month <= 6; month++) {
+            for (int day = 1; day <= 3; day++) {
+                save(writer, String.format("2023-%02d-%02d 08:00:00", month, day), "you", "walk " + month + "-" + day);
+            }
+        }
+        save(writer, "2023-02-14 18:00:00", "her", "Kite flying");
+        writer.stopListening();
+        ArchiveCache cache = new ArchiveCache(1 << 20, new SimpleMeterRegistry());
+        archive(database, cache).compact(YearMonth.of(2023, 5));
+
+        FirebaseService service = new FirebaseService(database, ROOT, TIMEOUT,
+                new FirebaseWrites(database, 1000, null, new SimpleMeterRegistry()), cache, new SimpleMeterRegistry());
+        DayPage first = service.loadDays(null, 4);
+        assertEquals(List.of("2023-06-03", "2023-06-02", "2023-06-01", "2023-05-03"),
+                List.copyOf(first.days().keySet()));
+        assertEquals(0, cache.size(), "no archived month is read for the hot days");
+
+        // Past the hot days the page goes on into April, and so on month by month
+        DayPage second = service.loadDays(first.nextCursor(), 4);
+        assertEquals(List.of("2023-05-02", "2023-05-01", "2023-04-03", "2023-04-02"),
+                List.copyOf(second.days().keySet()));
+        assertFalse(second.stale());
+        assertEquals(1, cache.size());
+
+        List<String> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            DayPage page = service.loadDays(cursor, 4);
+            all.addAll(page.days().keySet());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        assertEquals(19, all.size());
+        assertEquals("2023-01-01", all.get(18));
+
+        assertEquals(18, service.search("walk", null, 20).thoughts().size());
+        assertEquals(List.of("Kite flying"), service.search("kite", null, 20).thoughts().stream()
+                .map(Thought::text).toList());
+        service.stopListening();
+    }
+
+    @Test
+    void aPageThatEndsWithTheLastHotDayOrMatchStillLinksOnToTheArchive() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        FirebaseService writer = diary(database);
+        for (int month = 4; month <= 5; month++) {
+            for (int day = 1; day <= 3; day++) {
+                save(writer, String.format("2023-%02d-%02d 08:00:00", month, day), "you", "walk " + month + "-" + day);
+            }
+        }
+        writer.stopListening();
+        archive(database, new ArchiveCache(1 << 20, new SimpleMeterRegistry())).compact(YearMonth.of(2023, 5));
+
+        // Exactly three hot days and three hot matches, so each first page is full with nothing hot after it
+        FirebaseService service = diary(database);
+        DayPage first = service.loadDays(null, 3);
+        assertEquals(List.of("2023-05-03", "2023-05-02", "2023-05-01"), List.copyOf(first.days().keySet()));
+        assertEquals("2023-05-01", first.nextCursor());
+        assertEquals(List.of("2023-04-03", "2023-04-02", "2023-04-01"),
+                List.copyOf(service.loadDays(first.nextCursor(), 3).days().keySet()));
+
+        ThoughtPage hits = service.search("walk", null, 3);
+        assertEquals(List.of("walk 5-3", "walk 5-2", "walk 5-1"), hits.thoughts().stream().map(Thought::text).toList());
+        assertNotNull(hits.nextCursor());
+        assertEquals(List.of("walk 4-3", "walk 4-2", "walk 4-1"), service.search("walk", hits.nextCursor(), 3)
+                .thoughts().stream().map(Thought::text).toList());
+
+        // With nothing archived a full last page has no link
+        FirebaseService hot = diary(new FakeRealtimeDatabase());
+        save(hot, "2023-05-01 08:00:00", "you", "walk");
+        assertNull(hot.loadDays(null, 1).nextCursor());
+        assertNull(hot.search("walk", null, 1).nextCursor());
+        hot.stopListening();
+        service.stopListening();
+    }
+
+    @Test
+    void searchPagesGoOnWithArchivedThoughtsSharingTheCursorsTimestamp() throws Exception {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        Map<String, Object> thoughts = new HashMap<>();
+        for (String key : List.of("-a", "-b", "-c", "-d")) {
+            thoughts.put(key, Map.of("author", "you", "thought", "walk " + key, "timestamp", 1_680_000_000_000L,
+                    "date", "2023-03-28 10:00:00"));
+        }
+        String blob = ArchivedMonth.encode(thoughts, Map.of());
+        database.set(ROOT + "archive/2023-03", blob);
+        database.set(ROOT + "archived/2023-03", ArchivedMonth.version(blob));
+        ThoughtArchive archive = archive(database, new ArchiveCache(1 << 20, new SimpleMeterRegistry()));
+
+        ThoughtPage first = archive.search("walk", null, 2);
+        assertEquals(new ThoughtCursor(1_680_000_000_000L, "-c"), first.nextCursor());
+        assertEquals(List.of("-b", "-a"), archive.search("walk", first.nextCursor(), 5).thoughts().stream()
+                .map(Thought::key).toList());
+    }
+
+    @Test
+    void cacheDropsTheLeastRecentlyUsedMonthsPastItsByteBound() {
+        ArchiveCache cache = new ArchiveCache(100, new SimpleMeterRegistry());
+        cache.put("a", month("2023-01", 40));
+        cache.put("b", month("2023-02", 40));
+        assertNotNull(cache.get("a"));
+        cache.put("c", month("2023-03", 40));
+
+        assertNull(cache.get("b"), "b was used least recently");
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.bytes());
+
+        cache.put("huge", month("2023-04", 101));
+        assertNull(cache.get("huge"), "a month larger than the cache is not kept");
+        assertEquals(2, cache.size());
+    }
+
+    private static FirebaseService diary(FakeRealtimeDatabase database) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new FirebaseService(database, ROOT, TIMEOUT, new FirebaseWrites(database, 1000, null, registry),
+                new ArchiveCache(1 << 20, registry), registry);
+    }
+
+    private static ThoughtArchive archive(FakeRealtimeDatabase database, ArchiveCache cache) {
+        return new ThoughtArchive(database, ROOT, cache, TIMEOUT);
+    }
+
+    private static void save(FirebaseService service, String date, String author, String thought) {
+        service.saveThought(date, author, thought).join();
+    }
+
+    private static ArchivedMonth month(String month, long bytes) {
+        return new ArchivedMonth(month, List.of(), Collections.emptyNavigableMap(), bytes);
+    }
+
+    private static Map<?, ?> children(FakeRealtimeDatabase database, String path) {
+        Object value = database.valueAt(path);
+        return value instanceof Map<?, ?> map ? map : Map.of();
+    }
+}
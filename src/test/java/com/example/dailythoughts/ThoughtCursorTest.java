@@ -0,0 +1,35 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThoughtCursorTest {
+
+    @Test
+    void roundTripsThroughItsUrlForm() {
+        ThoughtCursor cursor = new ThoughtCursor(1_700_000_000_000L, "-NxK3abc_def");
+        assertEquals("1700000000000:-NxK3abc_def", cursor.toString());
+        assertEquals(cursor, ThoughtCursor.valueOf(cursor.toString()));
+        // Legacy date keys have colons of their own
+        assertEquals("2024-01-01 10:00:00", ThoughtCursor.valueOf("5:2024-01-01 10:00:00").key());
+    }
+
+    @Test
+    void rejectsAnythingButTimestampColonKey() {
+        assertThrows(IllegalArgumentException.class, () -> ThoughtCursor.valueOf("1700000000000"));
+        assertThrows(IllegalArgumentException.class, () -> ThoughtCursor.valueOf(":key"));
+        assertThrows(IllegalArgumentException.class, () -> ThoughtCursor.valueOf("5:"));
+        assertThrows(IllegalArgumentException.class, () -> ThoughtCursor.valueOf("soon:key"));
+    }
+
+    @Test
+    void precedesOlderThoughtsAndThoseSharingItsTimestampWithLowerKeys() {
+        ThoughtCursor cursor = new ThoughtCursor(5, "-b");
+        assertTrue(cursor.precedes(new Thought("-z", Author.YOU, "", 4, null)));
+        assertTrue(cursor.precedes(new Thought("-a", Author.YOU, "", 5, null)));
+        assertFalse(cursor.precedes(new Thought("-b", Author.YOU, "", 5, null)));
+        assertFalse(cursor.precedes(new Thought("-c", Author.YOU, "", 5, null)));
+        assertFalse(cursor.precedes(new Thought("-a", Author.YOU, "", 6, null)));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThoughtKeyMigrationTest {
+
+    @Test
+    void rekeysLegacyThoughtsPageByPageAndResumesAfterAFailure() {
+        FlakyDatabase database = new FlakyDatabase();
+        for (int i = 0; i < 10; i++) {
+            database.set("thoughts/2024-01-01 10-00-0" + i,
+                    Map.of("author", "you", "thought", "#" + i, "timestamp", Long.toString(1_000L + i)));
+        }
+        database.set("thoughts/-already-a-push-id", Map.of("author", "her", "thought", "new", "timestamp", 5_000L));
+
+        // Second page fails: the first one (the push ID and two legacy keys) stays committed with its cursor
+        database.failOnUpdate = 2;
+        assertThrows(RuntimeException.class, () -> new ThoughtKeyMigration(database, 3).migrate());
+        assertEquals("2024-01-01 10-00-01", database.valueAt(ThoughtKeyMigration.CURSOR));
+
+        int resumed = new ThoughtKeyMigration(database, 3).migrate();
+        assertEquals(8, resumed);
+
+        Map<String, Object> thoughts = database.query("thoughts", ChildQuery.byKey()).join();
+        assertEquals(11, thoughts.size());
+        assertTrue(thoughts.keySet().stream().noneMatch(ThoughtKeys::isLegacy));
+
+        // Key order is time order, with real long timestamps and the original date kept
+        List<Object> timestamps = new ArrayList<>();
+        thoughts.values().forEach(value -> timestamps.add(((Map<?, ?>) value).get("timestamp")));
+        assertEquals(1_000L, timestamps.get(0));
+        assertEquals(5_000L, timestamps.get(10));
+        assertEquals("2024-01-01 10:00:00", ((Map<?, ?>) thoughts.values().iterator().next()).get("date"));
+
+        // Nothing left to do on a re-run
+        assertEquals(0, new ThoughtKeyMigration(database, 3).migrate());
+        assertEquals(11, database.query("thoughts", ChildQuery.byKey()).join().size());
+    }
+
+    static class FlakyDatabase extends FakeRealtimeDatabase {
+        int failOnUpdate;
+        int updates;
+
+        @Override
+        public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+            if (++updates == failOnUpdate) {
+                return CompletableFuture.failedFuture(new IllegalStateException("connection lost"));
+            }
+            return super.update(path, values);
+        }
+    }
+}
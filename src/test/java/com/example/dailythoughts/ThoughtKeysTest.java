@@ -0,0 +1,45 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThoughtKeysTest {
+
+    @Test
+    void keysAreUniqueAndOrderedEvenWithinOneMillisecond() {
+        ThoughtKeys keys = new ThoughtKeys(new Random(1));
+        List<String> generated = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            generated.add(keys.next(1_700_000_000_000L + i / 1000)); // 1000 keys per millisecond
+        }
+
+        List<String> sorted = new ArrayList<>(generated);
+        Collections.sort(sorted);
+        assertEquals(generated, sorted);
+        assertEquals(generated.size(), new HashSet<>(generated).size());
+    }
+
+    @Test
+    void aClockStepBackwardsNeverReordersKeys() {
+        ThoughtKeys keys = new ThoughtKeys(new Random(1));
+        String before = keys.next(1_700_000_001_000L);
+        String after = keys.next(1_700_000_000_000L);
+
+        assertTrue(after.compareTo(before) > 0);
+        assertTrue(keys.next(1_700_000_002_000L).compareTo(after) > 0);
+    }
+
+    @Test
+    void legacyKeysMapToStableTimeOrderedKeys() {
+        assertTrue(ThoughtKeys.isLegacy("2024-01-01 10-00-00"));
+        assertFalse(ThoughtKeys.isLegacy("-NqT3k2bX9aQ1c7Lm0pZ"));
+
+        String first = ThoughtKeys.forLegacy(1_000L, "2024-01-01 10-00-00");
+        assertEquals(first, ThoughtKeys.forLegacy(1_000L, "2024-01-01 10-00-00"));
+        assertEquals(20, first.length());
+        assertTrue(ThoughtKeys.forLegacy(2_000L, "2024-01-01 09-00-00").compareTo(first) > 0);
+    }
+}
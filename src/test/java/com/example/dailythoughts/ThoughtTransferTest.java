@@ -0,0 +1,258 @@
+package com.example.dailythoughts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThoughtTransferTest {
+
+    @Test
+    void roundTripsThoughtsThroughGzippedNdjson() throws Exception {
+        FakeRealtimeDatabase source = new FakeRealtimeDatabase();
+        for (int i = 0; i < 25; i++) {
+            source.set("diaries/smiths/thoughts/-key" + (100 + i), Map.of("author", i % 2 == 0 ? "you" : "her",
+                    "thought", "line\nbreak \"quoted\" #" + i, "timestamp", 1_700_000_000_000L + i,
+                    "date", "2024-01-01 10:00:" + (10 + i)));
+        }
+        source.set("diaries/smiths/days/2024-01-01", Map.of("yourThought", "not exported", "herThought", ""));
+
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(exported)) {
+            assertEquals(25, new ThoughtTransfer(source, 10, 7, 2).export("smiths", gzip));
+        }
+        String ndjson = new String(new GZIPInputStream(new ByteArrayInputStream(exported.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertEquals(25, ndjson.lines().count());
+        assertTrue(ndjson.lines().findFirst().orElseThrow().contains("\"key\":\"-key100\""));
+
+        FakeRealtimeDatabase target = new FakeRealtimeDatabase();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(exported.toByteArray()))) {
+            assertEquals(25, new ThoughtTransfer(target, 10, 7, 2).importFrom("jones", in));
+        }
+        assertEquals(source.valueAt("diaries/smiths/thoughts"), target.valueAt("diaries/jones/thoughts"));
+        assertInstanceOf(Long.class, target.valueAt("diaries/jones/thoughts/-key100/timestamp"));
+        // The day row holds each author's last thought, and every thought is counted
+        assertEquals(Map.of("yourThought", "line\nbreak \"quoted\" #24", "herThought", "line\nbreak \"quoted\" #23"),
+                target.valueAt("diaries/jones/days/2024-01-01"));
+        assertEquals(13L, target.valueAt("diaries/jones/stats/2024-01/you/2024-01-01"));
+        assertEquals(12L, target.valueAt("diaries/jones/stats/2024-01/her/2024-01-01"));
+
+        // A second run writes the same data and counts nothing twice
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(exported.toByteArray()))) {
+            new ThoughtTransfer(target, 10, 7, 2).importFrom("jones", in);
+        }
+        assertEquals(13L, target.valueAt("diaries/jones/stats/2024-01/you/2024-01-01"));
+    }
+
+    @Test
+    void exportsArchivedMonthsBeforeTheHotThoughts() throws Exception {
+        FakeRealtimeDatabase source = new FakeRealtimeDatabase();
+        source.set("diaries/smiths/thoughts/-key200", Map.of("author", "you", "thought", "hot",
+                "timestamp", 1_720_000_000_000L, "date", "2024-07-03 10:00:00"));
+        String blob = ArchivedMonth.encode(Map.of("-key100", Map.of("author", "her", "thought", "cold",
+                "timestamp", 1_680_000_000_000L, "date", "2023-03-28 10:00:00")), Map.of());
+        source.set("diaries/smiths/archive/2023-03", blob);
+        source.set("diaries/smiths/archived/2023-03", ArchivedMonth.version(blob));
+
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        assertEquals(2, new ThoughtTransfer(source, 10, 7, 2).export("smiths", exported));
+        List<String> lines = exported.toString(StandardCharsets.UTF_8).lines().filter(line -> !line.isEmpty()).toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"cold\""));
+        assertTrue(lines.get(1).contains("\"hot\""));
+
+        FakeRealtimeDatabase target = new FakeRealtimeDatabase();
+        new ThoughtTransfer(target, 10, 7, 2).importFrom("jones",
+                new ByteArrayInputStream(exported.toByteArray()));
+        assertEquals(1_680_000_000_000L, target.valueAt("diaries/jones/thoughts/-key100/timestamp"));
+    }
+
+    @Test
+    void importingIntoADiaryWithNewerThoughtsKeepsTheirDayRows() throws Exception {
+        FakeRealtimeDatabase target = new FakeRealtimeDatabase();
+        target.set("diaries/jones/thoughts/-x", Map.of("author", "you", "thought", "evening",
+                "timestamp", 10L, "date", "2024-01-01 20:00:00"));
+        target.set("diaries/jones/thoughts/-y", Map.of("author", "her", "thought", "breakfast",
+                "timestamp", 11L, "date", "2024-01-02 08:00:00"));
+        target.set("diaries/jones/days/2024-01-01", Map.of("yourThought", "evening", "herThought", ""));
+        target.set("diaries/jones/days/2024-01-02", Map.of("yourThought", "", "herThought", "breakfast"));
+
+        String ndjson = "{\"key\":\"-a\",\"value\":{\"author\":\"you\",\"thought\":\"morning\","
+                + "\"timestamp\":1,\"date\":\"2024-01-01 09:00:00\"}}\n"
+                + "{\"key\":\"-b\",\"value\":{\"author\":\"her\",\"thought\":\"noon\","
+                + "\"timestamp\":2,\"date\":\"2024-01-01 12:00:00\"}}\n"
+                + "{\"key\":\"-c\",\"value\":{\"author\":\"you\",\"thought\":\"late\","
+                + "\"timestamp\":3,\"date\":\"2024-01-02 23:00:00\"}}\n";
+        assertEquals(3, new ThoughtTransfer(target, 10, 2, 2).importFrom("jones",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+
+        // The older imported thought does not replace the evening one; the one that is newest does show
+        assertEquals(Map.of("yourThought", "evening", "herThought", "noon"), target.valueAt("diaries/jones/days/2024-01-01"));
+        assertEquals(Map.of("yourThought", "late", "herThought", "breakfast"), target.valueAt("diaries/jones/days/2024-01-02"));
+        assertEquals(2L, target.valueAt("diaries/jones/stats/2024-01/you/2024-01-01"));
+    }
+
+    @Test
+    void rejectsKeysThatWouldWriteOutsideThoughts() {
+        FakeRealtimeDatabase target = new FakeRealtimeDatabase();
+        String ndjson = "{\"key\":\"-ok\",\"value\":{\"thought\":\"fine\"}}\n"
+                + "{\"key\":\"../days/x\",\"value\":{\"thought\":\"bad\"}}\n";
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new ThoughtTransfer(target, 10, 1, 1).importFrom("jones",
+                        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+        assertTrue(error.getMessage().contains("line 2"));
+        assertNull(target.valueAt("diaries/jones/days"));
+    }
+
+    // A million thoughts from a stand-in that generates pages on demand and only counts what it is
+    // sent, piped export -> gzip -> import; neither side ever holds the data set
+    @Test
+    void streamsAMillionThoughtsWithBoundedPagesAndBatches() throws Exception {
+        int total = 1_000_000;
+        SyntheticDatabase database = new SyntheticDatabase(total);
+        ThoughtTransfer transfer = new ThoughtTransfer(database, 1000, 500, 4);
+
+        PipedOutputStream pipeOut = new PipedOutputStream();
+        PipedInputStream pipeIn = new PipedInputStream(pipeOut, 1 << 16);
+        ExecutorService exporter = Executors.newSingleThreadExecutor();
+        Future<Long> exported = exporter.submit(() -> {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(pipeOut, 1 << 16)) {
+                return transfer.export("smiths", gzip);
+            }
+        });
+
+        long imported;
+        try (InputStream in = new GZIPInputStream(pipeIn, 1 << 16)) {
+            imported = transfer.importFrom("smiths", in);
+        }
+        exporter.shutdown();
+
+        assertEquals(total, exported.get(30, TimeUnit.SECONDS));
+        assertEquals(total, imported);
+        assertEquals(total, database.written.get());
+        assertEquals(database.expectedChecksum, database.writtenChecksum.get(), "every thought arrives intact");
+        assertEquals(1000, database.largestPage.get());
+        assertEquals(500, database.largestBatch.get());
+        assertTrue(database.maxInFlight.get() <= 4, "at most 4 batches in flight, saw " + database.maxInFlight.get());
+        assertTrue(database.maxInFlight.get() > 1, "batches overlap");
+        database.acks.shutdown();
+    }
+
+    static class SyntheticDatabase implements RealtimeDatabase {
+        final int total;
+        final long expectedChecksum;
+        final AtomicLong writtenChecksum = new AtomicLong();
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicInteger largestPage = new AtomicInteger();
+        final AtomicInteger largestBatch = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final ScheduledExecutorService acks = Executors.newScheduledThreadPool(4);
+
+        SyntheticDatabase(int total) {
+            this.total = total;
+            long checksum = 0;
+            for (int i = 0; i < total; i++) {
+                checksum += checksum(keyOf(i), thoughtOf(i));
+            }
+            this.expectedChecksum = checksum;
+        }
+
+        static String keyOf(int i) {
+            return String.format("-k%08d", i);
+        }
+
+        static Map<String, Object> thoughtOf(int i) {
+            return Map.of("author", i % 2 == 0 ? "you" : "her", "thought", "Synthetic thought #" + i,
+                    "timestamp", 1_700_000_000_000L + i, "date", "2024-01-01 00:00:00");
+        }
+
+        static long checksum(String key, Object value) {
+            return key.hashCode() * 31L + value.hashCode();
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Object>> query(String path, ChildQuery query) {
+            assertEquals("diaries/smiths/thoughts", path);
+            if (query.orderBy() != null) {
+                return CompletableFuture.completedFuture(Map.of()); // the stats recount after the import
+            }
+            int start = query.startAfter() == null ? 0 : Integer.parseInt(query.startAfter().toString().substring(2)) + 1;
+            int end = Math.min(total, start + query.limitToFirst());
+            Map<String, Object> page = new LinkedHashMap<>();
+            for (int i = start; i < end; i++) {
+                page.put(keyOf(i), thoughtOf(i));
+            }
+            largestPage.accumulateAndGet(page.size(), Math::max);
+            return CompletableFuture.completedFuture(page);
+        }
+
+        @Override
+        public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            long checksum = 0;
+            int thoughts = 0;
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (entry.getKey().startsWith("diaries/smiths/thoughts/")) {
+                    checksum += checksum(entry.getKey().substring("diaries/smiths/thoughts/".length()), entry.getValue());
+                    thoughts++;
+                }
+            }
+            largestBatch.accumulateAndGet(thoughts, Math::max);
+            writtenChecksum.addAndGet(checksum);
+            written.addAndGet(thoughts);
+
+            // Acknowledge a little later, as the server would
+            CompletableFuture<Void> ack = new CompletableFuture<>();
+            acks.schedule(() -> {
+                inFlight.decrementAndGet();
+                ack.complete(null);
+            }, 200, TimeUnit.MICROSECONDS);
+            return ack;
+        }
+
+        // Nothing archived
+        @Override
+        public CompletableFuture<Object> get(String path) {
+            assertEquals("diaries/smiths/archived", path);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> set(String path, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> remove(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Object> transaction(String path, UnaryOperator<Object> update) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Registration listenChildren(String path, ChildListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Registration listenValue(String path, Consumer<Object> listener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBatcherTest {
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void mergesWritesWithinTheWindowIntoOneUpdate() {
+        AtomicInteger updates = new AtomicInteger();
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+                updates.incrementAndGet();
+                return super.update(path, values);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        try (WriteBatcher batcher = new WriteBatcher(database, 100, 100, Duration.ofMillis(200), 100, CLOSE_TIMEOUT, registry)) {
+            List<CompletableFuture<Void>> acks = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                acks.add(batcher.submit("thoughts/t" + i, Map.of("thought", "#" + i)));
+            }
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0])).join();
+
+            assertEquals(1, updates.get());
+            assertEquals(20, ((Map<?, ?>) database.valueAt("thoughts")).size());
+            assertEquals(20.0, registry.find("dailythoughts.writes.batch.size").summary().max());
+            assertEquals(20, registry.find("dailythoughts.writes.ack.latency").timer().count());
+        }
+    }
+
+    @Test
+    void reportsServerRejection() {
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Permission denied"));
+            }
+        };
+
+        try (WriteBatcher batcher = new WriteBatcher(database, 10, 10, Duration.ofMillis(10), 100, CLOSE_TIMEOUT, new SimpleMeterRegistry())) {
+            ExecutionException rejected = assertThrows(ExecutionException.class,
+                    () -> batcher.submit("thoughts/a", "x").get());
+            assertEquals("Permission denied", rejected.getCause().getMessage());
+        }
+    }
+
+    @Test
+    void aRejectedWriteOnlyFailsItsOwnSubmit() throws Exception {
+        List<Integer> updateSizes = new CopyOnWriteArrayList<>();
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+                updateSizes.add(values.size());
+                if (values.containsKey("locked/a")) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("Permission denied"));
+                }
+                return super.update(path, values);
+            }
+        };
+
+        try (WriteBatcher batcher = new WriteBatcher(database, 100, 100, Duration.ofMillis(200), 100, CLOSE_TIMEOUT,
+                new SimpleMeterRegistry())) {
+            CompletableFuture<Void> before = batcher.submit("thoughts/a", "x");
+            CompletableFuture<Void> bad = batcher.submit("locked/a", "y");
+            CompletableFuture<Void> after = batcher.submit("thoughts/b", "z");
+
+            CompletableFuture.allOf(before, after).get(5, TimeUnit.SECONDS);
+            ExecutionException rejected = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertEquals("Permission denied", rejected.getCause().getMessage());
+            assertEquals(Map.of("a", "x", "b", "z"), database.valueAt("thoughts"));
+            assertEquals(List.of(3, 1, 1, 1), updateSizes, "the batch, then each write alone");
+        }
+    }
+
+    @Test
+    void refusesWritesOnceTheQueueIsFull() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+                writerBusy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.update(path, values);
+            }
+        };
+
+        try (WriteBatcher batcher = new WriteBatcher(database, 1, 10, Duration.ZERO, 1, CLOSE_TIMEOUT, new SimpleMeterRegistry())) {
+            CompletableFuture<Void> inFlight = batcher.submit("thoughts/a", "x");
+            writerBusy.await();
+            CompletableFuture<Void> queued = batcher.submit("thoughts/b", "y");
+            CompletableFuture<Void> refused = batcher.submit("thoughts/c", "z");
+
+            assertTrue(refused.isCompletedExceptionally());
+            release.countDown();
+            inFlight.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void refusesWritesWhileTooManyAreUnacknowledged() throws Exception {
+        List<CompletableFuture<Void>> serverAcks = new CopyOnWriteArrayList<>();
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+                CompletableFuture<Void> ack = new CompletableFuture<>();
+                serverAcks.add(ack);
+                return ack; // a server that has gone quiet
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        try (WriteBatcher batcher = new WriteBatcher(database, 100, 3, Duration.ZERO, 1, CLOSE_TIMEOUT, registry)) {
+            List<CompletableFuture<Void>> accepted = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                accepted.add(batcher.submit("thoughts/t" + i, "x"));
+            }
+            CompletableFuture<Void> refused = batcher.submit("thoughts/t3", "x");
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> refused.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, error.getCause());
+            assertEquals(3, batcher.pending());
+            assertEquals(1.0, registry.find("dailythoughts.writes.rejected").counter().count());
+
+            // Once the server catches up there is room again
+            while (serverAcks.size() < 3) {
+                Thread.onSpinWait();
+            }
+            serverAcks.forEach(ack -> ack.complete(null));
+            CompletableFuture.allOf(accepted.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+            assertEquals(0, batcher.pending());
+            assertEquals(0.0, registry.find("dailythoughts.writes.pending").gauge().value());
+            assertFalse(batcher.submit("thoughts/t4", "x").isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    void sendsAcceptedWritesOnCloseAndFailsOnlyThoseLeftUnacknowledged() throws Exception {
+        List<CompletableFuture<Void>> serverAcks = new CopyOnWriteArrayList<>();
+        List<Map<String, Object>> sent = new CopyOnWriteArrayList<>();
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase() {
+            @Override
+            public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+                sent.add(values);
+                CompletableFuture<Void> ack = new CompletableFuture<>();
+                serverAcks.add(ack);
+                // The first batch is acknowledged, the second never is
+                if (serverAcks.size() == 1) {
+                    ack.complete(null);
+                }
+                return ack;
+            }
+        };
+
+        // A long window, so the last write is still being collected when close comes
+        WriteBatcher batcher = new WriteBatcher(database, 100, 100, Duration.ofSeconds(30), 2,
+                Duration.ofMillis(200), new SimpleMeterRegistry());
+        CompletableFuture<Void> first = batcher.submit("thoughts/a", "x");
+        CompletableFuture<Void> second = batcher.submit("thoughts/b", "y");
+        CompletableFuture<Void> third = batcher.submit("thoughts/c", "z");
+        batcher.close();
+
+        assertEquals(List.of(Map.of("thoughts/a", "x", "thoughts/b", "y"), Map.of("thoughts/c", "z")), sent);
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> third.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertTrue(batcher.submit("thoughts/d", "w").isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.dailythoughts;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteJournalTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unacknowledgedWritesAreReplayedAfterARestart() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (WriteJournal journal = journal(path, 1 << 20)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(Map.of("thoughts/-k" + i, Map.of("thought", "#" + i, "timestamp", 1_700_000_000_000L + i)))
+                        .get(5, TimeUnit.SECONDS);
+            }
+            List<WriteJournal.Entry> first = journal.awaitUnacknowledged(1, 0);
+            journal.acknowledge(first.get(0).next(), 1);
+            assertEquals(2, journal.backlog());
+        }
+
+        try (WriteJournal reopened = journal(path, 1 << 20)) {
+            assertEquals(2, reopened.backlog());
+            List<WriteJournal.Entry> entries = reopened.awaitUnacknowledged(10, 0);
+            assertEquals(2, entries.size());
+            assertEquals(Map.of("thoughts/-k1", Map.of("thought", "#1", "timestamp", 1_700_000_000_001L)),
+                    entries.get(0).updates());
+            assertEquals(entries.get(0).next(), entries.get(1).offset());
+        }
+    }
+
+    @Test
+    void aTornTailIsDroppedOnStartup() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (WriteJournal journal = journal(path, 1 << 20)) {
+            journal.append(Map.of("thoughts/-a", "x")).get(5, TimeUnit.SECONDS);
+            journal.append(Map.of("thoughts/-b", "y")).get(5, TimeUnit.SECONDS);
+        }
+        long intact = Files.size(path);
+        // A crash in the middle of the next append: a length, a CRC and half a body
+        Files.write(path, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, '{', '"'}, StandardOpenOption.APPEND);
+
+        try (WriteJournal reopened = journal(path, 1 << 20)) {
+            assertEquals(2, reopened.backlog());
+            assertEquals(intact, Files.size(path));
+            reopened.append(Map.of("thoughts/-c", "z")).get(5, TimeUnit.SECONDS);
+            assertEquals(3, reopened.awaitUnacknowledged(10, 0).size());
+        }
+    }
+
+    @Test
+    void closeWritesTheAppendsAlreadyAcceptedAndRefusesLaterOnes() throws Exception {
+        Path path = dir.resolve("journal.log");
+        List<CompletableFuture<Void>> accepted = new ArrayList<>();
+        WriteJournal journal = journal(path, 1 << 20);
+        for (int i = 0; i < 200; i++) {
+            accepted.add(journal.append(Map.of("thoughts/-k" + i, "#" + i)));
+        }
+        journal.close();
+
+        CompletableFuture.allOf(accepted.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        ExecutionException refused = assertThrows(ExecutionException.class,
+                () -> journal.append(Map.of("thoughts/-late", "x")).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, refused.getCause());
+        try (WriteJournal reopened = journal(path, 1 << 20)) {
+            assertEquals(200, reopened.backlog());
+        }
+    }
+
+    @Test
+    void concurrentAppendsShareFsyncs() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        int threads = 32;
+        int appendsPerThread = 100;
+        try (WriteJournal journal = new WriteJournal(dir.resolve("journal.log"), 1 << 30, 1_000_000, registry);
+             ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < appendsPerThread; i++) {
+                        journal.append(Map.of("thoughts/-t" + thread + "-" + i, "x")).join();
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+
+            assertEquals(threads * appendsPerThread, journal.backlog());
+            long fsyncs = registry.find("dailythoughts.journal.fsync").timer().count();
+            assertTrue(fsyncs < threads * appendsPerThread / 2, fsyncs + " fsyncs for " + threads * appendsPerThread + " appends");
+        }
+    }
+
+    @Test
+    void refusesWritesPastTheBacklogAndTruncatesOnceDrained() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (WriteJournal journal = new WriteJournal(path, 1, 2, new SimpleMeterRegistry())) {
+            journal.append(Map.of("thoughts/-a", "x")).get(5, TimeUnit.SECONDS);
+            journal.append(Map.of("thoughts/-b", "y")).get(5, TimeUnit.SECONDS);
+            ExecutionException refused = assertThrows(ExecutionException.class,
+                    () -> journal.append(Map.of("thoughts/-c", "z")).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, refused.getCause());
+
+            List<WriteJournal.Entry> entries = journal.awaitUnacknowledged(10, 0);
+            journal.acknowledge(entries.get(1).next(), 2);
+            assertEquals(0, Files.size(path), "fully acknowledged journal past the threshold is truncated");
+            journal.append(Map.of("thoughts/-c", "z")).get(5, TimeUnit.SECONDS);
+        }
+        try (WriteJournal reopened = new WriteJournal(path, 1, 2, new SimpleMeterRegistry())) {
+            assertEquals(Map.of("thoughts/-c", "z"), reopened.awaitUnacknowledged(10, 0).get(0).updates());
+        }
+    }
+
+    // Submits keep succeeding while Firebase is down; they reach it after a restart
+    @Test
+    void submitsSurviveAnOutageAndARestart() throws Exception {
+        Path path = dir.resolve("journal.log");
+        FlakyDatabase database = new FlakyDatabase();
+        database.down = true;
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseService service = service(database, path, registry);
+        for (int i = 0; i < 5; i++) {
+            service.saveThought("2024-01-01 08:00:0" + i, i % 2 == 0 ? "you" : "her", "offline #" + i)
+                    .get(5, TimeUnit.SECONDS);
+        }
+        await(() -> database.refused.get() > 0);
+        assertNull(database.valueAt("thoughts"));
+        service.stopListening(); // the process goes away with nothing acknowledged
+
+        database.down = false;
+        FirebaseService restarted = service(database, path, new SimpleMeterRegistry());
+        await(() -> database.valueAt("thoughts") instanceof Map<?, ?> thoughts && thoughts.size() == 5);
+        assertEquals(Map.of("yourThought", "offline #4", "herThought", "offline #3"), database.valueAt("days/2024-01-01"));
+        restarted.stopListening();
+
+        try (WriteJournal drained = journal(path, 1 << 20)) {
+            assertEquals(0, drained.backlog());
+        }
+    }
+
+    // Firebase applies a write but the acknowledgement is lost: the retry writes the same data again
+    @Test
+    void replayingAWriteTwiceLeavesTheSameData() throws Exception {
+        FlakyDatabase database = new FlakyDatabase();
+        database.loseAcks.set(3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseService service = service(database, dir.resolve("journal.log"), registry);
+
+        for (int i = 0; i < 10; i++) {
+            service.saveThought("2024-01-02 09:00:0" + i, "you", "#" + i).get(5, TimeUnit.SECONDS);
+        }
+        await(() -> registry.find("dailythoughts.journal.backlog").gauge().value() == 0);
+
+        assertTrue(registry.find("dailythoughts.journal.retries").counter().count() >= 1);
+        assertEquals(10, ((Map<?, ?>) database.valueAt("thoughts")).size());
+        assertEquals("#9", database.valueAt("days/2024-01-02/yourThought"));
+        service.stopListening();
+    }
+
+    // A whole record whose body does not parse is set aside; the writes after it still go through
+    @Test
+    void anUnreadableRecordIsQuarantinedAndSkipped() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (WriteJournal journal = journal(path, 1 << 20)) {
+            journal.append(Map.of("thoughts/-a", "x")).get(5, TimeUnit.SECONDS);
+        }
+        byte[] body = "{not json".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        Files.write(path, ByteBuffer.allocate(8 + body.length).putInt(body.length).putInt((int) crc.getValue())
+                .put(body).array(), StandardOpenOption.APPEND);
+        try (WriteJournal journal = journal(path, 1 << 20)) {
+            assertEquals(2, journal.backlog());
+            journal.append(Map.of("thoughts/-c", "z")).get(5, TimeUnit.SECONDS);
+        }
+        JournalHealthIndicator health = new JournalHealthIndicator(path.toString());
+        assertEquals(Status.UP, health.health().getStatus());
+
+        FakeRealtimeDatabase database = new FakeRealtimeDatabase();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FirebaseService service = service(database, path, registry);
+        await(() -> registry.find("dailythoughts.journal.backlog").gauge().value() == 0);
+
+        assertEquals(Map.of("-a", "x", "-c", "z"), database.valueAt("thoughts"));
+        assertEquals(1.0, registry.find("dailythoughts.journal.quarantined").counter().count());
+        assertEquals(8 + body.length, Files.size(WriteJournal.quarantinePath(path)));
+        assertEquals(Status.DOWN, health.health().getStatus());
+        service.stopListening();
+    }
+
+    private static FirebaseService service(RealtimeDatabase database, Path path, SimpleMeterRegistry registry)
+            throws Exception {
+        return new FirebaseService(database, TIMEOUT, 1000, new WriteJournal(path, 1 << 20, 1000, registry), registry);
+    }
+
+    private static WriteJournal journal(Path path, long compactThreshold) throws Exception {
+        return new WriteJournal(path, compactThreshold, 1000, new SimpleMeterRegistry());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    // Refuses every multi-path update while down; applies but fails the first loseAcks of them
+    static class FlakyDatabase extends FakeRealtimeDatabase {
+        volatile boolean down;
+        final AtomicInteger loseAcks = new AtomicInteger();
+        final AtomicInteger refused = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Void> update(String path, Map<String, Object> values) {
+            if (down) {
+                refused.incrementAndGet();
+                return CompletableFuture.failedFuture(new IllegalStateException("Firebase unreachable"));
+            }
+            super.update(path, values);
+            if (loseAcks.getAndDecrement() > 0) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Connection reset"));
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}